@@ -16,9 +16,12 @@ package net.sf.xmlunit.diff;
 import javax.xml.transform.Source;
 
 import net.sf.xmlunit.diff.internal.NodeAndXpath;
+import net.sf.xmlunit.diff.providers.AttributeComparisonProvider;
+import net.sf.xmlunit.diff.providers.CharacterDataComparisonProvider;
 import net.sf.xmlunit.diff.providers.ComparisonProviders;
 import net.sf.xmlunit.diff.providers.DOMComparator;
 import net.sf.xmlunit.diff.providers.ElementComparisonProvider;
+import net.sf.xmlunit.diff.providers.ProcInstrComparisonProvider;
 import net.sf.xmlunit.util.Convert;
 import net.sf.xmlunit.util.Preconditions;
 
@@ -43,6 +46,8 @@ public class DOMDifferenceEngine extends ObservableDifferenceEngine {
 
     private boolean ignoreAttributeOrder = true;
 
+    private boolean normalizeWhitespace = false;
+
     private DOMComparator comparator;
 
     public boolean getIgnoreAttributeOrder() {
@@ -54,6 +59,27 @@ public class DOMDifferenceEngine extends ObservableDifferenceEngine {
         this.ignoreAttributeOrder = ignoreAttributeOrder;
     }
 
+    public boolean getNormalizeWhitespace() {
+        return normalizeWhitespace;
+    }
+
+    /**
+     * Compares text, CDATA, comment, attribute and processing instruction
+     * data values as if their whitespace had been normalized.
+     *
+     * <p>
+     * Leading and trailing whitespace is ignored and runs of whitespace are
+     * treated as a single space. Unlike normalizing the documents up front
+     * this doesn't create any strings for values that turn out to be equal,
+     * but it doesn't remove whitespace-only text nodes either. Values of
+     * {@link Comparison}s are {@link net.sf.xmlunit.util.WhitespaceNormalizedText}
+     * instances in this mode.
+     * </p>
+     */
+    public void setNormalizeWhitespace(boolean normalizeWhitespace) {
+        this.normalizeWhitespace = normalizeWhitespace;
+    }
+
     @Override
     public void compare(Source control, Source test) {
         Preconditions.checkArgument(control != null, "control must not be null");
@@ -128,7 +154,11 @@ public class DOMDifferenceEngine extends ObservableDifferenceEngine {
 
     private class ConfiguredComparisonProviders extends ComparisonProviders {
         public ConfiguredComparisonProviders() {
-            setElementComparisonProvider(new ElementComparisonProvider(getIgnoreAttributeOrder()));
+            setElementComparisonProvider(
+                    new ElementComparisonProvider(getIgnoreAttributeOrder(), getNormalizeWhitespace()));
+            setAttributeComparisonProvider(new AttributeComparisonProvider(getNormalizeWhitespace()));
+            setCharDataComarisonProvider(new CharacterDataComparisonProvider(getNormalizeWhitespace()));
+            setProcInstrComparisonProvider(new ProcInstrComparisonProvider(getNormalizeWhitespace()));
             setNodeMatcher(nodeMatcher);
         }
     }
@@ -21,6 +21,7 @@ public class DefaultDifferenceEngineFactory implements DifferenceEngineFactory {
     public DifferenceEngine newEngine() {
         DOMDifferenceEngine engine = new DOMDifferenceEngine();
         applyProperties(engine);
+        applyWhitespaceNormalization(engine);
         applyEvaluator(engine);
         applyComparisonFilter(engine);
         applyNodeMatcher(engine);
@@ -49,6 +50,10 @@ public class DefaultDifferenceEngineFactory implements DifferenceEngineFactory {
         engine.setIgnoreAttributeOrder(properties.getIgnoreAttributeOrder());
     }
 
+    protected void applyWhitespaceNormalization(DOMDifferenceEngine engine) {
+        engine.setNormalizeWhitespace(properties.getNormalizeWhitespaceWhileComparing());
+    }
+
     protected void applyComparisonFilter(DifferenceEngine engine) {
         ComparisonFilter filter = new DefaultComparisonFilter();
         engine.setFilter(filter);
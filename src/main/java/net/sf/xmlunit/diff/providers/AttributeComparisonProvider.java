@@ -9,6 +9,22 @@ import org.w3c.dom.Attr;
 
 public class AttributeComparisonProvider extends ComparisonProvider<Attr> {
 
+	private final boolean normalizeWhitespace;
+
+	public AttributeComparisonProvider() {
+		this(false);
+	}
+
+	/**
+	 * @param normalizeWhitespace
+	 *            whether attribute values are compared as
+	 *            {@link net.sf.xmlunit.util.WhitespaceNormalizedText} instead
+	 *            of strings
+	 */
+	public AttributeComparisonProvider(boolean normalizeWhitespace) {
+		this.normalizeWhitespace = normalizeWhitespace;
+	}
+
 	@Override
 	public Comparisons provideComparisons(NodeAndXpath<Attr> control, NodeAndXpath<Attr> test) {
 		Attr controlAttr = control.getNode();
@@ -23,8 +39,10 @@ public class AttributeComparisonProvider extends ComparisonProvider<Attr> {
 
 		comparisons.add(
 		        Comparison.ofType(ComparisonType.ATTR_VALUE)
-		                .between(control, controlAttr.getValue())
-		                .and(test, testAttr.getValue()));
+		                .between(control, CharacterDataComparisonProvider.value(controlAttr.getValue(),
+		                        normalizeWhitespace))
+		                .and(test, CharacterDataComparisonProvider.value(testAttr.getValue(),
+		                        normalizeWhitespace)));
 
 		return comparisons;
 	}
@@ -17,12 +17,28 @@ import net.sf.xmlunit.diff.Comparison;
 import net.sf.xmlunit.diff.ComparisonType;
 import net.sf.xmlunit.diff.internal.Comparisons;
 import net.sf.xmlunit.diff.internal.NodeAndXpath;
+import net.sf.xmlunit.util.WhitespaceNormalizedText;
 
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Node;
 
 public class CharacterDataComparisonProvider extends ComparisonProvider<CharacterData> {
 
+	private final boolean normalizeWhitespace;
+
+	public CharacterDataComparisonProvider() {
+		this(false);
+	}
+
+	/**
+	 * @param normalizeWhitespace
+	 *            whether values are compared as {@link WhitespaceNormalizedText}
+	 *            instead of strings
+	 */
+	public CharacterDataComparisonProvider(boolean normalizeWhitespace) {
+		this.normalizeWhitespace = normalizeWhitespace;
+	}
+
 	@Override
 	public Comparisons provideComparisons(NodeAndXpath<CharacterData> control, NodeAndXpath<CharacterData> test) {
 		CharacterData controlNode = control.getNode();
@@ -48,9 +64,13 @@ public class CharacterDataComparisonProvider extends ComparisonProvider<Characte
 
 		comparisons.add(
 		        Comparison.ofType(comparisonType)
-		                .between(control, controlNode.getData())
-		                .and(test, testNode.getData()));
+		                .between(control, value(controlNode.getData(), normalizeWhitespace))
+		                .and(test, value(testNode.getData(), normalizeWhitespace)));
 
 		return comparisons;
 	}
+
+	static Object value(String s, boolean normalizeWhitespace) {
+		return normalizeWhitespace ? WhitespaceNormalizedText.of(s) : s;
+	}
 }
@@ -33,13 +33,24 @@ import org.w3c.dom.Node;
 public class ElementComparisonProvider extends ComparisonProvider<Element> {
 
 	final boolean ignoreAttributeOrder;
+	private final AttributeComparisonProvider attributeComparisonProvider;
 
 	ElementComparisonProvider(boolean ignoreAttributeOrder, NodeAndXpath<Element> control, NodeAndXpath<Element> test) {
-		this.ignoreAttributeOrder = ignoreAttributeOrder;
+		this(ignoreAttributeOrder);
 	}
 
 	public ElementComparisonProvider(boolean ignoreAttributeOrder) {
+		this(ignoreAttributeOrder, false);
+	}
+
+	/**
+	 * @param normalizeWhitespace
+	 *            whether attribute values are compared with normalized
+	 *            whitespace
+	 */
+	public ElementComparisonProvider(boolean ignoreAttributeOrder, boolean normalizeWhitespace) {
 		this.ignoreAttributeOrder = ignoreAttributeOrder;
+		this.attributeComparisonProvider = new AttributeComparisonProvider(normalizeWhitespace);
 	}
 
 	@Override
@@ -167,7 +178,7 @@ public class ElementComparisonProvider extends ComparisonProvider<Element> {
 		        .provideComparisons(
 		                NodeAndXpath.<Node> from(controlAttr, controlContext),
 		                NodeAndXpath.<Node> from(testAttr, testContext)));
-		comparisons.addAll(new AttributeComparisonProvider()
+		comparisons.addAll(attributeComparisonProvider
 		        .provideComparisons(
 		                NodeAndXpath.from(controlAttr, controlContext),
 		                NodeAndXpath.from(testAttr, testContext)));
@@ -17,11 +17,27 @@ import net.sf.xmlunit.diff.Comparison;
 import net.sf.xmlunit.diff.ComparisonType;
 import net.sf.xmlunit.diff.internal.Comparisons;
 import net.sf.xmlunit.diff.internal.NodeAndXpath;
+import net.sf.xmlunit.util.WhitespaceNormalizedText;
 
 import org.w3c.dom.ProcessingInstruction;
 
 public class ProcInstrComparisonProvider extends ComparisonProvider<ProcessingInstruction> {
 
+	private final boolean normalizeWhitespace;
+
+	public ProcInstrComparisonProvider() {
+		this(false);
+	}
+
+	/**
+	 * @param normalizeWhitespace
+	 *            whether data is compared as {@link WhitespaceNormalizedText}
+	 *            instead of strings
+	 */
+	public ProcInstrComparisonProvider(boolean normalizeWhitespace) {
+		this.normalizeWhitespace = normalizeWhitespace;
+	}
+
 	@Override
 	public Comparisons provideComparisons(
 	        NodeAndXpath<ProcessingInstruction> control, NodeAndXpath<ProcessingInstruction> test) {
@@ -37,8 +53,9 @@ public class ProcInstrComparisonProvider extends ComparisonProvider<ProcessingIn
 
 		comparisons.add(
 		        Comparison.ofType(ComparisonType.PROCESSING_INSTRUCTION_DATA)
-		                .between(control, controlInstr.getData())
-		                .and(test, testInstr.getData()));
+		                .between(control, CharacterDataComparisonProvider.value(
+		                        controlInstr.getData(), normalizeWhitespace))
+		                .and(test, CharacterDataComparisonProvider.value(testInstr.getData(), normalizeWhitespace)));
 
 		return comparisons;
 	}
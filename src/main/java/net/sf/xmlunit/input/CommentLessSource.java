@@ -13,36 +13,59 @@
  */
 package net.sf.xmlunit.input;
 
-import java.io.StringReader;
-
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.transform.Transformation;
 import net.sf.xmlunit.util.Preconditions;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
 /**
  * A source that is obtained from a different source by stripping all comments.
+ *
+ * <p>
+ * The original source is copied by an identity transformation - which doesn't
+ * need a stylesheet to be compiled - and the comments are removed from the
+ * copy.
+ * </p>
  */
 public final class CommentLessSource extends DOMSource {
 
     public CommentLessSource(Source originalSource) {
         Preconditions.checkArgument(originalSource != null, "Source must not be null!");
-        Transformation t = new Transformation(originalSource);
-        t.setStylesheet(getStylesheet());
-        setNode(t.transformToDocument());
+        Document copy = new Transformation(originalSource).transformToDocument();
+        stripComments(copy);
+        setNode(copy);
     }
 
-    private static final String STYLE =
-            "<stylesheet xmlns=\"http://www.w3.org/1999/XSL/Transform\">"
-                    + "<template match=\"node()[not(self::comment())]|@*\"><copy>"
-                    + "<apply-templates select=\"node()[not(self::comment())]|@*\"/>"
-                    + "</copy></template>"
-                    + "</stylesheet>";
+    /**
+     * Removes all comments below the given node, text nodes that have been
+     * separated by a comment are merged the way an XSLT copy would do.
+     */
+    private static void stripComments(Node n) {
+        Node child = n.getFirstChild();
+        while (child != null) {
+            Node next = child.getNextSibling();
+            if (child.getNodeType() == Node.COMMENT_NODE) {
+                Node previous = child.getPreviousSibling();
+                n.removeChild(child);
+                if (isText(previous) && isText(next)) {
+                    previous.setNodeValue(previous.getNodeValue() + next.getNodeValue());
+                    Node afterNext = next.getNextSibling();
+                    n.removeChild(next);
+                    next = afterNext;
+                }
+            } else if (child.getNodeType() == Node.ELEMENT_NODE) {
+                stripComments(child);
+            }
+            child = next;
+        }
+    }
 
-    private static Source getStylesheet() {
-        return new StreamSource(new StringReader(STYLE));
+    private static boolean isText(Node n) {
+        return n != null && n.getNodeType() == Node.TEXT_NODE;
     }
 
 }
@@ -18,6 +18,9 @@ import javax.xml.transform.dom.DOMSource;
 import net.sf.xmlunit.util.Convert;
 import net.sf.xmlunit.util.Nodes;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
 /**
  * A source that is obtained from a different source by removing all empty text
  * nodes and normalizing the non-empty ones.
@@ -30,7 +33,14 @@ import net.sf.xmlunit.util.Nodes;
 public class WhitespaceNormalizedSource extends DOMSource {
 
     public WhitespaceNormalizedSource(Source originalSource) {
-        super(Nodes.normalizeWhitespace(Convert.toDocument(originalSource)));
+        super(normalizeWhitespace(originalSource));
         setSystemId(originalSource.getSystemId());
     }
+
+    private static Node normalizeWhitespace(Source originalSource) {
+        Document d = Convert.toDocument(originalSource);
+        // a Document parsed or transformed just now can be modified directly
+        return originalSource instanceof DOMSource && ((DOMSource) originalSource).getNode() == d
+                ? Nodes.normalizeWhitespace(d) : Nodes.normalizeWhitespaceInPlace(d);
+    }
 }
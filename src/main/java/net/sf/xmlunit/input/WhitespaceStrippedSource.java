@@ -18,6 +18,9 @@ import javax.xml.transform.dom.DOMSource;
 import net.sf.xmlunit.util.Convert;
 import net.sf.xmlunit.util.Nodes;
 
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
 /**
  * A source that is obtained from a different source by removing all empty text
  * nodes and trimming the non-empty ones.
@@ -25,7 +28,14 @@ import net.sf.xmlunit.util.Nodes;
 public class WhitespaceStrippedSource extends DOMSource {
 
     public WhitespaceStrippedSource(Source originalSource) {
-        super(Nodes.stripWhitespace(Convert.toDocument(originalSource)));
+        super(stripWhitespace(originalSource));
         setSystemId(originalSource.getSystemId());
     }
+
+    private static Node stripWhitespace(Source originalSource) {
+        Document d = Convert.toDocument(originalSource);
+        // a Document parsed or transformed just now can be modified directly
+        return originalSource instanceof DOMSource && ((DOMSource) originalSource).getNode() == d
+                ? Nodes.stripWhitespace(d) : Nodes.stripWhitespaceInPlace(d);
+    }
 }
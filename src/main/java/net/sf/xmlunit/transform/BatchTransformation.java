@@ -0,0 +1,559 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.transform;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import net.sf.xmlunit.util.WorkerPools;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Document;
+
+/**
+ * Transforms many sources with the same stylesheet and settings using a
+ * bounded number of threads.
+ *
+ * <p>
+ * The stylesheet is compiled once, the Transformers created from it are
+ * reused for further sources and released once the batch is complete or
+ * its results are {@link Results#close closed}. The sources are
+ * read lazily by the thread iterating over the {@link Results}, which holds
+ * at most {@link #setMaxPendingResults a fixed number} of transformed
+ * documents that haven't been consumed, yet. Results are returned in the
+ * order of the sources, a failed transformation is reported by its result
+ * and doesn't stop the batch. The sources are transformed by the
+ * {@link #setExecutor given executor} or by a thread pool of the batch.
+ * </p>
+ *
+ * <p>
+ * The output properties of the stylesheet apply, if its output method isn't
+ * xml the serialized output is kept instead of a document.
+ * </p>
+ */
+public final class BatchTransformation {
+    private final Iterable<? extends Source> sources;
+    private Source styleSheet;
+    private TransformerFactory factory;
+    private URIResolver uriResolver;
+    private ErrorListener errorListener;
+    private final Properties output = new Properties();
+    private final Map<String, Object> params = new HashMap<String, Object>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxPendingResults;
+    private Executor executor;
+
+    /**
+     * @param sources
+     *            the sources to transform - must not be null.
+     */
+    public BatchTransformation(Iterable<? extends Source> sources) {
+        if (sources == null) {
+            throw new IllegalArgumentException("sources must not be null");
+        }
+        this.sources = sources;
+    }
+
+    /**
+     * Set the stylesheet to use.
+     *
+     * @param s
+     *            the stylesheet to use - may be null in which case an identity
+     *            transformation will be performed.
+     */
+    public void setStylesheet(Source s) {
+        styleSheet = s;
+    }
+
+    /**
+     * Add a named output property.
+     */
+    public void addOutputProperty(String name, String value) {
+        if (name == null) {
+            throw new IllegalArgumentException("name must not be null");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("value must not be null");
+        }
+        output.setProperty(name, value);
+    }
+
+    /**
+     * Add a named parameter.
+     */
+    public void addParameter(String name, Object value) {
+        if (name == null) {
+            throw new IllegalArgumentException("name must not be null");
+        }
+        params.put(name, value);
+    }
+
+    /**
+     * Set the TraX factory to use.
+     */
+    public void setFactory(TransformerFactory f) {
+        factory = f;
+    }
+
+    /**
+     * Set the resolver to use for document() and xsl:include/import.
+     */
+    public void setURIResolver(URIResolver r) {
+        uriResolver = r;
+    }
+
+    /**
+     * Set the error listener for the transformations, it may be invoked by
+     * several threads concurrently.
+     */
+    public void setErrorListener(ErrorListener l) {
+        errorListener = l;
+    }
+
+    /**
+     * Set the number of threads transforming sources, defaults to the number
+     * of available processors.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Transforms the sources using the given executor instead of a thread
+     * pool created for the batch.
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Set the number of results that may be transformed ahead of the
+     * iteration, defaults to twice the number of threads.
+     */
+    public void setMaxPendingResults(int maxPendingResults) {
+        if (maxPendingResults < 1) {
+            throw new IllegalArgumentException("maxPendingResults must be positive");
+        }
+        this.maxPendingResults = maxPendingResults;
+    }
+
+    /**
+     * Starts transforming the sources into DOM Documents - or their
+     * serialized output if the output method isn't xml.
+     *
+     * @exception ConfigurationException
+     *                if the stylesheet cannot be compiled or the TraX system
+     *                isn't configured properly
+     */
+    public Results transformToDocuments() {
+        Templates templates = null;
+        // factories aren't thread-safe, users synchronize on it
+        TransformerFactory identityFactory = factory != null ? factory : TemplatesCache.getDefaultFactory();
+        if (styleSheet != null) {
+            try {
+                templates = TemplatesCache.getTemplates(styleSheet, factory);
+            } catch (TransformerConfigurationException e) {
+                throw new ConfigurationException(e);
+            }
+        }
+        int pending = maxPendingResults > 0 ? maxPendingResults : 2 * threads;
+        return new Results(new Worker(templates, identityFactory, uriResolver, errorListener,
+                (Properties) output.clone(), new HashMap<String, Object>(params), threads),
+                sources.iterator(), executor, threads, pending);
+    }
+
+    /**
+     * The outcome of transforming a single source.
+     */
+    public static final class Result {
+        private final Source source;
+        private final Document document;
+        private final byte[] serialized;
+        private final Properties output;
+        private final TransformerFactory identityFactory;
+        private final RuntimeException failure;
+
+        private Result(Source source, Document document, byte[] serialized, Properties output,
+                TransformerFactory identityFactory) {
+            this.source = source;
+            this.document = document;
+            this.serialized = serialized;
+            this.output = output;
+            this.identityFactory = identityFactory;
+            failure = null;
+        }
+
+        private Result(Source source, RuntimeException failure) {
+            this.source = source;
+            document = null;
+            serialized = null;
+            output = null;
+            identityFactory = null;
+            this.failure = failure;
+        }
+
+        /**
+         * The transformed source.
+         */
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * Whether the transformation succeeded.
+         */
+        public boolean isSuccessful() {
+            return failure == null;
+        }
+
+        /**
+         * The exception the transformation failed with or null.
+         */
+        public RuntimeException getFailure() {
+            return failure;
+        }
+
+        /**
+         * The result of the transformation.
+         *
+         * @exception ConfigurationException
+         *                if the TraX system isn't configured properly
+         * @exception XMLUnitRuntimeException
+         *                if the transformation has failed
+         */
+        public Document getDocument() {
+            if (failure != null) {
+                throw failure;
+            }
+            if (document == null) {
+                throw new XMLUnitRuntimeException("The output method "
+                        + output.getProperty(OutputKeys.METHOD) + " doesn't create a document");
+            }
+            return document;
+        }
+
+        /**
+         * Writes the result of the transformation using the output
+         * properties of the stylesheet and the batch.
+         *
+         * <p>
+         * If the output method isn't xml the result must be a StreamResult
+         * with a Writer or an OutputStream.
+         * </p>
+         *
+         * @exception ConfigurationException
+         *                if the TraX system isn't configured properly
+         * @exception XMLUnitRuntimeException
+         *                if the transformation has failed or the result
+         *                cannot be written
+         */
+        public void transformTo(javax.xml.transform.Result r) {
+            if (r == null) {
+                throw new IllegalArgumentException("result must not be null");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (serialized != null) {
+                writeSerialized(r);
+                return;
+            }
+            try {
+                Transformer t;
+                synchronized (identityFactory) {
+                    t = identityFactory.newTransformer();
+                }
+                t.setOutputProperties(output);
+                t.transform(new DOMSource(document), r);
+            } catch (TransformerConfigurationException e) {
+                throw new ConfigurationException(e);
+            } catch (TransformerException e) {
+                throw new XMLUnitRuntimeException(e);
+            }
+        }
+
+        /**
+         * The result of the transformation as a String.
+         *
+         * @see #transformTo
+         */
+        public String transformToString() {
+            if (failure == null && serialized != null) {
+                return decode(serialized);
+            }
+            StringWriter sw = new StringWriter();
+            transformTo(new StreamResult(sw));
+            return sw.toString();
+        }
+
+        private void writeSerialized(javax.xml.transform.Result r) {
+            StreamResult stream = r instanceof StreamResult ? (StreamResult) r : null;
+            try {
+                if (stream != null && stream.getOutputStream() != null) {
+                    stream.getOutputStream().write(serialized);
+                    stream.getOutputStream().flush();
+                } else if (stream != null && stream.getWriter() != null) {
+                    stream.getWriter().write(decode(serialized));
+                    stream.getWriter().flush();
+                } else {
+                    throw new XMLUnitRuntimeException("The output of method "
+                            + output.getProperty(OutputKeys.METHOD)
+                            + " can only be written to a Writer or OutputStream");
+                }
+            } catch (IOException e) {
+                throw new XMLUnitRuntimeException("Failed to write the transformation result", e);
+            }
+        }
+
+        private String decode(byte[] bytes) {
+            String encoding = output.getProperty(OutputKeys.ENCODING);
+            try {
+                return new String(bytes, encoding != null ? encoding : "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                // the transformer has used it
+                throw new XMLUnitRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Results of a batch in the order of their sources.
+     *
+     * <p>
+     * Not thread-safe, a single thread is supposed to consume the results.
+     * The worker threads of the batch's own pool end once the last result
+     * has been returned or the results are {@link #close closed}, or after
+     * they have been idle for a while if the results are abandoned. The
+     * Transformers of the batch are released at the same time.
+     * </p>
+     */
+    public static final class Results implements Iterator<Result> {
+        private final Worker worker;
+        private final Iterator<? extends Source> sources;
+        private final int maxPending;
+        // null if the caller has supplied the executor
+        private final ExecutorService pool;
+        private final Executor executor;
+        private final Deque<Future<Result>> pending = new ArrayDeque<Future<Result>>();
+
+        private Results(Worker worker, Iterator<? extends Source> sources, Executor executor, int threads,
+                int maxPending) {
+            this.worker = worker;
+            this.sources = sources;
+            this.maxPending = maxPending;
+            pool = executor == null ? WorkerPools.newPool("transform", threads) : null;
+            this.executor = pool != null ? pool : executor;
+            fill();
+        }
+
+        public boolean hasNext() {
+            return !pending.isEmpty();
+        }
+
+        public Result next() {
+            Future<Result> next = pending.poll();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Result r;
+            try {
+                r = next.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new XMLUnitRuntimeException("Interrupted while waiting for transformation", e);
+            } catch (ExecutionException e) {
+                // the worker catches everything it expects
+                close();
+                throw new XMLUnitRuntimeException(e.getCause());
+            }
+            fill();
+            return r;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops all transformations and discards results not consumed,
+         * yet.
+         */
+        public void close() {
+            for (Future<Result> f : pending) {
+                f.cancel(true);
+            }
+            pending.clear();
+            worker.release();
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        /**
+         * Number of Transformers kept for further sources.
+         */
+        int getIdleTransformers() {
+            return worker.idle.size();
+        }
+
+        private void fill() {
+            while (pending.size() < maxPending && sources.hasNext()) {
+                final Source s = sources.next();
+                FutureTask<Result> task = new FutureTask<Result>(new Callable<Result>() {
+                    public Result call() {
+                        return worker.transform(s);
+                    }
+                });
+                executor.execute(task);
+                pending.add(task);
+            }
+            if (pending.isEmpty()) {
+                worker.release();
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs the transformations, keeps at most one idle Transformer per
+     * thread of the batch until it is released.
+     *
+     * <p>
+     * The Transformers aren't bound to the threads, so threads of a caller
+     * supplied executor don't keep them alive after the batch.
+     * </p>
+     */
+    private static final class Worker {
+        private final Templates templates;
+        private final TransformerFactory identityFactory;
+        private final URIResolver uriResolver;
+        private final ErrorListener errorListener;
+        private final Properties output;
+        private final Map<String, Object> params;
+        private final BlockingQueue<Transformer> idle;
+        private volatile boolean released;
+
+        private Worker(Templates templates, TransformerFactory identityFactory, URIResolver uriResolver,
+                ErrorListener errorListener, Properties output, Map<String, Object> params, int threads) {
+            this.templates = templates;
+            this.identityFactory = identityFactory;
+            this.uriResolver = uriResolver;
+            this.errorListener = errorListener;
+            this.output = output;
+            this.params = params;
+            idle = new LinkedBlockingQueue<Transformer>(threads);
+        }
+
+        private Result transform(Source s) {
+            Transformer t = idle.poll();
+            try {
+                if (t == null) {
+                    t = newTransformer();
+                }
+                // the stylesheet's xsl:output merged with the batch's
+                Properties effectiveOutput = t.getOutputProperties();
+                String method = effectiveOutput.getProperty(OutputKeys.METHOD);
+                if (method == null || "xml".equals(method)) {
+                    DOMResult r = new DOMResult();
+                    t.transform(s, r);
+                    reuse(t);
+                    return new Result(s, (Document) r.getNode(), null, effectiveOutput, identityFactory);
+                }
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                t.transform(s, new StreamResult(out));
+                reuse(t);
+                return new Result(s, null, out.toByteArray(), effectiveOutput, identityFactory);
+            } catch (TransformerConfigurationException e) {
+                return new Result(s, new ConfigurationException(e));
+            } catch (TransformerException e) {
+                // don't trust a Transformer that has failed
+                return new Result(s, new XMLUnitRuntimeException(e));
+            } catch (RuntimeException e) {
+                return new Result(s, e);
+            }
+        }
+
+        private void reuse(Transformer t) {
+            if (!released) {
+                idle.offer(t);
+                // the batch may have been released concurrently
+                if (released) {
+                    idle.clear();
+                }
+            }
+        }
+
+        /**
+         * Drops the idle Transformers, Transformers still in use are dropped
+         * once they are done.
+         */
+        private void release() {
+            released = true;
+            idle.clear();
+        }
+
+        private Transformer newTransformer() throws TransformerConfigurationException {
+            Transformer t;
+            if (templates != null) {
+                t = templates.newTransformer();
+            } else {
+                synchronized (identityFactory) {
+                    t = identityFactory.newTransformer();
+                }
+            }
+            Transformation.configure(t, uriResolver, errorListener, output, params);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.transform;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+
+import net.sf.xmlunit.util.CompilationCache;
+
+/**
+ * Compiled stylesheets shared by all {@link Transformation}s of the JVM.
+ *
+ * <p>
+ * Stylesheets are identified by their system id or - for streams - by their
+ * content and system id, together with the factory compiling them and its
+ * URIResolver. Other stylesheet sources, like DOM sources, are compiled each
+ * time. Templates
+ * are thread-safe, the least recently used ones are dropped once the cache
+ * holds {@link #SIZE} of them.
+ * </p>
+ */
+final class TemplatesCache {
+    static final int SIZE = 64;
+
+    private static final CompilationCache<Key, Templates> TEMPLATES = new CompilationCache<Key, Templates>(SIZE);
+
+    private static TransformerFactory defaultFactory;
+
+    private TemplatesCache() {
+    }
+
+    /**
+     * The factory used when a transformation doesn't specify one.
+     *
+     * <p>
+     * TransformerFactory isn't thread-safe, callers must synchronize on the
+     * returned instance.
+     * </p>
+     */
+    static synchronized TransformerFactory getDefaultFactory() {
+        if (defaultFactory == null) {
+            defaultFactory = TransformerFactory.newInstance();
+        }
+        return defaultFactory;
+    }
+
+    /**
+     * Returns the compiled stylesheet, compiling it with the given factory -
+     * or the default factory if it is null - unless it has been compiled
+     * before.
+     */
+    static Templates getTemplates(Source styleSheet, TransformerFactory factory)
+            throws TransformerConfigurationException {
+        TransformerFactory fac = factory != null ? factory : getDefaultFactory();
+        CompilationCache.Identified source = CompilationCache.identify(styleSheet);
+        if (source.getId() == null) {
+            return compile(source.getSource(), fac, factory == null);
+        }
+
+        Key key = new Key(source.getId(), fac, fac.getURIResolver());
+        Templates templates = TEMPLATES.get(key);
+        if (templates == null) {
+            templates = compile(source.getSource(), fac, factory == null);
+            TEMPLATES.put(key, templates);
+        }
+        return templates;
+    }
+
+    /**
+     * Drops all compiled stylesheets.
+     */
+    static void clear() {
+        TEMPLATES.clear();
+    }
+
+    private static Templates compile(Source styleSheet, TransformerFactory fac, boolean shared)
+            throws TransformerConfigurationException {
+        if (!shared) {
+            return fac.newTemplates(styleSheet);
+        }
+        synchronized (fac) {
+            return fac.newTemplates(styleSheet);
+        }
+    }
+
+    private static final class Key {
+        private final Object id;
+        // configured factories may compile differently, so they are
+        // compared by identity
+        private final TransformerFactory factory;
+        private final URIResolver resolver;
+
+        private Key(Object id, TransformerFactory factory, URIResolver resolver) {
+            this.id = id;
+            this.factory = factory;
+            this.resolver = resolver;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return factory == other.factory
+                    && resolver == other.resolver
+                    && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode() * 31 + System.identityHashCode(factory);
+        }
+    }
+}
@@ -44,6 +44,14 @@ import org.w3c.dom.Document;
  * Each invocation of a transform method will use a fresh Transformer instance,
  * the transform methods are thread-safe.
  * </p>
+ * 
+ * <p>
+ * Stylesheets are compiled once and shared by all instances as long as they
+ * can be identified by their system id or - for streams - their content. The
+ * cache is keyed by the class and URIResolver of the factory as well, it
+ * doesn't notice changes to the stylesheet's file; use
+ * {@link #clearStylesheetCache} in that case.
+ * </p>
  */
 public final class Transformation {
 	private final Source source;
@@ -164,6 +172,13 @@ public final class Transformation {
 		errorListener = l;
 	}
 
+	/**
+	 * Drops all stylesheets compiled by any Transformation.
+	 */
+	public static void clearStylesheetCache() {
+		TemplatesCache.clear();
+	}
+
 	/**
 	 * Perform the transformation.
 	 * 
@@ -181,26 +196,18 @@ public final class Transformation {
 			throw new IllegalArgumentException("result must not be null");
 		}
 		try {
-			TransformerFactory fac = factory;
-			if (fac == null) {
-				fac = TransformerFactory.newInstance();
-			}
 			Transformer t = null;
 			if (styleSheet != null) {
-				t = fac.newTransformer(styleSheet);
+				t = TemplatesCache.getTemplates(styleSheet, factory).newTransformer();
+			} else if (factory != null) {
+				t = factory.newTransformer();
 			} else {
-				t = fac.newTransformer();
-			}
-			if (uriResolver != null) {
-				t.setURIResolver(uriResolver);
-			}
-			if (errorListener != null) {
-				t.setErrorListener(errorListener);
-			}
-			t.setOutputProperties(output);
-			for (Map.Entry<String, Object> ent : params.entrySet()) {
-				t.setParameter(ent.getKey(), ent.getValue());
+				TransformerFactory fac = TemplatesCache.getDefaultFactory();
+				synchronized (fac) {
+					t = fac.newTransformer();
+				}
 			}
+			configure(t, uriResolver, errorListener, output, params);
 			t.transform(source, r);
 		} catch (javax.xml.transform.TransformerConfigurationException e) {
 			throw new ConfigurationException(e);
@@ -209,6 +216,23 @@ public final class Transformation {
 		}
 	}
 
+	/**
+	 * Applies the settings of a transformation to a Transformer.
+	 */
+	static void configure(Transformer t, URIResolver uriResolver, ErrorListener errorListener,
+	        Properties output, Map<String, Object> params) {
+		if (uriResolver != null) {
+			t.setURIResolver(uriResolver);
+		}
+		if (errorListener != null) {
+			t.setErrorListener(errorListener);
+		}
+		t.setOutputProperties(output);
+		for (Map.Entry<String, Object> ent : params.entrySet()) {
+			t.setParameter(ent.getKey(), ent.getValue());
+		}
+	}
+
 	/**
 	 * Convenience method that returns the result of the transformation as a
 	 * String.
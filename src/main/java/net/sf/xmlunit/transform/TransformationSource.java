@@ -0,0 +1,114 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamResult;
+
+import net.sf.xmlunit.util.ConvertibleSource;
+import net.sf.xmlunit.util.EventEmittingReader;
+import net.sf.xmlunit.util.Preconditions;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A source holding the result of a transformation that is only performed
+ * once the source is read.
+ *
+ * <p>
+ * Readers that accept a SAXSource - a TraX Transformer or a SAX based tree
+ * builder - receive the result of the transformation as SAX events, without
+ * a Document or serialized form of the result being built first.
+ * {@link #toDocument} and {@link #toInputSource} serve readers that need a
+ * tree or a stream.
+ * </p>
+ *
+ * <p>
+ * The transformation is performed each time the source is read, so the
+ * source can only be read as often as the transformation's own source.
+ * </p>
+ */
+public final class TransformationSource extends SAXSource implements ConvertibleSource {
+    private final Transformation transformation;
+
+    /**
+     * @param t
+     *            the transformation to perform - must not be null.
+     */
+    public TransformationSource(Transformation t) {
+        Preconditions.checkArgument(t != null, "Transformation must not be null!");
+        transformation = t;
+        setXMLReader(new TransformingReader(t));
+        setInputSource(new InputSource());
+    }
+
+    /**
+     * Performs the transformation into a new Document created by the given
+     * builder.
+     */
+    @Override
+    public Document toDocument(DocumentBuilder builder) {
+        Document d = builder.newDocument();
+        transformation.transformTo(new DOMResult(d));
+        return d;
+    }
+
+    /**
+     * Performs the transformation into a serialized form.
+     */
+    @Override
+    public InputSource toInputSource() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        transformation.transformTo(new StreamResult(bos));
+        return new InputSource(new ByteArrayInputStream(bos.toByteArray()));
+    }
+
+    /**
+     * XMLReader that emits the result of a transformation instead of parsing
+     * its input.
+     */
+    private static final class TransformingReader extends EventEmittingReader {
+        private final Transformation transformation;
+
+        private TransformingReader(Transformation transformation) {
+            this.transformation = transformation;
+        }
+
+        @Override
+        public void parse(InputSource input) throws SAXException {
+            SAXResult result = new SAXResult(getTargetContentHandler());
+            if (getLexicalHandler() != null) {
+                result.setLexicalHandler(getLexicalHandler());
+            }
+            try {
+                transformation.transformTo(result);
+            } catch (XMLUnitRuntimeException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SAXException) {
+                    throw (SAXException) cause;
+                }
+                throw new SAXException(cause instanceof Exception ? (Exception) cause : e);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * Read-only DOM Attr view of a {@link NodeAccessor} handle.
+ *
+ * <p>
+ * Unlike most DOM implementations the attribute has no Text child, its
+ * value is only available via {@link #getValue}.
+ * </p>
+ */
+final class AccessorAttr extends AccessorNode implements Attr {
+
+    AccessorAttr(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    public String getNodeName() {
+        return getQualifiedName();
+    }
+
+    @Override
+    public String getNodeValue() {
+        return getValue();
+    }
+
+    @Override
+    public String getTextContent() {
+        return getValue();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return accessor().getNamespaceURI(handle);
+    }
+
+    @Override
+    public String getPrefix() {
+        return accessor().getPrefix(handle);
+    }
+
+    @Override
+    public String getLocalName() {
+        return accessor().getLocalName(handle);
+    }
+
+    @Override
+    public Node getParentNode() {
+        return null;
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return null;
+    }
+
+    public String getName() {
+        return getQualifiedName();
+    }
+
+    public boolean getSpecified() {
+        return accessor().isSpecified(handle);
+    }
+
+    public String getValue() {
+        return accessor().getValue(handle);
+    }
+
+    public void setValue(String value) {
+        throw readOnly();
+    }
+
+    public Element getOwnerElement() {
+        return (Element) doc.node(accessor().getParent(handle));
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    public boolean isId() {
+        return false;
+    }
+}
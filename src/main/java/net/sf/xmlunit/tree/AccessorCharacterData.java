@@ -0,0 +1,74 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * Read-only DOM CharacterData view of a {@link NodeAccessor} handle.
+ */
+abstract class AccessorCharacterData extends AccessorNode implements CharacterData {
+
+    AccessorCharacterData(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    @Override
+    public String getNodeValue() {
+        return getData();
+    }
+
+    @Override
+    public String getTextContent() {
+        return getData();
+    }
+
+    public String getData() {
+        return accessor().getValue(handle);
+    }
+
+    public void setData(String data) {
+        throw readOnly();
+    }
+
+    public int getLength() {
+        return getData().length();
+    }
+
+    public String substringData(int offset, int count) {
+        String data = getData();
+        if (offset < 0 || count < 0 || offset > data.length()) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR, "offset " + offset
+                    + ", count " + count + " out of bounds");
+        }
+        return data.substring(offset, Math.min(data.length(), offset + count));
+    }
+
+    public void appendData(String arg) {
+        throw readOnly();
+    }
+
+    public void insertData(int offset, String arg) {
+        throw readOnly();
+    }
+
+    public void deleteData(int offset, int count) {
+        throw readOnly();
+    }
+
+    public void replaceData(int offset, int count, String arg) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.Comment;
+
+/**
+ * Read-only DOM Comment view of a {@link NodeAccessor} handle.
+ */
+final class AccessorComment extends AccessorCharacterData implements Comment {
+
+    AccessorComment(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    public String getNodeName() {
+        return "#comment";
+    }
+}
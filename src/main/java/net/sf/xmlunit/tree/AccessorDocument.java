@@ -0,0 +1,246 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * Read-only DOM Document view of a {@link NodeAccessor}.
+ */
+final class AccessorDocument extends AccessorNode implements Document {
+    final NodeAccessor accessor;
+
+    AccessorDocument(NodeAccessor accessor) {
+        super(null, accessor.getDocumentNode());
+        this.accessor = accessor;
+    }
+
+    /**
+     * Creates the view of a handle, null for {@link NodeAccessor#NONE}.
+     */
+    AccessorNode node(int handle) {
+        if (handle == NodeAccessor.NONE) {
+            return null;
+        }
+        switch (accessor.getNodeType(handle)) {
+        case ELEMENT_NODE:
+            return new AccessorElement(this, handle);
+        case ATTRIBUTE_NODE:
+            return new AccessorAttr(this, handle);
+        case TEXT_NODE:
+            return new AccessorText(this, handle);
+        case CDATA_SECTION_NODE:
+            return new AccessorCDATASection(this, handle);
+        case COMMENT_NODE:
+            return new AccessorComment(this, handle);
+        case PROCESSING_INSTRUCTION_NODE:
+            return new AccessorProcessingInstruction(this, handle);
+        case DOCUMENT_TYPE_NODE:
+            return new AccessorDocumentType(this, handle);
+        case DOCUMENT_NODE:
+            return this;
+        default:
+            throw new IllegalStateException("unexpected node type "
+                    + accessor.getNodeType(handle));
+        }
+    }
+
+    private int findChild(short type) {
+        for (int c = accessor.getFirstChild(handle); c != NodeAccessor.NONE; c = accessor.getNextSibling(c)) {
+            if (accessor.getNodeType(c) == type) {
+                return c;
+            }
+        }
+        return NodeAccessor.NONE;
+    }
+
+    public String getNodeName() {
+        return "#document";
+    }
+
+    @Override
+    public Node getParentNode() {
+        return null;
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return null;
+    }
+
+    @Override
+    public Document getOwnerDocument() {
+        return null;
+    }
+
+    @Override
+    public String getTextContent() {
+        return null;
+    }
+
+    @Override
+    int scopeElement() {
+        return findChild(ELEMENT_NODE);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    public DocumentType getDoctype() {
+        return (DocumentType) node(findChild(DOCUMENT_TYPE_NODE));
+    }
+
+    public DOMImplementation getImplementation() {
+        return null;
+    }
+
+    public Element getDocumentElement() {
+        return (Element) node(findChild(ELEMENT_NODE));
+    }
+
+    public Element createElement(String tagName) {
+        throw notSupported();
+    }
+
+    public DocumentFragment createDocumentFragment() {
+        throw notSupported();
+    }
+
+    public Text createTextNode(String data) {
+        throw notSupported();
+    }
+
+    public Comment createComment(String data) {
+        throw notSupported();
+    }
+
+    public CDATASection createCDATASection(String data) {
+        throw notSupported();
+    }
+
+    public ProcessingInstruction createProcessingInstruction(String target, String data) {
+        throw notSupported();
+    }
+
+    public Attr createAttribute(String name) {
+        throw notSupported();
+    }
+
+    public EntityReference createEntityReference(String name) {
+        throw notSupported();
+    }
+
+    public NodeList getElementsByTagName(String tagname) {
+        return AccessorNodeList.descendantElements(this, handle, null, tagname, false);
+    }
+
+    public Node importNode(Node importedNode, boolean deep) {
+        throw notSupported();
+    }
+
+    public Element createElementNS(String namespaceURI, String qualifiedName) {
+        throw notSupported();
+    }
+
+    public Attr createAttributeNS(String namespaceURI, String qualifiedName) {
+        throw notSupported();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+        return AccessorNodeList.descendantElements(this, handle, namespaceURI, localName, true);
+    }
+
+    public Element getElementById(String elementId) {
+        return null;
+    }
+
+    public String getInputEncoding() {
+        return accessor.getXmlEncoding();
+    }
+
+    public String getXmlEncoding() {
+        return accessor.getXmlEncoding();
+    }
+
+    public boolean getXmlStandalone() {
+        return accessor.getXmlStandalone();
+    }
+
+    public void setXmlStandalone(boolean xmlStandalone) {
+        throw readOnly();
+    }
+
+    public String getXmlVersion() {
+        return accessor.getXmlVersion();
+    }
+
+    public void setXmlVersion(String xmlVersion) {
+        throw readOnly();
+    }
+
+    public boolean getStrictErrorChecking() {
+        return true;
+    }
+
+    public void setStrictErrorChecking(boolean strictErrorChecking) {
+    }
+
+    public String getDocumentURI() {
+        return accessor.getSystemId();
+    }
+
+    public void setDocumentURI(String documentURI) {
+        throw readOnly();
+    }
+
+    public Node adoptNode(Node source) {
+        throw readOnly();
+    }
+
+    public DOMConfiguration getDomConfig() {
+        return null;
+    }
+
+    public void normalizeDocument() {
+    }
+
+    public Node renameNode(Node n, String namespaceURI, String qualifiedName) {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * Read-only DOM DocumentType view of a {@link NodeAccessor} handle.
+ *
+ * <p>
+ * Entities and notations are not retained.
+ * </p>
+ */
+final class AccessorDocumentType extends AccessorNode implements DocumentType {
+
+    AccessorDocumentType(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    public String getNodeName() {
+        return getName();
+    }
+
+    @Override
+    public String getTextContent() {
+        return null;
+    }
+
+    public String getName() {
+        return accessor().getLocalName(handle);
+    }
+
+    public NamedNodeMap getEntities() {
+        return new AccessorNamedNodeMap(doc, new int[0]);
+    }
+
+    public NamedNodeMap getNotations() {
+        return new AccessorNamedNodeMap(doc, new int[0]);
+    }
+
+    public String getPublicId() {
+        return accessor().getDoctypePublicId();
+    }
+
+    public String getSystemId() {
+        return accessor().getDoctypeSystemId();
+    }
+
+    public String getInternalSubset() {
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * Read-only DOM Element view of a {@link NodeAccessor} handle.
+ */
+final class AccessorElement extends AccessorNode implements Element {
+
+    AccessorElement(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    public String getNodeName() {
+        return getQualifiedName();
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return accessor().getNamespaceURI(handle);
+    }
+
+    @Override
+    public String getPrefix() {
+        return accessor().getPrefix(handle);
+    }
+
+    @Override
+    public String getLocalName() {
+        return accessor().getLocalName(handle);
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        NodeAccessor a = accessor();
+        int count = 0;
+        for (int at = a.getFirstAttribute(handle); at != NodeAccessor.NONE; at = a.getNextSibling(at)) {
+            count++;
+        }
+        int[] attrs = new int[count];
+        int i = 0;
+        for (int at = a.getFirstAttribute(handle); at != NodeAccessor.NONE; at = a.getNextSibling(at)) {
+            attrs[i++] = at;
+        }
+        return new AccessorNamedNodeMap(doc, attrs);
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return accessor().getFirstAttribute(handle) != NodeAccessor.NONE;
+    }
+
+    @Override
+    int scopeElement() {
+        return handle;
+    }
+
+    public String getTagName() {
+        return getQualifiedName();
+    }
+
+    public String getAttribute(String name) {
+        Attr a = getAttributeNode(name);
+        return a == null ? "" : a.getValue();
+    }
+
+    public void setAttribute(String name, String value) {
+        throw readOnly();
+    }
+
+    public void removeAttribute(String name) {
+        throw readOnly();
+    }
+
+    public Attr getAttributeNode(String name) {
+        return (Attr) doc.node(findAttribute(null, name, false));
+    }
+
+    public Attr setAttributeNode(Attr newAttr) {
+        throw readOnly();
+    }
+
+    public Attr removeAttributeNode(Attr oldAttr) {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagName(String name) {
+        return AccessorNodeList.descendantElements(doc, handle, null, name, false);
+    }
+
+    public String getAttributeNS(String namespaceURI, String localName) {
+        Attr a = getAttributeNodeNS(namespaceURI, localName);
+        return a == null ? "" : a.getValue();
+    }
+
+    public void setAttributeNS(String namespaceURI, String qualifiedName, String value) {
+        throw readOnly();
+    }
+
+    public void removeAttributeNS(String namespaceURI, String localName) {
+        throw readOnly();
+    }
+
+    public Attr getAttributeNodeNS(String namespaceURI, String localName) {
+        return (Attr) doc.node(findAttribute(namespaceURI, localName, true));
+    }
+
+    public Attr setAttributeNodeNS(Attr newAttr) {
+        throw readOnly();
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) {
+        return AccessorNodeList.descendantElements(doc, handle, namespaceURI, localName, true);
+    }
+
+    public boolean hasAttribute(String name) {
+        return findAttribute(null, name, false) != NodeAccessor.NONE;
+    }
+
+    public boolean hasAttributeNS(String namespaceURI, String localName) {
+        return findAttribute(namespaceURI, localName, true) != NodeAccessor.NONE;
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    public void setIdAttribute(String name, boolean isId) {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNode(Attr idAttr, boolean isId) {
+        throw readOnly();
+    }
+
+    private int findAttribute(String namespaceURI, String name, boolean namespaceAware) {
+        return AccessorNamedNodeMap.find(accessor(), accessor().getFirstAttribute(handle),
+                namespaceURI, name, namespaceAware);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Read-only NamedNodeMap over the attributes of an element.
+ */
+final class AccessorNamedNodeMap implements NamedNodeMap {
+    private final AccessorDocument doc;
+    private final int[] handles;
+
+    AccessorNamedNodeMap(AccessorDocument doc, int[] handles) {
+        this.doc = doc;
+        this.handles = handles;
+    }
+
+    public Node getNamedItem(String name) {
+        NodeAccessor a = doc.accessor;
+        for (int h : handles) {
+            if (hasQualifiedName(a, h, name)) {
+                return doc.node(h);
+            }
+        }
+        return null;
+    }
+
+    public Node setNamedItem(Node arg) {
+        throw AccessorNode.readOnly();
+    }
+
+    public Node removeNamedItem(String name) {
+        throw AccessorNode.readOnly();
+    }
+
+    public Node item(int index) {
+        return index < 0 || index >= handles.length ? null : doc.node(handles[index]);
+    }
+
+    public int getLength() {
+        return handles.length;
+    }
+
+    public Node getNamedItemNS(String namespaceURI, String localName) {
+        NodeAccessor a = doc.accessor;
+        for (int h : handles) {
+            if (matches(a, h, namespaceURI, localName)) {
+                return doc.node(h);
+            }
+        }
+        return null;
+    }
+
+    public Node setNamedItemNS(Node arg) {
+        throw AccessorNode.readOnly();
+    }
+
+    public Node removeNamedItemNS(String namespaceURI, String localName) {
+        throw AccessorNode.readOnly();
+    }
+
+    /**
+     * Finds an attribute in the chain starting at first.
+     *
+     * @return the attribute's handle or {@link NodeAccessor#NONE}
+     */
+    static int find(NodeAccessor a, int first, String namespaceURI, String name,
+            boolean namespaceAware) {
+        for (int h = first; h != NodeAccessor.NONE; h = a.getNextSibling(h)) {
+            if (namespaceAware) {
+                if (matches(a, h, namespaceURI, name)) {
+                    return h;
+                }
+            } else if (hasQualifiedName(a, h, name)) {
+                return h;
+            }
+        }
+        return NodeAccessor.NONE;
+    }
+
+    static boolean hasQualifiedName(NodeAccessor a, int h, String name) {
+        String prefix = a.getPrefix(h);
+        String local = a.getLocalName(h);
+        if (prefix == null) {
+            return name.equals(local);
+        }
+        return name.length() == prefix.length() + 1 + local.length()
+                && name.startsWith(prefix) && name.endsWith(local)
+                && name.charAt(prefix.length()) == ':';
+    }
+
+    private static boolean matches(NodeAccessor a, int h, String namespaceURI, String localName) {
+        String uri = a.getNamespaceURI(h);
+        boolean uriMatches = namespaceURI == null || namespaceURI.length() == 0
+                ? uri == null : namespaceURI.equals(uri);
+        return uriMatches && localName.equals(a.getLocalName(h));
+    }
+}
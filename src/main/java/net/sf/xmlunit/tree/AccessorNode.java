@@ -0,0 +1,396 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * Read-only DOM node backed by a {@link NodeAccessor} handle.
+ *
+ * <p>
+ * Views are lightweight and created on demand, two views are equal if they
+ * represent the same handle of the same accessor. All mutating methods throw
+ * a {@link DOMException} with code NO_MODIFICATION_ALLOWED_ERR,
+ * {@link #cloneNode} creates a mutable copy using the default DOM
+ * implementation.
+ * </p>
+ */
+abstract class AccessorNode implements Node {
+    final AccessorDocument doc;
+    final int handle;
+
+    /**
+     * @param doc
+     *            the owning document view, null if this is the document
+     */
+    AccessorNode(AccessorDocument doc, int handle) {
+        this.doc = doc != null ? doc : (AccessorDocument) this;
+        this.handle = handle;
+    }
+
+    NodeAccessor accessor() {
+        return doc.accessor;
+    }
+
+    static DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                "read-only node");
+    }
+
+    static DOMException notSupported() {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR,
+                "not supported by read-only view");
+    }
+
+    /**
+     * Prefix and local name of elements and attributes.
+     */
+    String getQualifiedName() {
+        String prefix = accessor().getPrefix(handle);
+        String local = accessor().getLocalName(handle);
+        return prefix == null ? local : prefix + ":" + local;
+    }
+
+    public short getNodeType() {
+        return accessor().getNodeType(handle);
+    }
+
+    public String getNodeValue() {
+        return null;
+    }
+
+    public void setNodeValue(String nodeValue) {
+        throw readOnly();
+    }
+
+    public Node getParentNode() {
+        return doc.node(accessor().getParent(handle));
+    }
+
+    public NodeList getChildNodes() {
+        return new AccessorNodeList(doc, children());
+    }
+
+    int[] children() {
+        NodeAccessor a = accessor();
+        int count = 0;
+        for (int c = a.getFirstChild(handle); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+            count++;
+        }
+        int[] result = new int[count];
+        int i = 0;
+        for (int c = a.getFirstChild(handle); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+            result[i++] = c;
+        }
+        return result;
+    }
+
+    public Node getFirstChild() {
+        return doc.node(accessor().getFirstChild(handle));
+    }
+
+    public Node getLastChild() {
+        NodeAccessor a = accessor();
+        int last = NodeAccessor.NONE;
+        for (int c = a.getFirstChild(handle); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+            last = c;
+        }
+        return doc.node(last);
+    }
+
+    public Node getPreviousSibling() {
+        NodeAccessor a = accessor();
+        int parent = a.getParent(handle);
+        if (parent == NodeAccessor.NONE) {
+            return null;
+        }
+        int previous = NodeAccessor.NONE;
+        for (int c = a.getFirstChild(parent); c != handle; c = a.getNextSibling(c)) {
+            previous = c;
+        }
+        return doc.node(previous);
+    }
+
+    public Node getNextSibling() {
+        return doc.node(accessor().getNextSibling(handle));
+    }
+
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    public Document getOwnerDocument() {
+        return doc;
+    }
+
+    public Node insertBefore(Node newChild, Node refChild) {
+        throw readOnly();
+    }
+
+    public Node replaceChild(Node newChild, Node oldChild) {
+        throw readOnly();
+    }
+
+    public Node removeChild(Node oldChild) {
+        throw readOnly();
+    }
+
+    public Node appendChild(Node newChild) {
+        throw readOnly();
+    }
+
+    public boolean hasChildNodes() {
+        return accessor().getFirstChild(handle) != NodeAccessor.NONE;
+    }
+
+    public Node cloneNode(boolean deep) {
+        return NodeAccessors.copy(this, deep);
+    }
+
+    public void normalize() {
+        // adjacent text nodes have already been merged
+    }
+
+    public boolean isSupported(String feature, String version) {
+        return false;
+    }
+
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public void setPrefix(String prefix) {
+        throw readOnly();
+    }
+
+    public String getLocalName() {
+        return null;
+    }
+
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    public String getBaseURI() {
+        return accessor().getSystemId();
+    }
+
+    public short compareDocumentPosition(Node other) {
+        if (equals(other)) {
+            return 0;
+        }
+        if (!(other instanceof AccessorNode) || ((AccessorNode) other).doc != doc) {
+            return (short) (DOCUMENT_POSITION_DISCONNECTED
+                    | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC
+                    | (System.identityHashCode(this) < System.identityHashCode(other)
+                            ? DOCUMENT_POSITION_FOLLOWING
+                            : DOCUMENT_POSITION_PRECEDING));
+        }
+        int otherHandle = ((AccessorNode) other).handle;
+        if (isAncestor(handle, otherHandle)) {
+            return (short) (DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING);
+        }
+        if (isAncestor(otherHandle, handle)) {
+            return (short) (DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING);
+        }
+        // handles are assigned in document order
+        return otherHandle > handle ? DOCUMENT_POSITION_FOLLOWING
+                : DOCUMENT_POSITION_PRECEDING;
+    }
+
+    private boolean isAncestor(int ancestor, int node) {
+        NodeAccessor a = accessor();
+        for (int p = a.getParent(node); p != NodeAccessor.NONE; p = a.getParent(p)) {
+            if (p == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getTextContent() {
+        StringBuilder sb = new StringBuilder();
+        appendTextContent(handle, sb);
+        return sb.toString();
+    }
+
+    private void appendTextContent(int node, StringBuilder sb) {
+        NodeAccessor a = accessor();
+        for (int c = a.getFirstChild(node); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+            switch (a.getNodeType(c)) {
+            case TEXT_NODE:
+            case CDATA_SECTION_NODE:
+                sb.append(a.getValue(c));
+                break;
+            case ELEMENT_NODE:
+                appendTextContent(c, sb);
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    public void setTextContent(String textContent) {
+        throw readOnly();
+    }
+
+    public boolean isSameNode(Node other) {
+        return equals(other);
+    }
+
+    public String lookupPrefix(String namespaceURI) {
+        if (namespaceURI == null) {
+            return null;
+        }
+        NodeAccessor a = accessor();
+        for (int e = scopeElement(); e != NodeAccessor.NONE; e = a.getParent(e)) {
+            if (a.getNodeType(e) != ELEMENT_NODE) {
+                break;
+            }
+            if (namespaceURI.equals(a.getNamespaceURI(e)) && a.getPrefix(e) != null) {
+                return a.getPrefix(e);
+            }
+            for (int at = a.getFirstAttribute(e); at != NodeAccessor.NONE; at = a.getNextSibling(at)) {
+                if (XMLConstants.XMLNS_ATTRIBUTE.equals(a.getPrefix(at))
+                        && namespaceURI.equals(a.getValue(at))) {
+                    return a.getLocalName(at);
+                }
+            }
+        }
+        return null;
+    }
+
+    public boolean isDefaultNamespace(String namespaceURI) {
+        String uri = lookupNamespaceURI(null);
+        return uri == null ? namespaceURI == null : uri.equals(namespaceURI);
+    }
+
+    public String lookupNamespaceURI(String prefix) {
+        NodeAccessor a = accessor();
+        for (int e = scopeElement(); e != NodeAccessor.NONE; e = a.getParent(e)) {
+            if (a.getNodeType(e) != ELEMENT_NODE) {
+                break;
+            }
+            String p = a.getPrefix(e);
+            if (a.getNamespaceURI(e) != null
+                    && (prefix == null ? p == null : prefix.equals(p))) {
+                return a.getNamespaceURI(e);
+            }
+            for (int at = a.getFirstAttribute(e); at != NodeAccessor.NONE; at = a.getNextSibling(at)) {
+                if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(a.getNamespaceURI(at))) {
+                    continue;
+                }
+                boolean defaultDecl = a.getPrefix(at) == null;
+                if (prefix == null ? defaultDecl
+                        : !defaultDecl && prefix.equals(a.getLocalName(at))) {
+                    String value = a.getValue(at);
+                    return value.length() == 0 ? null : value;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The element namespace lookups start at.
+     */
+    int scopeElement() {
+        return accessor().getParent(handle);
+    }
+
+    public boolean isEqualNode(Node arg) {
+        if (arg == null || arg.getNodeType() != getNodeType()
+                || !equal(getNodeName(), arg.getNodeName())
+                || !equal(getLocalName(), arg.getLocalName())
+                || !equal(getNamespaceURI(), arg.getNamespaceURI())
+                || !equal(getPrefix(), arg.getPrefix())
+                || !equal(getNodeValue(), arg.getNodeValue())) {
+            return false;
+        }
+        NamedNodeMap attrs = getAttributes();
+        NamedNodeMap otherAttrs = arg.getAttributes();
+        if (attrs != null) {
+            if (otherAttrs == null || attrs.getLength() != otherAttrs.getLength()) {
+                return false;
+            }
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Node attr = attrs.item(i);
+                Node otherAttr = attr.getLocalName() == null
+                        ? otherAttrs.getNamedItem(attr.getNodeName())
+                        : otherAttrs.getNamedItemNS(attr.getNamespaceURI(), attr.getLocalName());
+                if (otherAttr == null || !attr.isEqualNode(otherAttr)) {
+                    return false;
+                }
+            }
+        }
+        NodeList children = getChildNodes();
+        NodeList otherChildren = arg.getChildNodes();
+        if (children.getLength() != otherChildren.getLength()) {
+            return false;
+        }
+        for (int i = 0; i < children.getLength(); i++) {
+            if (!children.item(i).isEqualNode(otherChildren.item(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    public Object getFeature(String feature, String version) {
+        return null;
+    }
+
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        throw notSupported();
+    }
+
+    public Object getUserData(String key) {
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof AccessorNode)) {
+            return false;
+        }
+        AccessorNode other = (AccessorNode) o;
+        return other.handle == handle && other.doc == doc;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * System.identityHashCode(doc) + handle;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+}
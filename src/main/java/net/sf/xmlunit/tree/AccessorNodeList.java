@@ -0,0 +1,91 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Read-only NodeList over a fixed set of {@link NodeAccessor} handles.
+ */
+final class AccessorNodeList implements NodeList {
+    private final AccessorDocument doc;
+    private final int[] handles;
+
+    AccessorNodeList(AccessorDocument doc, int[] handles) {
+        this.doc = doc;
+        this.handles = handles;
+    }
+
+    public Node item(int index) {
+        return index < 0 || index >= handles.length ? null : doc.node(handles[index]);
+    }
+
+    public int getLength() {
+        return handles.length;
+    }
+
+    /**
+     * Collects all descendant elements of a node matching the given name in
+     * document order, "*" matches any name or namespace.
+     */
+    static NodeList descendantElements(AccessorDocument doc, int root,
+            String namespaceURI, String name, boolean namespaceAware) {
+        NodeAccessor a = doc.accessor;
+        int[] found = new int[8];
+        int count = 0;
+        int node = a.getFirstChild(root);
+        while (node != NodeAccessor.NONE) {
+            if (a.getNodeType(node) == Node.ELEMENT_NODE && matches(doc, node, namespaceURI, name, namespaceAware)) {
+                if (count == found.length) {
+                    int[] grown = new int[count * 2];
+                    System.arraycopy(found, 0, grown, 0, count);
+                    found = grown;
+                }
+                found[count++] = node;
+            }
+            node = nextInDocumentOrder(a, root, node);
+        }
+        int[] result = new int[count];
+        System.arraycopy(found, 0, result, 0, count);
+        return new AccessorNodeList(doc, result);
+    }
+
+    private static boolean matches(AccessorDocument doc, int node, String namespaceURI,
+            String name, boolean namespaceAware) {
+        NodeAccessor a = doc.accessor;
+        if (!namespaceAware) {
+            return "*".equals(name) || AccessorNamedNodeMap.hasQualifiedName(a, node, name);
+        }
+        String uri = a.getNamespaceURI(node);
+        boolean uriMatches = "*".equals(namespaceURI)
+                || (namespaceURI == null || namespaceURI.length() == 0 ? uri == null : namespaceURI.equals(uri));
+        return uriMatches && ("*".equals(name) || name.equals(a.getLocalName(node)));
+    }
+
+    private static int nextInDocumentOrder(NodeAccessor a, int root, int node) {
+        int child = a.getFirstChild(node);
+        if (child != NodeAccessor.NONE) {
+            return child;
+        }
+        while (node != root) {
+            int sibling = a.getNextSibling(node);
+            if (sibling != NodeAccessor.NONE) {
+                return sibling;
+            }
+            node = a.getParent(node);
+        }
+        return NodeAccessor.NONE;
+    }
+}
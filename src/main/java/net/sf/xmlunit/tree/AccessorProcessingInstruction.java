@@ -0,0 +1,52 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * Read-only DOM ProcessingInstruction view of a {@link NodeAccessor} handle.
+ */
+final class AccessorProcessingInstruction extends AccessorNode implements ProcessingInstruction {
+
+    AccessorProcessingInstruction(AccessorDocument doc, int handle) {
+        super(doc, handle);
+    }
+
+    public String getNodeName() {
+        return getTarget();
+    }
+
+    @Override
+    public String getNodeValue() {
+        return getData();
+    }
+
+    @Override
+    public String getTextContent() {
+        return getData();
+    }
+
+    public String getTarget() {
+        return accessor().getLocalName(handle);
+    }
+
+    public String getData() {
+        return accessor().getValue(handle);
+    }
+
+    public void setData(String data) {
+        throw readOnly();
+    }
+}
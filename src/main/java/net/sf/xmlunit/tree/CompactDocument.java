@@ -0,0 +1,251 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import javax.xml.transform.Source;
+
+import org.w3c.dom.Document;
+
+/**
+ * An immutable XML tree stored in parallel arrays.
+ *
+ * <p>
+ * Each node is an index into arrays holding its type, parent, first child,
+ * next sibling, first attribute and name. Names are interned in a symbol
+ * table and all textual values share a single character array, so the
+ * document needs no object per node. This typically takes a fraction of the
+ * heap a DOM tree of the same document needs.
+ * </p>
+ *
+ * <p>
+ * Use {@link #from} to build an instance and {@link #getDocument} to obtain
+ * a read-only DOM view that can be compared by the difference engine.
+ * Instances are thread-safe.
+ * </p>
+ */
+public final class CompactDocument implements NodeAccessor {
+    private final byte[] types;
+    private final boolean[] unspecified;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] firstAttributes;
+    private final int[] names;
+    private final int[] valueStarts;
+    private final int[] valueLengths;
+    private final char[] values;
+
+    private final int[] nameURIs;
+    private final int[] nameLocals;
+    private final int[] namePrefixes;
+    private final SymbolTable symbols;
+
+    private final String doctypePublicId;
+    private final String doctypeSystemId;
+    private final String xmlVersion;
+    private final String xmlEncoding;
+    private final boolean xmlStandalone;
+    private final String systemId;
+
+    private volatile Document view;
+
+    CompactDocument(CompactDocumentBuilder b) {
+        int n = b.nodeCount;
+        types = trim(b.types, n);
+        unspecified = trim(b.unspecified, n);
+        parents = trim(b.parents, n);
+        firstChildren = trim(b.firstChildren, n);
+        nextSiblings = trim(b.nextSiblings, n);
+        firstAttributes = trim(b.firstAttributes, n);
+        names = trim(b.names, n);
+        valueStarts = trim(b.valueStarts, n);
+        valueLengths = trim(b.valueLengths, n);
+        values = new char[b.values.length()];
+        b.values.getChars(0, values.length, values, 0);
+
+        int nameCount = b.nameCount;
+        nameURIs = trim(b.nameURIs, nameCount);
+        nameLocals = trim(b.nameLocals, nameCount);
+        namePrefixes = trim(b.namePrefixes, nameCount);
+        symbols = b.symbols;
+
+        doctypePublicId = b.doctypePublicId;
+        doctypeSystemId = b.doctypeSystemId;
+        xmlVersion = b.xmlVersion;
+        xmlEncoding = b.xmlEncoding;
+        xmlStandalone = b.xmlStandalone;
+        systemId = b.systemId;
+    }
+
+    /**
+     * Reads a document into its compact representation.
+     *
+     * <p>
+     * Stream and SAX sources are parsed with a namespace aware SAX parser
+     * directly into the arrays, DOM sources are walked.
+     * </p>
+     *
+     * @param s
+     *            the source to read - must not be null
+     */
+    public static CompactDocument from(Source s) {
+        if (s == null) {
+            throw new IllegalArgumentException("source must not be null");
+        }
+        CompactDocumentBuilder b = new CompactDocumentBuilder();
+        b.read(s);
+        return new CompactDocument(b);
+    }
+
+    /**
+     * A read-only DOM view of this document.
+     *
+     * <p>
+     * DOM nodes are created on demand while the view is navigated and are
+     * not retained by the document.
+     * </p>
+     */
+    public Document getDocument() {
+        Document d = view;
+        if (d == null) {
+            d = NodeAccessors.asDocument(this);
+            view = d;
+        }
+        return d;
+    }
+
+    /**
+     * The number of nodes, including attributes and the document node.
+     */
+    public int getNodeCount() {
+        return types.length;
+    }
+
+    @Override
+    public int getDocumentNode() {
+        return 0;
+    }
+
+    @Override
+    public short getNodeType(int node) {
+        return types[node];
+    }
+
+    @Override
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    @Override
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    @Override
+    public int getFirstAttribute(int node) {
+        return firstAttributes[node];
+    }
+
+    @Override
+    public String getNamespaceURI(int node) {
+        int name = names[node];
+        return name == NONE ? null : symbols.get(nameURIs[name]);
+    }
+
+    @Override
+    public String getLocalName(int node) {
+        int name = names[node];
+        return name == NONE ? null : symbols.get(nameLocals[name]);
+    }
+
+    @Override
+    public String getPrefix(int node) {
+        int name = names[node];
+        return name == NONE ? null : symbols.get(namePrefixes[name]);
+    }
+
+    @Override
+    public String getValue(int node) {
+        int start = valueStarts[node];
+        return start == NONE ? null
+                : new String(values, start, valueLengths[node]);
+    }
+
+    @Override
+    public boolean isSpecified(int node) {
+        return !unspecified[node];
+    }
+
+    @Override
+    public String getDoctypePublicId() {
+        return doctypePublicId;
+    }
+
+    @Override
+    public String getDoctypeSystemId() {
+        return doctypeSystemId;
+    }
+
+    @Override
+    public String getXmlVersion() {
+        return xmlVersion;
+    }
+
+    @Override
+    public String getXmlEncoding() {
+        return xmlEncoding;
+    }
+
+    @Override
+    public boolean getXmlStandalone() {
+        return xmlStandalone;
+    }
+
+    @Override
+    public String getSystemId() {
+        return systemId;
+    }
+
+    private static int[] trim(int[] a, int length) {
+        if (a.length == length) {
+            return a;
+        }
+        int[] copy = new int[length];
+        System.arraycopy(a, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static byte[] trim(byte[] a, int length) {
+        if (a.length == length) {
+            return a;
+        }
+        byte[] copy = new byte[length];
+        System.arraycopy(a, 0, copy, 0, length);
+        return copy;
+    }
+
+    private static boolean[] trim(boolean[] a, int length) {
+        if (a.length == length) {
+            return a;
+        }
+        boolean[] copy = new boolean[length];
+        System.arraycopy(a, 0, copy, 0, length);
+        return copy;
+    }
+}
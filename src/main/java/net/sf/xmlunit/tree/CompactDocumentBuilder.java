@@ -0,0 +1,515 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+
+import net.sf.xmlunit.util.Convert;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.Attributes2;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.ext.Locator2;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Fills the arrays of a {@link CompactDocument} from SAX events or by
+ * walking a DOM tree.
+ *
+ * <p>
+ * Adjacent character events are merged into a single text node the way a
+ * DOM parser would do it, comments and entity boundaries inside the DTD are
+ * ignored.
+ * </p>
+ */
+final class CompactDocumentBuilder extends DefaultHandler implements LexicalHandler {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final String NAMESPACES =
+            "http://xml.org/sax/features/namespaces";
+    private static final String NAMESPACE_PREFIXES =
+            "http://xml.org/sax/features/namespace-prefixes";
+    private static final String IS_STANDALONE =
+            "http://xml.org/sax/features/is-standalone";
+    private static final String LEXICAL_HANDLER =
+            "http://xml.org/sax/properties/lexical-handler";
+
+    int nodeCount;
+    byte[] types = new byte[INITIAL_CAPACITY];
+    boolean[] unspecified = new boolean[INITIAL_CAPACITY];
+    int[] parents = new int[INITIAL_CAPACITY];
+    int[] firstChildren = new int[INITIAL_CAPACITY];
+    int[] nextSiblings = new int[INITIAL_CAPACITY];
+    int[] firstAttributes = new int[INITIAL_CAPACITY];
+    int[] names = new int[INITIAL_CAPACITY];
+    int[] valueStarts = new int[INITIAL_CAPACITY];
+    int[] valueLengths = new int[INITIAL_CAPACITY];
+    final StringBuilder values = new StringBuilder();
+
+    int nameCount;
+    int[] nameURIs = new int[INITIAL_CAPACITY];
+    int[] nameLocals = new int[INITIAL_CAPACITY];
+    int[] namePrefixes = new int[INITIAL_CAPACITY];
+    final SymbolTable symbols = new SymbolTable();
+    private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+
+    String doctypePublicId;
+    String doctypeSystemId;
+    String xmlVersion = "1.0";
+    String xmlEncoding;
+    boolean xmlStandalone;
+    String systemId;
+
+    // open nodes and the last child appended to each of them
+    private int[] openNodes = new int[16];
+    private int[] lastChildren = new int[16];
+    private int depth = -1;
+
+    private XMLReader reader;
+    private Locator locator;
+    private boolean seenRootElement;
+    private boolean inDTD;
+    private boolean inCDATA;
+    private final StringBuilder pendingText = new StringBuilder();
+    private boolean hasPendingText;
+    private final Map<String, String> pendingPrefixMappings =
+            new LinkedHashMap<String, String>();
+
+    void read(Source s) {
+        systemId = s.getSystemId();
+        if (s instanceof DOMSource) {
+            Node n = ((DOMSource) s).getNode();
+            if (n != null) {
+                readDOM(n);
+                return;
+            }
+        }
+        InputSource is = SAXSource.sourceToInputSource(s);
+        if (is == null) {
+            is = Convert.toInputSource(s);
+        }
+        reader = s instanceof SAXSource ? ((SAXSource) s).getXMLReader() : null;
+        try {
+            if (reader == null) {
+                SAXParserFactory f = SAXParserFactory.newInstance();
+                f.setNamespaceAware(true);
+                reader = f.newSAXParser().getXMLReader();
+            }
+            reader.setFeature(NAMESPACES, true);
+            reader.setFeature(NAMESPACE_PREFIXES, true);
+            reader.setContentHandler(this);
+            reader.setProperty(LEXICAL_HANDLER, this);
+            reader.parse(is);
+        } catch (javax.xml.parsers.ParserConfigurationException e) {
+            throw new ConfigurationException(e);
+        } catch (SAXException e) {
+            throw new XMLUnitRuntimeException(e);
+        } catch (java.io.IOException e) {
+            throw new XMLUnitRuntimeException(e);
+        } finally {
+            reader = null;
+        }
+    }
+
+    // DOM
+
+    private void readDOM(Node n) {
+        Document d = n instanceof Document ? (Document) n : n.getOwnerDocument();
+        addNode(Node.DOCUMENT_NODE, NodeAccessor.NONE, null);
+        push(0);
+        if (d != null && n == d) {
+            if (d.getXmlVersion() != null) {
+                xmlVersion = d.getXmlVersion();
+            }
+            xmlEncoding = d.getXmlEncoding();
+            xmlStandalone = d.getXmlStandalone();
+            if (systemId == null) {
+                systemId = d.getDocumentURI();
+            }
+            for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+                readDOMNode(c);
+            }
+        } else {
+            readDOMNode(n);
+        }
+        pop();
+    }
+
+    private void readDOMNode(Node n) {
+        switch (n.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            int element = appendChild(Node.ELEMENT_NODE,
+                    name(n.getNamespaceURI(), localName(n), n.getPrefix()), null);
+            NamedNodeMap attrs = n.getAttributes();
+            int last = NodeAccessor.NONE;
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Attr a = (Attr) attrs.item(i);
+                last = addAttribute(element, last,
+                        name(a.getNamespaceURI(), localName(a), a.getPrefix()),
+                        a.getValue(), a.getSpecified());
+            }
+            push(element);
+            for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+                readDOMNode(c);
+            }
+            pop();
+            break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+        case Node.COMMENT_NODE:
+            appendChild(n.getNodeType(), NodeAccessor.NONE, n.getNodeValue());
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            appendChild(Node.PROCESSING_INSTRUCTION_NODE,
+                    name(null, n.getNodeName(), null), n.getNodeValue());
+            break;
+        case Node.DOCUMENT_TYPE_NODE:
+            DocumentType dt = (DocumentType) n;
+            doctypePublicId = dt.getPublicId();
+            doctypeSystemId = dt.getSystemId();
+            appendChild(Node.DOCUMENT_TYPE_NODE, name(null, dt.getName(), null), null);
+            break;
+        case Node.ENTITY_REFERENCE_NODE:
+            for (Node c = n.getFirstChild(); c != null; c = c.getNextSibling()) {
+                readDOMNode(c);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static String localName(Node n) {
+        String l = n.getLocalName();
+        return l != null ? l : n.getNodeName();
+    }
+
+    // SAX
+
+    @Override
+    public void setDocumentLocator(Locator l) {
+        locator = l;
+    }
+
+    @Override
+    public void startDocument() {
+        addNode(Node.DOCUMENT_NODE, NodeAccessor.NONE, null);
+        push(0);
+    }
+
+    @Override
+    public void endDocument() {
+        flushText();
+        pop();
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        pendingPrefixMappings.put(prefix, uri);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        flushText();
+        if (!seenRootElement) {
+            readXmlDeclaration();
+            seenRootElement = true;
+        }
+        int element = appendChild(Node.ELEMENT_NODE,
+                name(uri, localName(localName, qName), prefix(qName)), null);
+        int last = NodeAccessor.NONE;
+        for (int i = 0; i < atts.getLength(); i++) {
+            String attQName = atts.getQName(i);
+            boolean specified = !(atts instanceof Attributes2)
+                    || ((Attributes2) atts).isSpecified(i);
+            int attName;
+            if (isNamespaceDeclaration(attQName)) {
+                attName = namespaceDeclarationName(attQName);
+                pendingPrefixMappings.remove(attQName.length() == 5 ? ""
+                        : attQName.substring(6));
+            } else {
+                attName = name(atts.getURI(i), localName(atts.getLocalName(i), attQName),
+                        prefix(attQName));
+            }
+            last = addAttribute(element, last, attName, atts.getValue(i), specified);
+        }
+        // parsers not reporting xmlns attributes
+        for (Map.Entry<String, String> mapping : pendingPrefixMappings.entrySet()) {
+            String prefix = mapping.getKey();
+            String attQName = prefix.length() == 0
+                    ? XMLConstants.XMLNS_ATTRIBUTE
+                    : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+            last = addAttribute(element, last, namespaceDeclarationName(attQName),
+                    mapping.getValue(), true);
+        }
+        pendingPrefixMappings.clear();
+        push(element);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        flushText();
+        pop();
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (inDTD) {
+            return;
+        }
+        pendingText.append(ch, start, length);
+        hasPendingText = true;
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if (inDTD) {
+            return;
+        }
+        flushText();
+        appendChild(Node.PROCESSING_INSTRUCTION_NODE, name(null, target, null),
+                data == null ? "" : data);
+    }
+
+    @Override
+    public void startDTD(String name, String publicId, String systemId) {
+        flushText();
+        doctypePublicId = publicId;
+        doctypeSystemId = systemId;
+        appendChild(Node.DOCUMENT_TYPE_NODE, name(null, name, null), null);
+        inDTD = true;
+    }
+
+    @Override
+    public void endDTD() {
+        inDTD = false;
+    }
+
+    @Override
+    public void startEntity(String name) {
+    }
+
+    @Override
+    public void endEntity(String name) {
+    }
+
+    @Override
+    public void startCDATA() {
+        flushText();
+        inCDATA = true;
+        hasPendingText = true;
+    }
+
+    @Override
+    public void endCDATA() {
+        flushText();
+    }
+
+    @Override
+    public void comment(char[] ch, int start, int length) {
+        if (inDTD) {
+            return;
+        }
+        flushText();
+        appendChild(Node.COMMENT_NODE, NodeAccessor.NONE, new String(ch, start, length));
+    }
+
+    private void flushText() {
+        if (hasPendingText) {
+            appendChild(inCDATA ? Node.CDATA_SECTION_NODE : Node.TEXT_NODE,
+                    NodeAccessor.NONE, pendingText);
+            pendingText.setLength(0);
+            hasPendingText = false;
+            inCDATA = false;
+        }
+    }
+
+    private void readXmlDeclaration() {
+        if (locator instanceof Locator2) {
+            Locator2 l = (Locator2) locator;
+            if (l.getXMLVersion() != null) {
+                xmlVersion = l.getXMLVersion();
+            }
+            xmlEncoding = l.getEncoding();
+        }
+        if (reader != null) {
+            try {
+                xmlStandalone = reader.getFeature(IS_STANDALONE);
+            } catch (SAXException e) {
+                // not supported by this parser
+            }
+        }
+    }
+
+    private static boolean isNamespaceDeclaration(String qName) {
+        return qName.equals(XMLConstants.XMLNS_ATTRIBUTE)
+                || qName.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+    }
+
+    private int namespaceDeclarationName(String qName) {
+        return qName.length() == XMLConstants.XMLNS_ATTRIBUTE.length()
+                ? name(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, qName, null)
+                : name(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                        qName.substring(XMLConstants.XMLNS_ATTRIBUTE.length() + 1),
+                        XMLConstants.XMLNS_ATTRIBUTE);
+    }
+
+    private static String localName(String localName, String qName) {
+        if (localName != null && localName.length() > 0) {
+            return localName;
+        }
+        int colon = qName.indexOf(':');
+        return colon < 0 ? qName : qName.substring(colon + 1);
+    }
+
+    private static String prefix(String qName) {
+        int colon = qName.indexOf(':');
+        return colon < 0 ? null : qName.substring(0, colon);
+    }
+
+    // arrays
+
+    private int name(String uri, String local, String prefix) {
+        if (uri != null && uri.length() == 0) {
+            uri = null;
+        }
+        if (prefix != null && prefix.length() == 0) {
+            prefix = null;
+        }
+        String key = uri + '\u0000' + prefix + '\u0000' + local;
+        Integer id = nameIds.get(key);
+        if (id == null) {
+            if (nameCount == nameURIs.length) {
+                nameURIs = grow(nameURIs);
+                nameLocals = grow(nameLocals);
+                namePrefixes = grow(namePrefixes);
+            }
+            nameURIs[nameCount] = symbols.intern(uri);
+            nameLocals[nameCount] = symbols.intern(local);
+            namePrefixes[nameCount] = symbols.intern(prefix);
+            id = Integer.valueOf(nameCount++);
+            nameIds.put(key, id);
+        }
+        return id.intValue();
+    }
+
+    private int addNode(short type, int name, CharSequence value) {
+        if (nodeCount == types.length) {
+            types = grow(types);
+            unspecified = grow(unspecified);
+            parents = grow(parents);
+            firstChildren = grow(firstChildren);
+            nextSiblings = grow(nextSiblings);
+            firstAttributes = grow(firstAttributes);
+            names = grow(names);
+            valueStarts = grow(valueStarts);
+            valueLengths = grow(valueLengths);
+        }
+        int node = nodeCount++;
+        types[node] = (byte) type;
+        parents[node] = NodeAccessor.NONE;
+        firstChildren[node] = NodeAccessor.NONE;
+        nextSiblings[node] = NodeAccessor.NONE;
+        firstAttributes[node] = NodeAccessor.NONE;
+        names[node] = name;
+        if (value == null) {
+            valueStarts[node] = NodeAccessor.NONE;
+        } else {
+            valueStarts[node] = values.length();
+            valueLengths[node] = value.length();
+            values.append(value);
+        }
+        return node;
+    }
+
+    private int appendChild(short type, int name, CharSequence value) {
+        int node = addNode(type, name, value);
+        int parent = openNodes[depth];
+        parents[node] = parent;
+        if (lastChildren[depth] == NodeAccessor.NONE) {
+            firstChildren[parent] = node;
+        } else {
+            nextSiblings[lastChildren[depth]] = node;
+        }
+        lastChildren[depth] = node;
+        return node;
+    }
+
+    private int addAttribute(int element, int previous, int name, String value,
+            boolean specified) {
+        int attr = addNode(Node.ATTRIBUTE_NODE, name, value);
+        parents[attr] = element;
+        unspecified[attr] = !specified;
+        if (previous == NodeAccessor.NONE) {
+            firstAttributes[element] = attr;
+        } else {
+            nextSiblings[previous] = attr;
+        }
+        return attr;
+    }
+
+    private void push(int node) {
+        if (++depth == openNodes.length) {
+            openNodes = grow(openNodes);
+            lastChildren = grow(lastChildren);
+        }
+        openNodes[depth] = node;
+        lastChildren[depth] = NodeAccessor.NONE;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static byte[] grow(byte[] a) {
+        byte[] b = new byte[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static boolean[] grow(boolean[] a) {
+        boolean[] b = new boolean[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the arrays filled by a {@link CompactDocumentBuilder} in the
+ * binary format read by {@link MappedDocument}.
+ *
+ * <p>
+ * All numbers are written big-endian, the byte order a freshly mapped
+ * buffer uses.
+ * </p>
+ */
+final class DocumentEncoder {
+    private final CompactDocumentBuilder b;
+
+    DocumentEncoder(CompactDocumentBuilder b) {
+        this.b = b;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        SymbolTable symbols = b.symbols;
+        // document level strings live in the symbol table as well
+        int doctypePublicId = symbols.intern(b.doctypePublicId);
+        int doctypeSystemId = symbols.intern(b.doctypeSystemId);
+        int xmlVersion = symbols.intern(b.xmlVersion);
+        int xmlEncoding = symbols.intern(b.xmlEncoding);
+        int systemId = symbols.intern(b.systemId);
+
+        int symbolChars = 0;
+        for (int i = 0; i < symbols.size(); i++) {
+            symbolChars += symbols.get(i).length();
+        }
+
+        out.writeInt(MappedDocument.MAGIC);
+        out.writeInt(MappedDocument.FORMAT_VERSION);
+        out.writeInt(b.nodeCount);
+        out.writeInt(b.nameCount);
+        out.writeInt(symbols.size());
+        out.writeInt(symbolChars);
+        out.writeInt(b.values.length());
+        out.writeInt(doctypePublicId);
+        out.writeInt(doctypeSystemId);
+        out.writeInt(xmlVersion);
+        out.writeInt(xmlEncoding);
+        out.writeInt(systemId);
+        out.writeInt(b.xmlStandalone ? 1 : 0);
+
+        for (int i = 0; i < b.nodeCount; i++) {
+            out.writeInt(b.types[i] | (b.unspecified[i] ? MappedDocument.UNSPECIFIED : 0));
+            out.writeInt(b.parents[i]);
+            out.writeInt(b.firstChildren[i]);
+            out.writeInt(b.nextSiblings[i]);
+            out.writeInt(b.firstAttributes[i]);
+            out.writeInt(b.names[i]);
+            out.writeInt(b.valueStarts[i]);
+            out.writeInt(b.valueLengths[i]);
+        }
+
+        for (int i = 0; i < b.nameCount; i++) {
+            out.writeInt(b.nameURIs[i]);
+            out.writeInt(b.nameLocals[i]);
+            out.writeInt(b.namePrefixes[i]);
+        }
+
+        int start = 0;
+        for (int i = 0; i < symbols.size(); i++) {
+            int length = symbols.get(i).length();
+            out.writeInt(start);
+            out.writeInt(length);
+            start += length;
+        }
+        for (int i = 0; i < symbols.size(); i++) {
+            out.writeChars(symbols.get(i));
+        }
+
+        CharSequence values = b.values;
+        for (int i = 0; i < values.length(); i++) {
+            out.writeChar(values.charAt(i));
+        }
+    }
+}
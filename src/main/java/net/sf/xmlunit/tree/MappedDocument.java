@@ -0,0 +1,314 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.xml.transform.Source;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Document;
+
+/**
+ * An XML tree navigated in place inside a memory-mapped file.
+ *
+ * <p>
+ * {@link #encode} parses any Source once and writes the tree in a binary
+ * format, {@link #open} maps such a file and reads nodes, names and values
+ * straight from the mapping. Opening a document doesn't parse anything and
+ * doesn't copy the tree onto the heap, JVMs mapping the same file share its
+ * pages through the operating system's page cache. This makes the format a
+ * good fit for control documents that are compared over and over again.
+ * </p>
+ *
+ * <p>
+ * The file consists of a header followed by fixed size node and name
+ * records, the symbol table and the character data, see
+ * {@link DocumentEncoder}. The file must not be modified while it is mapped.
+ * Instances are thread-safe, the mapping is released when the instance is
+ * garbage collected.
+ * </p>
+ */
+public final class MappedDocument implements NodeAccessor {
+    static final int MAGIC = 0x58554E54; // "XUNT"
+    static final int FORMAT_VERSION = 1;
+    static final int UNSPECIFIED = 0x100;
+
+    private static final int HEADER_INTS = 13;
+    private static final int NODE_INTS = 8;
+    private static final int NAME_INTS = 3;
+    private static final int SYMBOL_INTS = 2;
+
+    private final IntBuffer ints;
+    private final CharBuffer chars;
+    private final int nodeCount;
+    private final int nameBase;
+    private final int symbolBase;
+    private final int symbolCount;
+    private final int valueBase;
+    private final String systemIdOfFile;
+
+    // decoded names, filled on demand
+    private final String[] symbols;
+
+    private volatile Document view;
+
+    private MappedDocument(ByteBuffer buffer, String systemIdOfFile) {
+        this.systemIdOfFile = systemIdOfFile;
+        ints = buffer.asIntBuffer();
+        if (ints.limit() < HEADER_INTS || ints.get(0) != MAGIC) {
+            throw new XMLUnitRuntimeException(systemIdOfFile
+                    + " is not an encoded document");
+        }
+        if (ints.get(1) != FORMAT_VERSION) {
+            throw new XMLUnitRuntimeException("unsupported format version "
+                    + ints.get(1) + " of " + systemIdOfFile);
+        }
+        nodeCount = ints.get(2);
+        int nameCount = ints.get(3);
+        symbolCount = ints.get(4);
+        int symbolChars = ints.get(5);
+        int valueChars = ints.get(6);
+
+        nameBase = HEADER_INTS + nodeCount * NODE_INTS;
+        symbolBase = nameBase + nameCount * NAME_INTS;
+        int charOffset = (symbolBase + symbolCount * SYMBOL_INTS) * 4;
+        valueBase = symbolChars;
+        long expectedSize = charOffset + 2L * (symbolChars + valueChars);
+        if (expectedSize != buffer.limit()) {
+            throw new XMLUnitRuntimeException(systemIdOfFile
+                    + " is truncated or corrupt");
+        }
+        ByteBuffer charBytes = buffer.duplicate();
+        charBytes.position(charOffset);
+        chars = charBytes.asCharBuffer();
+        symbols = new String[symbolCount];
+    }
+
+    /**
+     * Parses a document and writes its binary representation to a file.
+     *
+     * @param s
+     *            the document to encode - must not be null
+     * @param target
+     *            the file to write, an existing file is overwritten
+     */
+    public static void encode(Source s, File target) {
+        if (s == null) {
+            throw new IllegalArgumentException("source must not be null");
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("target must not be null");
+        }
+        CompactDocumentBuilder b = new CompactDocumentBuilder();
+        b.read(s);
+        try {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(target)));
+            try {
+                new DocumentEncoder(b).write(out);
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            throw new XMLUnitRuntimeException(ex);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #encode}.
+     *
+     * @param f
+     *            the file to map - must not be null and not be bigger than
+     *            2GB
+     */
+    public static MappedDocument open(File f) {
+        if (f == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        String fileId = f.getAbsoluteFile().toURI().toString();
+        try {
+            FileInputStream in = new FileInputStream(f);
+            try {
+                FileChannel channel = in.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new XMLUnitRuntimeException(fileId
+                            + " is too big to be mapped");
+                }
+                // the mapping stays valid after the channel has been closed
+                return new MappedDocument(
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size()), fileId);
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new XMLUnitRuntimeException(ex);
+        }
+    }
+
+    /**
+     * A read-only DOM view of this document.
+     *
+     * @see CompactDocument#getDocument
+     */
+    public Document getDocument() {
+        Document d = view;
+        if (d == null) {
+            d = NodeAccessors.asDocument(this);
+            view = d;
+        }
+        return d;
+    }
+
+    /**
+     * The number of nodes, including attributes and the document node.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    private int node(int node, int field) {
+        return ints.get(HEADER_INTS + node * NODE_INTS + field);
+    }
+
+    private String symbol(int id) {
+        if (id == SymbolTable.NULL) {
+            return null;
+        }
+        // racing threads decode equal strings, which is harmless
+        String s = symbols[id];
+        if (s == null) {
+            int record = symbolBase + id * SYMBOL_INTS;
+            s = string(ints.get(record), ints.get(record + 1));
+            symbols[id] = s;
+        }
+        return s;
+    }
+
+    private String string(int start, int length) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) {
+            c[i] = chars.get(start + i);
+        }
+        return new String(c);
+    }
+
+    private String nameSymbol(int node, int field) {
+        int name = node(node, 5);
+        return name == NONE ? null
+                : symbol(ints.get(nameBase + name * NAME_INTS + field));
+    }
+
+    @Override
+    public int getDocumentNode() {
+        return 0;
+    }
+
+    @Override
+    public short getNodeType(int node) {
+        return (short) (node(node, 0) & 0xFF);
+    }
+
+    @Override
+    public int getParent(int node) {
+        return node(node, 1);
+    }
+
+    @Override
+    public int getFirstChild(int node) {
+        return node(node, 2);
+    }
+
+    @Override
+    public int getNextSibling(int node) {
+        return node(node, 3);
+    }
+
+    @Override
+    public int getFirstAttribute(int node) {
+        return node(node, 4);
+    }
+
+    @Override
+    public String getNamespaceURI(int node) {
+        return nameSymbol(node, 0);
+    }
+
+    @Override
+    public String getLocalName(int node) {
+        return nameSymbol(node, 1);
+    }
+
+    @Override
+    public String getPrefix(int node) {
+        return nameSymbol(node, 2);
+    }
+
+    @Override
+    public String getValue(int node) {
+        int start = node(node, 6);
+        return start == NONE ? null
+                : string(valueBase + start, node(node, 7));
+    }
+
+    @Override
+    public boolean isSpecified(int node) {
+        return (node(node, 0) & UNSPECIFIED) == 0;
+    }
+
+    @Override
+    public String getDoctypePublicId() {
+        return symbol(ints.get(7));
+    }
+
+    @Override
+    public String getDoctypeSystemId() {
+        return symbol(ints.get(8));
+    }
+
+    @Override
+    public String getXmlVersion() {
+        return symbol(ints.get(9));
+    }
+
+    @Override
+    public String getXmlEncoding() {
+        return symbol(ints.get(10));
+    }
+
+    @Override
+    public boolean getXmlStandalone() {
+        return ints.get(12) != 0;
+    }
+
+    /**
+     * The system id of the encoded source or the URI of the mapped file if
+     * the source didn't have one.
+     */
+    @Override
+    public String getSystemId() {
+        String s = symbol(ints.get(11));
+        return s != null ? s : systemIdOfFile;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+/**
+ * Read-only navigation over an XML tree whose nodes are identified by int
+ * handles.
+ *
+ * <p>
+ * Implementations don't need to create an object per node, the handles are
+ * only meaningful to the accessor that returned them. Node types are the
+ * constants defined by {@link org.w3c.dom.Node}. Handles are assigned in
+ * document order, attributes follow their owner element and precede its
+ * children.
+ * </p>
+ *
+ * <p>
+ * {@link NodeAccessors#asDocument} turns any accessor into a read-only DOM
+ * view so the difference engine can work on it.
+ * </p>
+ */
+public interface NodeAccessor {
+    /**
+     * Handle returned when there is no such node.
+     */
+    int NONE = -1;
+
+    /**
+     * The handle of the document node.
+     */
+    int getDocumentNode();
+
+    /**
+     * The node's type as one of the constants in {@link org.w3c.dom.Node}.
+     */
+    short getNodeType(int node);
+
+    /**
+     * The node's parent, the owner element for attributes.
+     */
+    int getParent(int node);
+
+    /**
+     * The node's first child, {@link #NONE} for leaf nodes.
+     */
+    int getFirstChild(int node);
+
+    /**
+     * The node's next sibling - for attributes the next attribute of the
+     * same element.
+     */
+    int getNextSibling(int node);
+
+    /**
+     * The first attribute of an element, {@link #NONE} for other nodes or
+     * elements without attributes.
+     */
+    int getFirstAttribute(int node);
+
+    /**
+     * The namespace URI of elements and attributes, null if there is none.
+     */
+    String getNamespaceURI(int node);
+
+    /**
+     * The local name of elements and attributes, the target of processing
+     * instructions and the name of the doctype.
+     */
+    String getLocalName(int node);
+
+    /**
+     * The namespace prefix of elements and attributes, null if there is
+     * none.
+     */
+    String getPrefix(int node);
+
+    /**
+     * The value of attributes, text, CDATA sections, comments and the data
+     * of processing instructions, null for other node types.
+     */
+    String getValue(int node);
+
+    /**
+     * Whether an attribute has been specified explicitly rather than being
+     * defaulted from a DTD.
+     */
+    boolean isSpecified(int node);
+
+    /**
+     * The public identifier of the document type declaration, if any.
+     */
+    String getDoctypePublicId();
+
+    /**
+     * The system identifier of the document type declaration, if any.
+     */
+    String getDoctypeSystemId();
+
+    /**
+     * The version given in the XML declaration.
+     */
+    String getXmlVersion();
+
+    /**
+     * The encoding given in the XML declaration, if any.
+     */
+    String getXmlEncoding();
+
+    /**
+     * The standalone flag of the XML declaration.
+     */
+    boolean getXmlStandalone();
+
+    /**
+     * The system identifier the document has been read from, if any.
+     */
+    String getSystemId();
+}
@@ -0,0 +1,127 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Adapts {@link NodeAccessor}s to the DOM.
+ */
+public final class NodeAccessors {
+    private NodeAccessors() {
+    }
+
+    /**
+     * Creates a read-only DOM view of the tree an accessor navigates.
+     *
+     * <p>
+     * The view implements the DOM interfaces the difference engine, the
+     * comparison providers and the element selectors use, so a tree that is
+     * not held as DOM can be compared like any other Document. Node objects
+     * are created on demand and not cached, views of the same handle are
+     * equal. Any attempt to modify the view results in a DOMException,
+     * cloning a node creates a mutable copy using the default
+     * DocumentBuilderFactory.
+     * </p>
+     */
+    public static Document asDocument(NodeAccessor accessor) {
+        if (accessor == null) {
+            throw new IllegalArgumentException("accessor must not be null");
+        }
+        return new AccessorDocument(accessor);
+    }
+
+    /**
+     * Creates a mutable copy of a view node.
+     */
+    static Node copy(AccessorNode n, boolean deep) {
+        Document target;
+        try {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setNamespaceAware(true);
+            target = f.newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new ConfigurationException(e);
+        }
+        NodeAccessor a = n.accessor();
+        if (!(n instanceof Document)) {
+            return copy(a, n.handle, target, deep);
+        }
+        target.setXmlStandalone(a.getXmlStandalone());
+        if (a.getXmlVersion() != null) {
+            target.setXmlVersion(a.getXmlVersion());
+        }
+        target.setDocumentURI(a.getSystemId());
+        if (deep) {
+            for (int c = a.getFirstChild(n.handle); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+                target.appendChild(copy(a, c, target, true));
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Recreates a node using the factory methods of the target document.
+     *
+     * <p>
+     * Document.importNode isn't used since implementations are free to
+     * depend on their own node classes when importing.
+     * </p>
+     */
+    private static Node copy(NodeAccessor a, int node, Document target, boolean deep) {
+        switch (a.getNodeType(node)) {
+        case Node.ELEMENT_NODE:
+            Element e = target.createElementNS(a.getNamespaceURI(node), qualifiedName(a, node));
+            for (int at = a.getFirstAttribute(node); at != NodeAccessor.NONE; at = a.getNextSibling(at)) {
+                e.setAttributeNodeNS((Attr) copy(a, at, target, deep));
+            }
+            if (deep) {
+                for (int c = a.getFirstChild(node); c != NodeAccessor.NONE; c = a.getNextSibling(c)) {
+                    e.appendChild(copy(a, c, target, true));
+                }
+            }
+            return e;
+        case Node.ATTRIBUTE_NODE:
+            Attr attr = target.createAttributeNS(a.getNamespaceURI(node), qualifiedName(a, node));
+            attr.setValue(a.getValue(node));
+            return attr;
+        case Node.TEXT_NODE:
+            return target.createTextNode(a.getValue(node));
+        case Node.CDATA_SECTION_NODE:
+            return target.createCDATASection(a.getValue(node));
+        case Node.COMMENT_NODE:
+            return target.createComment(a.getValue(node));
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            return target.createProcessingInstruction(a.getLocalName(node), a.getValue(node));
+        case Node.DOCUMENT_TYPE_NODE:
+            return target.getImplementation().createDocumentType(a.getLocalName(node),
+                    a.getDoctypePublicId(), a.getDoctypeSystemId());
+        default:
+            throw new IllegalStateException("unexpected node type " + a.getNodeType(node));
+        }
+    }
+
+    private static String qualifiedName(NodeAccessor a, int node) {
+        String prefix = a.getPrefix(node);
+        String local = a.getLocalName(node);
+        return prefix == null ? local : prefix + ":" + local;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps strings to dense int ids so that each distinct name is stored once.
+ *
+ * <p>
+ * null is a valid symbol and always has the id {@link #NULL}.
+ * </p>
+ */
+final class SymbolTable {
+    static final int NULL = -1;
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private final List<String> symbols = new ArrayList<String>();
+
+    int intern(String s) {
+        if (s == null) {
+            return NULL;
+        }
+        Integer id = ids.get(s);
+        if (id == null) {
+            id = Integer.valueOf(symbols.size());
+            symbols.add(s);
+            ids.put(s, id);
+        }
+        return id.intValue();
+    }
+
+    String get(int id) {
+        return id == NULL ? null : symbols.get(id);
+    }
+
+    int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,288 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.xml.sax.InputSource;
+
+/**
+ * Least recently used cache of objects compiled from TraX Sources - like
+ * stylesheets or schemas - that may be shared by any number of threads.
+ *
+ * <p>
+ * Sources are identified by their system id or - for streams - by their
+ * content, see {@link #identify}. Values are compiled
+ * outside of the cache's lock, threads racing for the same source compile it
+ * twice but don't block each other. The least recently used values are
+ * dropped once the cache holds the given number of them.
+ * </p>
+ */
+public final class CompilationCache<K, V> {
+    private final Map<K, V> values;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param size
+     *            the maximum number of values kept
+     */
+    public CompilationCache(final int size) {
+        Preconditions.checkArgument(size > 0, "size must be positive");
+        values = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > size;
+            }
+        };
+    }
+
+    /**
+     * The cached value of the key or null, counts as a hit or a miss.
+     */
+    public synchronized V get(K key) {
+        V value = values.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /**
+     * Caches a compiled value.
+     */
+    public synchronized void put(K key, V value) {
+        values.put(key, value);
+    }
+
+    /**
+     * Drops all values whose key matches the predicate.
+     */
+    public synchronized void removeAll(Predicate<? super K> keys) {
+        for (Iterator<K> it = values.keySet().iterator(); it.hasNext();) {
+            if (keys.matches(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all values and resets the statistics.
+     */
+    public synchronized void clear() {
+        values.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * The number of values held.
+     */
+    public synchronized int size() {
+        return values.size();
+    }
+
+    /**
+     * How often a cached value has been found.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * How often a value hasn't been found.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Identifies a source by its system id or - for a stream - by its content,
+     * which is read completely, together with its system id.
+     *
+     * <p>
+     * Only sources without content of their own are identified by their
+     * system id. Other sources with content, like DOM or SAX sources, cannot
+     * be identified and must be compiled each time.
+     * </p>
+     *
+     * @exception XMLUnitRuntimeException
+     *                if the stream cannot be read
+     */
+    public static Identified identify(Source s) {
+        if (s instanceof StreamSource) {
+            return identify((StreamSource) s);
+        }
+        if (hasContent(s)) {
+            return new Identified(null, s);
+        }
+        return new Identified(s.getSystemId(), s);
+    }
+
+    private static Identified identify(StreamSource stream) {
+        String systemId = stream.getSystemId();
+        Object id;
+        StreamSource toCompile;
+        try {
+            if (stream.getReader() != null) {
+                String content = readFully(stream.getReader());
+                id = new Content(content, systemId, content.hashCode());
+                toCompile = new StreamSource(new StringReader(content));
+            } else if (stream.getInputStream() != null) {
+                byte[] content = readFully(stream.getInputStream());
+                id = new Content(content, systemId, Arrays.hashCode(content));
+                toCompile = new StreamSource(new ByteArrayInputStream(content));
+            } else {
+                return new Identified(systemId, stream);
+            }
+        } catch (IOException e) {
+            throw new XMLUnitRuntimeException("Failed to read source", e);
+        }
+        toCompile.setPublicId(stream.getPublicId());
+        toCompile.setSystemId(systemId);
+        return new Identified(id, toCompile);
+    }
+
+    private static boolean hasContent(Source s) {
+        if (s instanceof DOMSource) {
+            return ((DOMSource) s).getNode() != null;
+        }
+        if (s instanceof SAXSource) {
+            SAXSource sax = (SAXSource) s;
+            InputSource input = sax.getInputSource();
+            return sax.getXMLReader() != null
+                    || input != null && (input.getByteStream() != null || input.getCharacterStream() != null);
+        }
+        // unknown sources, like StAX sources, may carry content
+        return true;
+    }
+
+    /**
+     * Reads and closes a stream.
+     */
+    public static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads and closes a reader.
+     */
+    public static String readFully(Reader r) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        try {
+            int read;
+            while ((read = r.read(buffer)) >= 0) {
+                sb.append(buffer, 0, read);
+            }
+        } finally {
+            r.close();
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A source together with its identity.
+     */
+    public static final class Identified {
+        private final Object id;
+        private final Source source;
+
+        private Identified(Object id, Source source) {
+            this.id = id;
+            this.source = source;
+        }
+
+        /**
+         * The system id or the content of the source, null if the source
+         * cannot be identified and must be compiled each time.
+         */
+        public Object getId() {
+            return id;
+        }
+
+        /**
+         * The source to compile, a stream that has been read is replaced by
+         * one reading its content.
+         */
+        public Source getSource() {
+            return source;
+        }
+    }
+
+    /**
+     * Content of a stream source and the system id relative references are
+     * resolved against, never equal to a system id alone.
+     */
+    private static final class Content {
+        private final Object content;
+        private final String systemId;
+        private final int hashCode;
+
+        private Content(Object content, String systemId, int hashCode) {
+            this.content = content;
+            this.systemId = systemId;
+            this.hashCode = hashCode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Content) || hashCode != ((Content) o).hashCode) {
+                return false;
+            }
+            if (systemId == null ? ((Content) o).systemId != null : !systemId.equals(((Content) o).systemId)) {
+                return false;
+            }
+            Object other = ((Content) o).content;
+            if (content instanceof byte[]) {
+                return other instanceof byte[] && Arrays.equals((byte[]) content, (byte[]) other);
+            }
+            return content.equals(other);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
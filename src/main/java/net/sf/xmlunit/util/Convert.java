@@ -55,6 +55,9 @@ public final class Convert {
      * </p>
      */
     public static InputSource toInputSource(Source s) {
+        if (s instanceof ConvertibleSource) {
+            return ((ConvertibleSource) s).toInputSource();
+        }
         try {
             InputSource is = SAXSource.sourceToInputSource(s);
             if (is == null) {
@@ -83,7 +86,8 @@ public final class Convert {
      * will be returned. Otherwise {@link #toInputSource} and a namespace aware
      * DocumentBuilder (created by the default DocumentBuilderFactory) will be
      * used to read the source. This may involve an XSLT identity transform in
-     * toInputSource.
+     * toInputSource. A {@link ConvertibleSource} creates the Document
+     * itself.
      * </p>
      */
     public static Document toDocument(Source s) {
@@ -100,14 +104,14 @@ public final class Convert {
      * will be returned. Otherwise {@link #toInputSource} and a namespace aware
      * DocumentBuilder (created by given DocumentBuilderFactory) will be used to
      * read the source. This may involve an XSLT identity transform in
-     * toInputSource.
+     * toInputSource. A {@link ConvertibleSource} creates the Document
+     * itself using a DocumentBuilder created by the given factory.
      * </p>
      */
     public static Document toDocument(Source s,
             DocumentBuilderFactory factory) {
         Document d = tryExtractDocFromDOMSource(s);
         if (d == null) {
-            InputSource is = toInputSource(s);
             DocumentBuilder b = null;
 
             // yes, there is a race condition but it is so unlikely to
@@ -126,8 +130,11 @@ public final class Convert {
                 }
             }
 
+            if (s instanceof ConvertibleSource) {
+                return ((ConvertibleSource) s).toDocument(b);
+            }
             try {
-                d = b.parse(is);
+                d = b.parse(toInputSource(s));
             } catch (org.xml.sax.SAXException e) {
                 throw new XMLUnitRuntimeException(e);
             } catch (java.io.IOException e) {
@@ -0,0 +1,45 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.transform.Source;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * A Source that knows how to convert itself into the forms {@link Convert}
+ * produces.
+ *
+ * <p>
+ * Used by sources whose content is generated rather than read, so that
+ * Convert doesn't have to read them through an identity transformation.
+ * </p>
+ */
+public interface ConvertibleSource extends Source {
+    /**
+     * Creates a SAX InputSource providing the serialized content of this
+     * source.
+     */
+    InputSource toInputSource();
+
+    /**
+     * Creates a DOM Document holding the content of this source.
+     *
+     * @param builder
+     *            namespace aware DocumentBuilder to create the Document with
+     */
+    Document toDocument(DocumentBuilder builder);
+}
@@ -0,0 +1,123 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Base class of XMLReaders that emit SAX events from something other than
+ * their input, like the result of a transformation or a StAX stream.
+ *
+ * <p>
+ * The events are namespace aware. All features are accepted so readers can
+ * ask for their usual configuration, the only property supported is the
+ * lexical handler.
+ * </p>
+ */
+public abstract class EventEmittingReader implements XMLReader {
+    private static final String NAMESPACES = "http://xml.org/sax/features/namespaces";
+    private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+    private ContentHandler contentHandler;
+    private LexicalHandler lexicalHandler;
+    private DTDHandler dtdHandler;
+    private EntityResolver entityResolver;
+    private ErrorHandler errorHandler;
+
+    /**
+     * Emits the events, the input is ignored.
+     */
+    public abstract void parse(InputSource input) throws SAXException;
+
+    public void parse(String systemId) throws SAXException {
+        parse(new InputSource(systemId));
+    }
+
+    /**
+     * The content handler to emit events to, a handler ignoring them if none
+     * has been set.
+     */
+    protected ContentHandler getTargetContentHandler() {
+        return contentHandler != null ? contentHandler : new DefaultHandler();
+    }
+
+    /**
+     * The lexical handler that has been set or null.
+     */
+    protected LexicalHandler getLexicalHandler() {
+        return lexicalHandler;
+    }
+
+    public boolean getFeature(String name) {
+        return NAMESPACES.equals(name);
+    }
+
+    public void setFeature(String name, boolean value) {
+    }
+
+    public Object getProperty(String name) throws SAXNotRecognizedException {
+        if (LEXICAL_HANDLER.equals(name)) {
+            return lexicalHandler;
+        }
+        throw new SAXNotRecognizedException(name);
+    }
+
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+        if (!LEXICAL_HANDLER.equals(name)) {
+            throw new SAXNotRecognizedException(name);
+        }
+        lexicalHandler = (LexicalHandler) value;
+    }
+
+    public void setEntityResolver(EntityResolver resolver) {
+        entityResolver = resolver;
+    }
+
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    public void setDTDHandler(DTDHandler handler) {
+        dtdHandler = handler;
+    }
+
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    public void setContentHandler(ContentHandler handler) {
+        contentHandler = handler;
+    }
+
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    public void setErrorHandler(ErrorHandler handler) {
+        errorHandler = handler;
+    }
+
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+}
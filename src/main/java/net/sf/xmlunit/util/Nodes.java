@@ -114,6 +114,26 @@ public final class Nodes {
         return cloned;
     }
 
+    /**
+     * Like {@link #stripWhitespace} but modifies the given node rather than a
+     * copy, meant for trees nobody else holds a reference to.
+     */
+    public static Node stripWhitespaceInPlace(Node n) {
+        n.normalize();
+        handleWsRec(n, false);
+        return n;
+    }
+
+    /**
+     * Like {@link #normalizeWhitespace} but modifies the given node rather
+     * than a copy, meant for trees nobody else holds a reference to.
+     */
+    public static Node normalizeWhitespaceInPlace(Node n) {
+        n.normalize();
+        handleWsRec(n, true);
+        return n;
+    }
+
     /**
      * Trims textual content of this node, removes empty text and CDATA
      * children, recurses into its child nodes.
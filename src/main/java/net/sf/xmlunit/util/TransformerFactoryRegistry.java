@@ -0,0 +1,224 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+
+/**
+ * TransformerFactories and identity Transformers shared by all
+ * {@link XsltUtils} with the same configuration.
+ *
+ * <p>
+ * The JAXP lookup of the default factory class is done once per value of the
+ * <code>javax.xml.transform.TransformerFactory</code> system property.
+ * Factories and Transformers aren't thread-safe, so they are created and
+ * cached per thread. A factory is cached per factory class, URIResolver and
+ * ErrorListener and is never reconfigured; only the
+ * {@link #FACTORIES_PER_THREAD} most recently used configurations are kept,
+ * so resolvers and listeners of past callers don't stay alive for long.
+ * Idle Transformers are pooled per factory class and configured with the
+ * caller's resolver and listener each time they are handed out.
+ * </p>
+ */
+final class TransformerFactoryRegistry {
+    private static final String FACTORY_PROPERTY = TransformerFactory.class.getName();
+    private static final String NO_PROPERTY = "";
+
+    // at most this many idle Transformers are kept per thread and factory
+    // class
+    static final int POOL_SIZE = 4;
+
+    // at most this many configured factories are kept per thread
+    static final int FACTORIES_PER_THREAD = 16;
+
+    private static final ConcurrentMap<String, Class<? extends TransformerFactory>> DEFAULT_CLASSES =
+            new ConcurrentHashMap<String, Class<? extends TransformerFactory>>();
+
+    private static final ThreadLocal<Map<Class<?>, Entry>> ENTRIES = new ThreadLocal<Map<Class<?>, Entry>>() {
+        @Override
+        protected Map<Class<?>, Entry> initialValue() {
+            return new HashMap<Class<?>, Entry>();
+        }
+    };
+
+    private static final ThreadLocal<Map<Key, TransformerFactory>> FACTORIES =
+            new ThreadLocal<Map<Key, TransformerFactory>>() {
+                @Override
+                protected Map<Key, TransformerFactory> initialValue() {
+                    return new LinkedHashMap<Key, TransformerFactory>(16, 0.75f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(Map.Entry<Key, TransformerFactory> eldest) {
+                            return size() > FACTORIES_PER_THREAD;
+                        }
+                    };
+                }
+            };
+
+    private TransformerFactoryRegistry() {
+    }
+
+    /**
+     * The current thread's factory of the given class configured with the
+     * given resolver and listener - or the factory's defaults if they are
+     * null.
+     */
+    static TransformerFactory getFactory(@Nullable Class<? extends TransformerFactory> factoryClass,
+            @Nullable URIResolver uriResolver, @Nullable ErrorListener errorListener) {
+        Key key = new Key(resolve(factoryClass), uriResolver, errorListener);
+        Map<Key, TransformerFactory> factories = FACTORIES.get();
+        TransformerFactory factory = factories.get(key);
+        if (factory == null) {
+            factory = newFactory(key.factoryClass);
+            if (uriResolver != null) {
+                factory.setURIResolver(uriResolver);
+            }
+            if (errorListener != null) {
+                factory.setErrorListener(errorListener);
+            }
+            factories.put(key, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Takes an identity Transformer of the given factory class from the
+     * current thread's pool or creates a new one and configures it with the
+     * given resolver and listener.
+     */
+    static Transformer acquireTransformer(@Nullable Class<? extends TransformerFactory> factoryClass,
+            @Nullable URIResolver uriResolver, @Nullable ErrorListener errorListener)
+            throws TransformerConfigurationException {
+        Entry entry = getEntry(factoryClass);
+        Transformer transformer = entry.idle.poll();
+        if (transformer == null) {
+            return getFactory(factoryClass, uriResolver, errorListener).newTransformer();
+        }
+        // reset restores the factory's settings for some implementations
+        // but clears them for others
+        transformer.setURIResolver(uriResolver != null ? uriResolver : entry.defaultUriResolver);
+        ErrorListener listener = errorListener != null ? errorListener : entry.defaultErrorListener;
+        if (listener != null) {
+            transformer.setErrorListener(listener);
+        }
+        return transformer;
+    }
+
+    /**
+     * Resets a Transformer obtained by {@link #acquireTransformer} and returns
+     * it to the current thread's pool.
+     */
+    static void releaseTransformer(Transformer transformer,
+            @Nullable Class<? extends TransformerFactory> factoryClass) {
+        Entry entry = getEntry(factoryClass);
+        if (entry.idle.size() >= POOL_SIZE) {
+            return;
+        }
+        try {
+            transformer.reset();
+        } catch (UnsupportedOperationException e) {
+            // JAXP 1.2 implementation, can't be reused
+            return;
+        }
+        entry.idle.push(transformer);
+    }
+
+    private static Entry getEntry(@Nullable Class<? extends TransformerFactory> factoryClass) {
+        Class<? extends TransformerFactory> resolved = resolve(factoryClass);
+        Map<Class<?>, Entry> entries = ENTRIES.get();
+        Entry entry = entries.get(resolved);
+        if (entry == null) {
+            entry = new Entry(newFactory(resolved));
+            entries.put(resolved, entry);
+        }
+        return entry;
+    }
+
+    private static TransformerFactory newFactory(Class<? extends TransformerFactory> factoryClass) {
+        return TransformerFactory.newInstance(factoryClass.getName(), factoryClass.getClassLoader());
+    }
+
+    private static Class<? extends TransformerFactory> resolve(
+            @Nullable Class<? extends TransformerFactory> factoryClass) {
+        return factoryClass != null ? factoryClass : getDefaultClass();
+    }
+
+    private static Class<? extends TransformerFactory> getDefaultClass() {
+        String property = System.getProperty(FACTORY_PROPERTY, NO_PROPERTY);
+        Class<? extends TransformerFactory> c = DEFAULT_CLASSES.get(property);
+        if (c == null) {
+            c = TransformerFactory.newInstance().getClass();
+            DEFAULT_CLASSES.putIfAbsent(property, c);
+        }
+        return c;
+    }
+
+    private static final class Entry {
+        private final URIResolver defaultUriResolver;
+        private final ErrorListener defaultErrorListener;
+        private final Deque<Transformer> idle = new ArrayDeque<Transformer>();
+
+        private Entry(TransformerFactory unconfigured) {
+            defaultUriResolver = unconfigured.getURIResolver();
+            defaultErrorListener = unconfigured.getErrorListener();
+        }
+    }
+
+    /**
+     * Configuration of a factory, resolver and listener are compared by
+     * identity.
+     */
+    private static final class Key {
+        private final Class<? extends TransformerFactory> factoryClass;
+        private final URIResolver uriResolver;
+        private final ErrorListener errorListener;
+
+        private Key(Class<? extends TransformerFactory> factoryClass, URIResolver uriResolver,
+                ErrorListener errorListener) {
+            this.factoryClass = factoryClass;
+            this.uriResolver = uriResolver;
+            this.errorListener = errorListener;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return factoryClass == other.factoryClass && uriResolver == other.uriResolver
+                    && errorListener == other.errorListener;
+        }
+
+        @Override
+        public int hashCode() {
+            return (factoryClass.hashCode() * 31 + System.identityHashCode(uriResolver)) * 31
+                    + System.identityHashCode(errorListener);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+/**
+ * A string that is compared as if leading and trailing whitespace had been
+ * removed and all other whitespace had been collapsed into single space
+ * characters.
+ *
+ * <p>
+ * {@link #equals} and {@link #hashCode} walk the original string and never
+ * create the normalized form, {@link #toString} creates it on first use.
+ * This allows comparing text the way {@link Nodes#normalizeWhitespace} would
+ * see it without copying text that turns out to be equal.
+ * </p>
+ */
+public final class WhitespaceNormalizedText {
+    private static final char SPACE = ' ';
+
+    private final String original;
+    private String normalized;
+
+    private WhitespaceNormalizedText(String original) {
+        this.original = original;
+    }
+
+    /**
+     * Wraps a string, returns null if the string is null.
+     */
+    public static WhitespaceNormalizedText of(String s) {
+        return s == null ? null : new WhitespaceNormalizedText(s);
+    }
+
+    /**
+     * The string as it has been wrapped.
+     */
+    public String getOriginal() {
+        return original;
+    }
+
+    /**
+     * Whether two strings are equal after normalizing whitespace.
+     */
+    public static boolean equalsNormalized(String a, String b) {
+        final int aLen = a.length();
+        final int bLen = b.length();
+        int i = skipWhitespace(a, 0);
+        int j = skipWhitespace(b, 0);
+        while (i < aLen && j < bLen) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            boolean aIsWhitespace = Character.isWhitespace(ca);
+            boolean bIsWhitespace = Character.isWhitespace(cb);
+            if (aIsWhitespace && bIsWhitespace) {
+                i = skipWhitespace(a, i);
+                j = skipWhitespace(b, j);
+                // both runs are a single space unless one of them is trailing
+                if ((i == aLen) != (j == bLen)) {
+                    return false;
+                }
+            } else if (aIsWhitespace || bIsWhitespace || ca != cb) {
+                return false;
+            } else {
+                i++;
+                j++;
+            }
+        }
+        return skipWhitespace(a, i) == aLen && skipWhitespace(b, j) == bLen;
+    }
+
+    private static int skipWhitespace(String s, int from) {
+        final int len = s.length();
+        int i = from;
+        while (i < len && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof WhitespaceNormalizedText)) {
+            return false;
+        }
+        return equalsNormalized(original, ((WhitespaceNormalizedText) o).original);
+    }
+
+    /**
+     * Same as the hash code of the normalized string.
+     */
+    @Override
+    public int hashCode() {
+        final int len = original.length();
+        int h = 0;
+        int i = skipWhitespace(original, 0);
+        while (i < len) {
+            char c = original.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i = skipWhitespace(original, i);
+                if (i < len) {
+                    h = 31 * h + SPACE;
+                }
+            } else {
+                h = 31 * h + c;
+                i++;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * The normalized string.
+     */
+    @Override
+    public String toString() {
+        String s = normalized;
+        if (s == null) {
+            StringBuilder sb = new StringBuilder(original.length());
+            final int len = original.length();
+            int i = skipWhitespace(original, 0);
+            while (i < len) {
+                char c = original.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i = skipWhitespace(original, i);
+                    if (i < len) {
+                        sb.append(SPACE);
+                    }
+                } else {
+                    sb.append(c);
+                    i++;
+                }
+            }
+            s = sb.toString();
+            normalized = s;
+        }
+        return s;
+    }
+}
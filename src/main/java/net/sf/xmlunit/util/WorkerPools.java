@@ -0,0 +1,69 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread pools batches use unless they are given an Executor.
+ */
+public final class WorkerPools {
+    /**
+     * Seconds an idle worker thread waits for more work before it ends.
+     */
+    public static final long KEEP_ALIVE_SECONDS = 1;
+
+    private static final AtomicInteger POOLS = new AtomicInteger();
+
+    private WorkerPools() {
+    }
+
+    /**
+     * Creates a pool of at most the given number of daemon threads named
+     * "xmlunit-&lt;name&gt;-&lt;pool&gt;-&lt;thread&gt;".
+     *
+     * <p>
+     * Idle threads end after {@link #KEEP_ALIVE_SECONDS}, so a pool that is
+     * abandoned without being shut down neither keeps the JVM alive nor
+     * leaks its threads.
+     * </p>
+     */
+    public static ExecutorService newPool(String name, int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger threads = new AtomicInteger();
+
+        private WorkerThreadFactory(String name) {
+            prefix = "xmlunit-" + name + "-" + POOLS.incrementAndGet() + "-";
+        }
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package net.sf.xmlunit.util;
 
 import javax.annotation.Nullable;
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
 
@@ -8,6 +11,9 @@ public class XsltUtils {
     @Nullable
     private URIResolver uriResolver;
 
+    @Nullable
+    private ErrorListener errorListener;
+
     @Nullable
     private Class<? extends TransformerFactory> transformerFactoryClass;
 
@@ -15,6 +21,10 @@ public class XsltUtils {
         this.uriResolver = uriResolver;
     }
 
+    public void setErrorListener(@Nullable ErrorListener errorListener) {
+        this.errorListener = errorListener;
+    }
+
     public void setTransformerFactoryClass(@Nullable Class<? extends TransformerFactory> transformerFactoryClass) {
         this.transformerFactoryClass = transformerFactoryClass;
     }
@@ -40,7 +50,46 @@ public class XsltUtils {
         if (uriResolver != null) {
             factory.setURIResolver(uriResolver);
         }
+        if (errorListener != null) {
+            factory.setErrorListener(errorListener);
+        }
 
         return factory;
     }
+
+    /**
+     * Get the factory shared by all XsltUtils of the current thread with the
+     * same factory class, URIResolver and ErrorListener.
+     *
+     * <p>
+     * Unlike {@link #newTransformerFactory} this doesn't repeat the JAXP
+     * lookup. The factory must neither be reconfigured nor be handed to other
+     * threads.
+     * </p>
+     */
+    public TransformerFactory getSharedTransformerFactory() {
+        return TransformerFactoryRegistry.getFactory(transformerFactoryClass, uriResolver, errorListener);
+    }
+
+    /**
+     * Get an identity Transformer from the current thread's pool of the
+     * shared factory.
+     *
+     * <p>
+     * Hand it back with {@link #releaseTransformer} once the transformation
+     * is done, without changing the configuration of this XsltUtils in
+     * between.
+     * </p>
+     */
+    public Transformer acquireTransformer() throws TransformerConfigurationException {
+        return TransformerFactoryRegistry.acquireTransformer(transformerFactoryClass, uriResolver, errorListener);
+    }
+
+    /**
+     * Resets a Transformer obtained by {@link #acquireTransformer} and returns
+     * it to the pool of the current thread.
+     */
+    public void releaseTransformer(Transformer transformer) {
+        TransformerFactoryRegistry.releaseTransformer(transformer, transformerFactoryClass);
+    }
 }
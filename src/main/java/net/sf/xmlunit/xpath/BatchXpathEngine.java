@@ -0,0 +1,55 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+
+import net.sf.xmlunit.util.IterableNodeList;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+
+/**
+ * NodeXpathEngine that evaluates several expressions against the same
+ * source.
+ */
+public interface BatchXpathEngine extends NodeXpathEngine {
+    /**
+     * Returns the Nodes matching each of the given XPath expressions.
+     *
+     * <p>
+     * The source is read only once. The result maps each expression to its
+     * potentially empty collection of Nodes and iterates in the order of the
+     * given expressions.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    Map<String, IterableNodeList> selectNodes(Collection<String> xPaths, Source s) throws XpathException;
+
+    /**
+     * Evaluates each of the given XPath expressions and stringifies the
+     * results.
+     *
+     * <p>
+     * The source is read only once. The result maps each expression to its
+     * value and iterates in the order of the given expressions.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    Map<String, String> evaluate(Collection<String> xPaths, Source s) throws XpathException;
+}
@@ -0,0 +1,424 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+
+import net.sf.xmlunit.util.Convert;
+import net.sf.xmlunit.util.IterableNodeList;
+import net.sf.xmlunit.util.Preconditions;
+import net.sf.xmlunit.xpath.StreamingXpath.Predicate;
+import net.sf.xmlunit.xpath.StreamingXpath.Step;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * XpathEngine decorator answering descendant searches for elements from
+ * indexes built once per document.
+ *
+ * <p>
+ * The first time an expression of a matching shape is evaluated against a
+ * document, all elements of the document are indexed by their qualified
+ * name and by the values of the configured key attributes. The index is
+ * attached to the Document, it lives as long as the Document does and is
+ * shared by all engines configured with the same key attributes.
+ * </p>
+ *
+ * <p>
+ * Expressions answered from the index are
+ * </p>
+ * <ul>
+ * <li><code>//name</code> and <code>//prefix:name</code>,</li>
+ * <li><code>//name[@key='value']</code> and <code>//*[@key='value']</code>
+ * where key is one of the key attributes,</li>
+ * <li>both of them passed to <code>count</code>.</li>
+ * </ul>
+ *
+ * <p>
+ * All other expressions, Sources that are not a DOMSource holding a
+ * Document and Documents that don't support user data are handed to the
+ * decorated engine. Documents must not be modified once they have been
+ * indexed, use {@link #invalidate} if they are. Instances of this class are
+ * as thread-safe as the decorated engine.
+ * </p>
+ */
+public class IndexedXpathEngine implements BatchXpathEngine {
+    private static final String USER_DATA_KEY_PREFIX = IndexedXpathEngine.class.getName() + ":";
+
+    private final NodeXpathEngine delegate;
+    private final Set<QName> keyAttributes;
+    private final String userDataKey;
+
+    // immutable
+    private volatile Map<String, String> namespaces = Collections.emptyMap();
+
+    /**
+     * @param delegate
+     *            evaluates all expressions that can't be answered from the
+     *            index
+     * @param keyAttributes
+     *            the attributes whose values are indexed, like
+     *            <code>new QName("id")</code>
+     */
+    public IndexedXpathEngine(NodeXpathEngine delegate, QName... keyAttributes) {
+        Preconditions.checkArgument(delegate != null, "delegate must not be null");
+        Preconditions.checkArgument(keyAttributes != null, "key attributes must not be null");
+        this.delegate = delegate;
+        this.keyAttributes = Collections.unmodifiableSet(new LinkedHashSet<QName>(Arrays.asList(keyAttributes)));
+        userDataKey = USER_DATA_KEY_PREFIX + this.keyAttributes;
+    }
+
+    /**
+     * Drops the index of a document so it gets rebuilt on next use.
+     */
+    public void invalidate(Document d) {
+        Preconditions.checkArgument(d != null, "Document must not be null");
+        synchronized (d) {
+            try {
+                d.setUserData(userDataKey, null, null);
+            } catch (DOMException ex) {
+                // never indexed
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public IterableNodeList selectNodes(String xPath, Source s) throws XpathException {
+        Document d = documentOf(s);
+        return d != null ? selectNodes(xPath, d) : delegate.selectNodes(xPath, s);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public String evaluate(String xPath, Source s) throws XpathException {
+        Document d = documentOf(s);
+        return d != null ? evaluate(xPath, d) : delegate.evaluate(xPath, s);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public IterableNodeList selectNodes(String xPath, Node n) throws XpathException {
+        IndexedQuery q = query(xPath, n);
+        if (q == null || q.count) {
+            return delegate.selectNodes(xPath, n);
+        }
+        return new IterableNodeList(new ListNodeList(q.result));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public String evaluate(String xPath, Node n) throws XpathException {
+        IndexedQuery q = query(xPath, n);
+        if (q == null) {
+            return delegate.evaluate(xPath, n);
+        }
+        if (q.count) {
+            return Integer.toString(q.result.size());
+        }
+        // the string value of a node-set is the one of its first node
+        return q.result.isEmpty() ? "" : q.result.get(0).getTextContent();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public double evaluateNumber(String xPath, Node n) throws XpathException {
+        IndexedQuery q = query(xPath, n);
+        return q != null && q.count ? q.result.size() : delegate.evaluateNumber(xPath, n);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public boolean evaluateBoolean(String xPath, Node n) throws XpathException {
+        IndexedQuery q = query(xPath, n);
+        return q != null ? !q.result.isEmpty() : delegate.evaluateBoolean(xPath, n);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The source is parsed once, the expressions are evaluated one by one
+     * against the resulting document.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, IterableNodeList> selectNodes(Collection<String> xPaths, Source s) throws XpathException {
+        Document d = parse(xPaths, s);
+        Map<String, IterableNodeList> result = new LinkedHashMap<String, IterableNodeList>();
+        for (String xPath : xPaths) {
+            result.put(xPath, selectNodes(xPath, d));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The source is parsed once, the expressions are evaluated one by one
+     * against the resulting document.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, String> evaluate(Collection<String> xPaths, Source s) throws XpathException {
+        Document d = parse(xPaths, s);
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String xPath : xPaths) {
+            result.put(xPath, evaluate(xPath, d));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNamespaceContext(Map<String, String> prefix2Uri) {
+        namespaces = prefix2Uri == null ? Collections.<String, String> emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<String, String>(prefix2Uri));
+        delegate.setNamespaceContext(prefix2Uri);
+    }
+
+    private static Document documentOf(Source s) {
+        if (s instanceof DOMSource && ((DOMSource) s).getNode() instanceof Document) {
+            return (Document) ((DOMSource) s).getNode();
+        }
+        return null;
+    }
+
+    private static Document parse(Collection<String> xPaths, Source s) throws XpathException {
+        Preconditions.checkArgument(xPaths != null, "expressions must not be null");
+        Preconditions.checkArgument(s != null, "Source must not be null");
+        try {
+            return Convert.toDocument(s);
+        } catch (XMLUnitRuntimeException ex) {
+            throw new XpathException(ex.getCause() != null ? ex.getCause() : ex);
+        }
+    }
+
+    /**
+     * Answers an expression from the index of the node's document.
+     *
+     * @return null if the expression has to be evaluated by the delegate
+     */
+    private IndexedQuery query(String xPath, Node n) {
+        Preconditions.checkArgument(n != null, "Node must not be null");
+        StreamingXpath compiled;
+        try {
+            compiled = StreamingXpath.compile(xPath, namespaces);
+        } catch (XpathException ex) {
+            // not even close to a shape that is indexed
+            return null;
+        }
+        if (!compiled.isAbsolute() || compiled.getSteps().length != 1
+                || (compiled.getFunction() != StreamingXpath.Function.NONE
+                && compiled.getFunction() != StreamingXpath.Function.COUNT)) {
+            return null;
+        }
+        Step step = compiled.getSteps()[0];
+        if (!step.descendant || step.attribute || step.predicates.length > 1) {
+            return null;
+        }
+        QName key = null;
+        String value = null;
+        if (step.predicates.length == 1) {
+            Predicate p = step.predicates[0];
+            if (p.isPositional() || p.value == null) {
+                return null;
+            }
+            key = new QName(p.namespaceUri, p.localName);
+            if (!keyAttributes.contains(key)) {
+                return null;
+            }
+            value = p.value;
+        } else if (step.namespaceUri == null || step.localName == null) {
+            // wildcards would select (almost) everything
+            return null;
+        }
+
+        DocumentIndex index = indexOf(n.getNodeType() == Node.DOCUMENT_NODE ? (Document) n : n.getOwnerDocument());
+        if (index == null) {
+            return null;
+        }
+        List<Element> result;
+        if (key == null) {
+            result = index.byName(new QName(step.namespaceUri, step.localName));
+        } else {
+            result = index.byKey(key, value);
+            if (step.localName != null || step.namespaceUri != null) {
+                List<Element> filtered = new ArrayList<Element>();
+                for (Element e : result) {
+                    if (step.matchesName(e.getNamespaceURI(), localNameOf(e))) {
+                        filtered.add(e);
+                    }
+                }
+                result = filtered;
+            }
+        }
+        return new IndexedQuery(result, compiled.getFunction() == StreamingXpath.Function.COUNT);
+    }
+
+    /**
+     * Obtains the index of a document, building it on first use.
+     *
+     * @return null if the document can't hold an index
+     */
+    private DocumentIndex indexOf(Document d) {
+        if (d == null) {
+            return null;
+        }
+        synchronized (d) {
+            try {
+                DocumentIndex index = (DocumentIndex) d.getUserData(userDataKey);
+                if (index == null) {
+                    index = new DocumentIndex(d, keyAttributes);
+                    d.setUserData(userDataKey, index, null);
+                }
+                return index;
+            } catch (DOMException ex) {
+                // read-only views like the ones of net.sf.xmlunit.tree
+                return null;
+            }
+        }
+    }
+
+    private static String localNameOf(Node n) {
+        String local = n.getLocalName();
+        return local != null ? local : n.getNodeName();
+    }
+
+    private static final class IndexedQuery {
+        private final List<? extends Node> result;
+        private final boolean count;
+
+        private IndexedQuery(List<? extends Node> result, boolean count) {
+            this.result = result;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Elements of a document by qualified name and by key attribute value,
+     * each list in document order.
+     */
+    private static final class DocumentIndex {
+        private final Map<QName, List<Element>> byName = new HashMap<QName, List<Element>>();
+        private final Map<QName, Map<String, List<Element>>> byKey =
+                new HashMap<QName, Map<String, List<Element>>>();
+
+        private DocumentIndex(Document d, Set<QName> keyAttributes) {
+            for (QName key : keyAttributes) {
+                byKey.put(key, new HashMap<String, List<Element>>());
+            }
+            index(d);
+            freeze(byName);
+            for (Map<String, List<Element>> values : byKey.values()) {
+                freeze(values);
+            }
+        }
+
+        private void index(Node parent) {
+            for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (n.getNodeType() == Node.ELEMENT_NODE) {
+                    Element e = (Element) n;
+                    add(byName, new QName(nullToEmpty(e.getNamespaceURI()), localNameOf(e)), e);
+                    if (!byKey.isEmpty()) {
+                        NamedNodeMap attributes = e.getAttributes();
+                        for (int i = 0; i < attributes.getLength(); i++) {
+                            Attr a = (Attr) attributes.item(i);
+                            Map<String, List<Element>> values =
+                                    byKey.get(new QName(nullToEmpty(a.getNamespaceURI()), localNameOf(a)));
+                            if (values != null) {
+                                add(values, a.getValue(), e);
+                            }
+                        }
+                    }
+                    index(e);
+                } else if (n.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+                    index(n);
+                }
+            }
+        }
+
+        private List<Element> byName(QName name) {
+            List<Element> l = byName.get(name);
+            return l != null ? l : Collections.<Element> emptyList();
+        }
+
+        private List<Element> byKey(QName key, String value) {
+            List<Element> l = byKey.get(key).get(value);
+            return l != null ? l : Collections.<Element> emptyList();
+        }
+
+        private static <K> void add(Map<K, List<Element>> map, K key, Element e) {
+            List<Element> l = map.get(key);
+            if (l == null) {
+                l = new ArrayList<Element>(1);
+                map.put(key, l);
+            }
+            l.add(e);
+        }
+
+        private static <K> void freeze(Map<K, List<Element>> map) {
+            for (Map.Entry<K, List<Element>> entry : map.entrySet()) {
+                entry.setValue(Collections.unmodifiableList(entry.getValue()));
+            }
+        }
+
+        private static String nullToEmpty(String s) {
+            return s == null ? XMLConstants.NULL_NS_URI : s;
+        }
+    }
+}
@@ -13,43 +13,96 @@
  */
 package net.sf.xmlunit.xpath;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.xml.namespace.QName;
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import net.sf.xmlunit.util.Convert;
 import net.sf.xmlunit.util.IterableNodeList;
+import net.sf.xmlunit.util.Preconditions;
 
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
 import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 /**
  * Simplified access to JAXP's XPath API.
+ *
+ * <p>
+ * Neither XPath nor XPathExpression instances are thread-safe, so each
+ * thread compiles and evaluates expressions with its own XPath instance.
+ * Every thread keeps a least recently used cache of at most
+ * {@link #CACHE_SIZE} compiled expressions that is shared by all instances
+ * of this class. It is keyed by the XPathFactory instance - whose resolvers
+ * and features the expressions depend on -, the expression and the namespace
+ * context the expression has been compiled with. Instances of this class may
+ * be shared between threads.
+ * </p>
  */
-public class JaxpXpathEngine implements XpathEngine {
-    private final XPath xpath;
+public class JaxpXpathEngine implements BatchXpathEngine {
+    /**
+     * Number of compiled expressions cached per thread.
+     */
+    public static final int CACHE_SIZE = 256;
 
-    public JaxpXpathEngine(XPathFactory fac) {
-        try {
-            xpath = fac.newXPath();
-        } catch (Exception e) {
-            throw new ConfigurationException(e);
+    private static final ThreadLocal<Compiler> COMPILER = new ThreadLocal<Compiler>() {
+        @Override
+        protected Compiler initialValue() {
+            return new Compiler();
         }
+    };
+
+    // incremented by clearCache, threads drop their expressions once they
+    // see a new generation
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private final XPathFactory factory;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    // immutable, null as long as no namespace context has been set
+    private volatile Map<String, String> namespaces;
+
+    public JaxpXpathEngine(XPathFactory fac) {
+        Preconditions.checkArgument(fac != null, "XPathFactory must not be null");
+        this.factory = fac;
+        // fail early if the factory is unusable
+        COMPILER.get().use(fac);
+    }
+
+    /**
+     * Drops the compiled expressions of all instances and threads.
+     */
+    public static void clearCache() {
+        GENERATION.incrementAndGet();
     }
 
     /**
      * {@inheritDoc}
-     * 
+     *
      * @throws XpathException
      */
     public IterableNodeList selectNodes(String xPath, Source s) throws XpathException {
+        Document d = documentOf(s);
+        if (d != null) {
+            return selectNodes(xPath, d);
+        }
         try {
-            return new IterableNodeList((NodeList) xpath.evaluate(xPath, Convert.toInputSource(s),
+            return new IterableNodeList((NodeList) compile(xPath).evaluate(Convert.toInputSource(s),
                     XPathConstants.NODESET));
         } catch (XPathExpressionException ex) {
             throw new XpathException(ex);
@@ -58,22 +111,231 @@ public class JaxpXpathEngine implements XpathEngine {
 
     /**
      * {@inheritDoc}
-     * 
+     *
      * @throws XpathException
      */
     public String evaluate(String xPath, Source s) throws XpathException {
+        Document d = documentOf(s);
+        if (d != null) {
+            return evaluate(xPath, d);
+        }
+        try {
+            return compile(xPath).evaluate(Convert.toInputSource(s));
+        } catch (XPathExpressionException ex) {
+            throw new XpathException(ex);
+        }
+    }
+
+    /**
+     * Documents wrapped in DOMSources are used directly rather than being
+     * serialized and parsed again.
+     */
+    private static Document documentOf(Source s) {
+        if (s instanceof DOMSource) {
+            Node n = ((DOMSource) s).getNode();
+            if (n instanceof Document) {
+                return (Document) n;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public IterableNodeList selectNodes(String xPath, Node n) throws XpathException {
+        return new IterableNodeList((NodeList) evaluate(xPath, n, XPathConstants.NODESET));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public String evaluate(String xPath, Node n) throws XpathException {
+        return (String) evaluate(xPath, n, XPathConstants.STRING);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public double evaluateNumber(String xPath, Node n) throws XpathException {
+        return ((Double) evaluate(xPath, n, XPathConstants.NUMBER)).doubleValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public boolean evaluateBoolean(String xPath, Node n) throws XpathException {
+        return ((Boolean) evaluate(xPath, n, XPathConstants.BOOLEAN)).booleanValue();
+    }
+
+    private Object evaluate(String xPath, Node n, QName returnType) throws XpathException {
+        Preconditions.checkArgument(n != null, "Node must not be null");
         try {
-            return xpath.evaluate(xPath, Convert.toInputSource(s));
+            return compile(xPath).evaluate(n, returnType);
         } catch (XPathExpressionException ex) {
             throw new XpathException(ex);
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Simple location paths like <code>/a/b</code> or <code>//p:c</code> are
+     * matched together in a single walk over the document.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, IterableNodeList> selectNodes(Collection<String> xPaths, Source s) throws XpathException {
+        return XpathBatch.selectNodes(this, namespaces, xPaths, s);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Simple location paths like <code>/a/b</code> or <code>//p:c</code> are
+     * matched together in a single walk over the document.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, String> evaluate(Collection<String> xPaths, Source s) throws XpathException {
+        return XpathBatch.evaluate(this, namespaces, xPaths, s);
+    }
+
     /**
      * {@inheritDoc}
      */
     public void setNamespaceContext(Map<String, String> prefix2Uri) {
-        xpath.setNamespaceContext(Convert.toNamespaceContext(prefix2Uri));
+        namespaces = Collections.unmodifiableMap(new LinkedHashMap<String, String>(prefix2Uri));
+    }
+
+    /**
+     * Number of expressions this instance has found in the cache.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Number of expressions this instance had to compile.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Obtains the current thread's compiled form of an expression for the
+     * current namespace context.
+     */
+    private XPathExpression compile(String xPath) throws XPathExpressionException {
+        Map<String, String> ns = namespaces;
+        Compiler c = COMPILER.get();
+        c.dropOutdatedExpressions();
+        ExpressionKey key = new ExpressionKey(factory, xPath, ns);
+        XPathExpression expression = c.expressions.get(key);
+        if (expression != null) {
+            cacheHits.incrementAndGet();
+            return expression;
+        }
+        cacheMisses.incrementAndGet();
+        c.use(factory);
+        if (c.namespaces != ns) {
+            c.xpath.setNamespaceContext(Convert.toNamespaceContext(ns != null ? ns
+                    : Collections.<String, String> emptyMap()));
+            c.namespaces = ns;
+        }
+        expression = c.xpath.compile(xPath);
+        c.expressions.put(key, expression);
+        return expression;
     }
 
+    /**
+     * XPath instance of a single thread, the namespace context it has been
+     * given and the expressions compiled by the thread.
+     */
+    private static final class Compiler {
+        private final Map<ExpressionKey, XPathExpression> expressions =
+                new LinkedHashMap<ExpressionKey, XPathExpression>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<ExpressionKey, XPathExpression> eldest) {
+                        return size() > CACHE_SIZE;
+                    }
+                };
+        private int generation = GENERATION.get();
+        private XPathFactory factory;
+        private XPath xpath;
+        private Map<String, String> namespaces;
+
+        private void dropOutdatedExpressions() {
+            int current = GENERATION.get();
+            if (generation != current) {
+                expressions.clear();
+                generation = current;
+            }
+        }
+
+        /**
+         * Switches to an XPath instance of the given factory.
+         */
+        private void use(XPathFactory fac) {
+            if (factory == fac) {
+                return;
+            }
+            try {
+                // XPathFactory isn't thread-safe either
+                synchronized (fac) {
+                    xpath = fac.newXPath();
+                }
+            } catch (Exception e) {
+                throw new ConfigurationException(e);
+            }
+            factory = fac;
+            namespaces = null;
+        }
+    }
+
+    private static final class ExpressionKey {
+        // configured factories may compile differently, so they are
+        // compared by identity
+        private final XPathFactory factory;
+        private final String expression;
+        private final Map<String, String> namespaces;
+        private final int hashCode;
+
+        private ExpressionKey(XPathFactory factory, String expression, Map<String, String> namespaces) {
+            this.factory = factory;
+            this.expression = expression;
+            this.namespaces = namespaces;
+            hashCode = 31 * expression.hashCode() + (namespaces == null ? 0 : namespaces.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) o;
+            return factory == other.factory
+                    && expression.equals(other.expression)
+                    && (namespaces == null ? other.namespaces == null : namespaces.equals(other.namespaces));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
 }
@@ -0,0 +1,54 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import net.sf.xmlunit.util.IterableNodeList;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Node;
+
+/**
+ * XpathEngine that evaluates expressions against DOM nodes.
+ */
+public interface NodeXpathEngine extends XpathEngine {
+    /**
+     * Returns a potentially empty collection of Nodes matching an XPath
+     * expression evaluated with the given node as context node.
+     *
+     * <p>
+     * The node is used as it is, it isn't serialized or parsed again.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    IterableNodeList selectNodes(String xPath, Node n) throws XpathException;
+
+    /**
+     * Evaluates an XPath expression with the given node as context node and
+     * stringifies the result.
+     */
+    String evaluate(String xPath, Node n) throws XpathException;
+
+    /**
+     * Evaluates an XPath expression with the given node as context node and
+     * converts the result to a number using the XPath number function.
+     */
+    double evaluateNumber(String xPath, Node n) throws XpathException;
+
+    /**
+     * Evaluates an XPath expression with the given node as context node and
+     * converts the result to a boolean using the XPath boolean function.
+     */
+    boolean evaluateBoolean(String xPath, Node n) throws XpathException;
+}
@@ -38,6 +38,7 @@ package net.sf.xmlunit.xpath;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -47,11 +48,12 @@ import javax.annotation.Nullable;
 import javax.xml.transform.ErrorListener;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
@@ -75,13 +77,45 @@ import org.w3c.dom.NodeList;
  * Jaxen is too, but this approach seemed to be the simplest thing that could
  * possibly work...)
  */
-public class SimpleXpathEngine implements XpathEngine {
+public class SimpleXpathEngine implements BatchXpathEngine {
     private final static String DEFAULT_XSLT_VERSION = "1.0";
+    private final static int TEMPLATES_CACHE_SIZE = 64;
 
     private String xsltVersion = DEFAULT_XSLT_VERSION;
     private Map<String, String> ctx = Collections.emptyMap();
     private final XmlUnitProperties properties;
 
+    // guarded by this
+    private final Map<String, Templates> templatesCache =
+            new LinkedHashMap<String, Templates>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Templates> eldest) {
+                    return size() > TEMPLATES_CACHE_SIZE;
+                }
+            };
+
+    private static final ErrorListener ERROR_LISTENER = new ErrorListener() {
+        @Override
+        public void error(TransformerException ex) throws TransformerException {
+            // any error in our simple stylesheet must be fatal
+            throw ex;
+        }
+
+        @Override
+        public void fatalError(TransformerException ex) throws TransformerException {
+            throw ex;
+        }
+
+        @Override
+        public void warning(TransformerException ex) {
+            // there shouldn't be any warning
+            // TODO logger
+            ex.printStackTrace();
+        }
+    };
+
     public SimpleXpathEngine(@Nullable XmlUnitProperties properties) {
         if (properties == null) {
             this.properties = new XmlUnitProperties();
@@ -162,46 +196,43 @@ public class SimpleXpathEngine implements XpathEngine {
     private void performTransform(String xslt, Source source, Result result)
             throws TransformerException, ConfigurationException, XpathException {
         try {
-            StreamSource xsltSource = new StreamSource(new StringReader(xslt));
+            Transformer transformer = getTemplates(xslt).newTransformer();
+            transformer.setErrorListener(ERROR_LISTENER);
+            transformer.transform(source, result);
+        } catch (TransformerConfigurationException ex) {
+            throw new XpathException(ex);
+        }
+    }
 
-            // TODO
+    /**
+     * Returns the compiled form of a stylesheet, compiling it if it isn't in
+     * the cache.
+     * 
+     * <p>
+     * The stylesheet text is the cache key since it is made up of the
+     * expression, the kind of result, the namespace declarations and the XSLT
+     * version.
+     * </p>
+     */
+    private synchronized Templates getTemplates(String xslt)
+            throws TransformerConfigurationException, XpathException {
+        Templates templates = templatesCache.get(xslt);
+        if (templates == null) {
             XsltUtils xsltUtils = new XsltUtils();
             xsltUtils.setUriResolver(properties.getUriResolver());
+            xsltUtils.setErrorListener(ERROR_LISTENER);
             xsltUtils.setTransformerFactoryClass(properties.getTransformerFactoryClass());
-
-            TransformerFactory tf = xsltUtils.newTransformerFactory();
-            ErrorListener el = new ErrorListener() {
-                @Override
-                public void error(TransformerException ex) throws TransformerException {
-                    // any error in our simple stylesheet must be fatal
-                    throw ex;
-                }
-
-                @Override
-                public void fatalError(TransformerException ex) throws TransformerException {
-                    throw ex;
-                }
-
-                @Override
-                public void warning(TransformerException ex) {
-                    // there shouldn't be any warning
-                    // TODO logger
-                    ex.printStackTrace();
-                }
-            };
-            tf.setErrorListener(el);
-            Transformer transformer = tf.newTransformer(xsltSource);
+            templates = xsltUtils.getSharedTransformerFactory()
+                    .newTemplates(new StreamSource(new StringReader(xslt)));
             // Issue 1985229 says Xalan-J 2.7.0 may return null for
             // illegal input
-            if (transformer == null) {
+            if (templates == null) {
                 throw new XpathException("Failed to obtain an XSLT transformer"
                         + " for XPath expression.");
             }
-            transformer.setErrorListener(el);
-            transformer.transform(source, result);
-        } catch (TransformerConfigurationException ex) {
-            throw new XpathException(ex);
+            templatesCache.put(xslt, templates);
         }
+        return templates;
     }
 
     /**
@@ -276,6 +307,80 @@ public class SimpleXpathEngine implements XpathEngine {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The node is transformed as a DOMSource.
+     * </p>
+     */
+    @Override
+    public IterableNodeList selectNodes(String xPath, Node n) throws XpathException {
+        return selectNodes(xPath, new DOMSource(n));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * The node is transformed as a DOMSource.
+     * </p>
+     */
+    @Override
+    public String evaluate(String xPath, Node n) throws XpathException {
+        return evaluate(xPath, new DOMSource(n));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double evaluateNumber(String xPath, Node n) throws XpathException {
+        String value = evaluate("number(" + xPath + ")", n);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException ex) {
+            throw new XpathException("Unexpected result of number(): " + value, ex);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean evaluateBoolean(String xPath, Node n) throws XpathException {
+        return Boolean.parseBoolean(evaluate("boolean(" + xPath + ")", n));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Simple location paths like <code>/a/b</code> or <code>//p:c</code> are
+     * matched together in a single walk over the document without applying
+     * any stylesheet, the nodes returned for them are the nodes of the
+     * document rather than copies.
+     * </p>
+     */
+    @Override
+    public Map<String, IterableNodeList> selectNodes(Collection<String> xPaths, Source s) throws XpathException {
+        return XpathBatch.selectNodes(this, ctx, xPaths, s);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Simple location paths like <code>/a/b</code> or <code>//p:c</code> are
+     * matched together in a single walk over the document without applying
+     * any stylesheet.
+     * </p>
+     */
+    @Override
+    public Map<String, String> evaluate(Collection<String> xPaths, Source s) throws XpathException {
+        return XpathBatch.evaluate(this, ctx, xPaths, s);
+    }
+
     @Override
     public void setNamespaceContext(@Nullable Map<String, String> prefix2Uri) {
         if (prefix2Uri == null) {
@@ -0,0 +1,483 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import net.sf.xmlunit.xpath.StreamingXpath.Predicate;
+import net.sf.xmlunit.xpath.StreamingXpath.Step;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Runs a {@link StreamingXpath} over the start and end events of the
+ * elements of a document.
+ *
+ * <p>
+ * For each open element the evaluation keeps the set of steps that may
+ * match its children and the counters of positional predicates, memory use
+ * grows with the depth of the document but not with its size. Steps along
+ * the child axis are dropped from the set once a positional predicate can't
+ * be satisfied anymore, the evaluation is {@link #isDone done} as soon as
+ * its result is known or no step can match anything that is still to come.
+ * </p>
+ */
+final class StreamingEvaluation {
+
+    enum Mode {
+        /** Collects all matching nodes. */
+        NODES,
+        /** Counts all matching nodes. */
+        COUNT,
+        /** Finds the first matching node. */
+        EXISTS,
+        /** Finds the string value of the first matching node. */
+        FIRST_STRING
+    }
+
+    /**
+     * An element reported by the driver of the evaluation.
+     */
+    interface ElementEvent {
+        String getNamespaceURI();
+
+        String getLocalName();
+
+        String getPrefix();
+
+        /**
+         * Number of attributes, namespace declarations excluded.
+         */
+        int getAttributeCount();
+
+        String getAttributeNamespaceURI(int index);
+
+        String getAttributeLocalName(int index);
+
+        String getAttributePrefix(int index);
+
+        String getAttributeValue(int index);
+
+        /**
+         * The element itself if the document is a DOM tree, null if it is
+         * read from a stream.
+         */
+        Element getElement();
+
+        /**
+         * The attribute itself if the document is a DOM tree, null if it is
+         * read from a stream.
+         */
+        Attr getAttribute(int index);
+    }
+
+    private final StreamingXpath xpath;
+    private final Step[] steps;
+    private final Mode mode;
+    private final boolean documentContext;
+
+    // per open element, the last one being the context node of the path:
+    // the steps that may match its children and their position counters
+    private boolean[][] active = new boolean[16][];
+    private int[][] counters = new int[16][];
+    private int depth;
+    private int liveSteps;
+    private boolean rootSeen;
+
+    private boolean done;
+    private final List<Node> nodes = new ArrayList<Node>();
+    private long count;
+    private StringBuilder text;
+    private String firstString;
+    // depth of the element whose string value is being collected
+    private int textDepth = -1;
+
+    // copies of matches read from a stream
+    private Document copies;
+    private Node copyParent;
+    private int copyDepth = -1;
+
+    /**
+     * @param context
+     *            the context node of the path, null if it is the document
+     *            node
+     */
+    StreamingEvaluation(StreamingXpath xpath, Mode mode, ElementEvent context) {
+        this.xpath = xpath;
+        this.steps = xpath.getSteps();
+        this.mode = mode;
+        documentContext = context == null;
+        depth = -1;
+        push(reached(0, context, null));
+        checkDone();
+    }
+
+    StreamingXpath getXpath() {
+        return xpath;
+    }
+
+    /**
+     * Whether the result is known and no further events are needed.
+     */
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Whether character data is needed for the current element.
+     */
+    boolean wantsText() {
+        return textDepth >= 0 || copyDepth >= 0;
+    }
+
+    List<Node> getNodes() {
+        return nodes;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    boolean exists() {
+        return count > 0;
+    }
+
+    /**
+     * String value of the first match, empty if there is none.
+     */
+    String getFirstString() {
+        return firstString != null ? firstString : "";
+    }
+
+    /**
+     * An element below the context node has been entered.
+     */
+    void startElement(ElementEvent e) {
+        if (done) {
+            return;
+        }
+        int parent = depth;
+        boolean[] parentSteps = active[parent];
+        boolean[] childSteps = null;
+
+        if (parentSteps != null) {
+            for (int i = 0; i < steps.length; i++) {
+                if (!parentSteps[i]) {
+                    continue;
+                }
+                Step step = steps[i];
+                if (step.descendant) {
+                    // the children are descendants of the context as well
+                    childSteps = add(childSteps, i);
+                }
+                if (step.attribute) {
+                    // only attribute steps along the descendant axis are
+                    // kept in the sets
+                    matchAttributes(step, e);
+                } else if (step.matchesName(e.getNamespaceURI(), e.getLocalName())
+                        && passesPredicates(step, i, e, parent)) {
+                    childSteps = reached(i + 1, e, childSteps);
+                }
+            }
+        }
+        if (documentContext && parent == 0 && !rootSeen) {
+            rootSeen = true;
+            // there is only one element child of the document node
+            dropChildSteps(0);
+        }
+        push(childSteps);
+        copyElement(e);
+        checkDone();
+    }
+
+    /**
+     * Character data of the current element.
+     */
+    void characters(char[] ch, int start, int length) {
+        if (done) {
+            return;
+        }
+        if (textDepth >= 0) {
+            text.append(ch, start, length);
+        }
+        if (copyDepth >= 0) {
+            copyParent.appendChild(copies.createTextNode(new String(ch, start, length)));
+        }
+    }
+
+    void endElement() {
+        if (done) {
+            return;
+        }
+        if (copyDepth >= 0) {
+            if (depth == copyDepth) {
+                copyDepth = -1;
+                copyParent = null;
+            } else {
+                copyParent = copyParent.getParentNode();
+            }
+        }
+        if (textDepth == depth) {
+            firstString = text.toString();
+            text = null;
+            textDepth = -1;
+            done = true;
+            return;
+        }
+        pop();
+        checkDone();
+    }
+
+    /**
+     * Signals the end of the document.
+     */
+    void endDocument() {
+        done = true;
+    }
+
+    /**
+     * Step index has been reached at the given element (null for the
+     * document node), i.e. all previous steps have matched it.
+     *
+     * @return the steps that may match the children of the element
+     */
+    private boolean[] reached(int index, ElementEvent e, boolean[] childSteps) {
+        if (index == steps.length) {
+            matched(e, -1);
+            return childSteps;
+        }
+        Step step = steps[index];
+        if (step.attribute) {
+            if (e != null) {
+                matchAttributes(step, e);
+            }
+            return step.descendant ? add(childSteps, index) : childSteps;
+        }
+        return add(childSteps, index);
+    }
+
+    private boolean passesPredicates(Step step, int index, ElementEvent e, int parent) {
+        for (Predicate p : step.predicates) {
+            if (p.isPositional()) {
+                int position = ++counters[parent][p.slot];
+                if (position >= p.position && !step.descendant) {
+                    // counters only grow, later siblings can't pass anymore
+                    if (active[parent][index]) {
+                        active[parent][index] = false;
+                        liveSteps--;
+                    }
+                }
+                if (position != p.position) {
+                    return false;
+                }
+            } else if (!hasAttribute(e, p)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasAttribute(ElementEvent e, Predicate p) {
+        for (int i = 0; i < e.getAttributeCount(); i++) {
+            if (p.localName.equals(e.getAttributeLocalName(i))
+                    && p.namespaceUri.equals(nullToEmpty(e.getAttributeNamespaceURI(i)))) {
+                return p.value == null || p.value.equals(e.getAttributeValue(i));
+            }
+        }
+        return false;
+    }
+
+    private void matchAttributes(Step step, ElementEvent e) {
+        for (int i = 0; i < e.getAttributeCount() && !done; i++) {
+            if (step.matchesName(e.getAttributeNamespaceURI(i), e.getAttributeLocalName(i))) {
+                matched(e, i);
+            }
+        }
+    }
+
+    /**
+     * A node matched the whole path.
+     *
+     * @param attribute
+     *            index of the matching attribute of e, -1 if the element
+     *            itself matched
+     */
+    private void matched(ElementEvent e, int attribute) {
+        count++;
+        switch (mode) {
+        case EXISTS:
+            done = true;
+            break;
+        case FIRST_STRING:
+            if (count == 1) {
+                if (attribute >= 0) {
+                    firstString = e.getAttributeValue(attribute);
+                    done = true;
+                } else if (e.getElement() != null) {
+                    firstString = e.getElement().getTextContent();
+                    done = true;
+                } else {
+                    text = new StringBuilder();
+                    // the element is about to be pushed
+                    textDepth = depth + 1;
+                }
+            }
+            break;
+        case NODES:
+            if (attribute >= 0) {
+                nodes.add(e.getAttribute(attribute) != null ? e.getAttribute(attribute)
+                        : copyAttribute(e, attribute));
+            } else if (e.getElement() != null) {
+                nodes.add(e.getElement());
+            } else if (copyDepth < 0) {
+                // copied once the element is pushed
+                copyDepth = depth + 1;
+            } else {
+                // nested in another match that is being copied, marked by
+                // a null which is replaced by the copy
+                nodes.add(null);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void copyElement(ElementEvent e) {
+        if (copyDepth < 0 || e.getElement() != null) {
+            return;
+        }
+        if (copies == null) {
+            copies = newDocument();
+        }
+        Element copy = copies.createElementNS(emptyToNull(e.getNamespaceURI()),
+                qualifiedName(e.getPrefix(), e.getLocalName()));
+        for (int i = 0; i < e.getAttributeCount(); i++) {
+            copy.setAttributeNodeNS(copyAttribute(e, i));
+        }
+        if (depth == copyDepth) {
+            nodes.add(copy);
+        } else {
+            copyParent.appendChild(copy);
+            int last = nodes.size() - 1;
+            if (last >= 0 && nodes.get(last) == null) {
+                nodes.set(last, copy);
+            }
+        }
+        copyParent = copy;
+    }
+
+    private Attr copyAttribute(ElementEvent e, int index) {
+        if (copies == null) {
+            copies = newDocument();
+        }
+        Attr a = copies.createAttributeNS(emptyToNull(e.getAttributeNamespaceURI(index)),
+                qualifiedName(e.getAttributePrefix(index), e.getAttributeLocalName(index)));
+        a.setValue(e.getAttributeValue(index));
+        return a;
+    }
+
+    private static Document newDocument() {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException ex) {
+            throw new ConfigurationException(ex);
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.length() == 0 ? null : s;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? XMLConstants.NULL_NS_URI : s;
+    }
+
+    private boolean[] add(boolean[] set, int index) {
+        boolean[] s = set != null ? set : new boolean[steps.length];
+        s[index] = true;
+        return s;
+    }
+
+    private void dropChildSteps(int level) {
+        boolean[] set = active[level];
+        if (set == null) {
+            return;
+        }
+        for (int i = 0; i < set.length; i++) {
+            if (set[i] && !steps[i].descendant) {
+                set[i] = false;
+                liveSteps--;
+            }
+        }
+    }
+
+    private void push(boolean[] childSteps) {
+        depth++;
+        if (depth == active.length) {
+            boolean[][] newActive = new boolean[depth * 2][];
+            System.arraycopy(active, 0, newActive, 0, depth);
+            active = newActive;
+            int[][] newCounters = new int[depth * 2][];
+            System.arraycopy(counters, 0, newCounters, 0, depth);
+            counters = newCounters;
+        }
+        active[depth] = childSteps;
+        counters[depth] = childSteps != null ? newCounters() : null;
+        if (childSteps != null) {
+            for (boolean b : childSteps) {
+                if (b) {
+                    liveSteps++;
+                }
+            }
+        }
+    }
+
+    private void pop() {
+        boolean[] set = active[depth];
+        if (set != null) {
+            for (boolean b : set) {
+                if (b) {
+                    liveSteps--;
+                }
+            }
+        }
+        active[depth] = null;
+        counters[depth] = null;
+        depth--;
+    }
+
+    private int[] newCounters() {
+        return xpath.getPositionSlots() == 0 ? null : new int[xpath.getPositionSlots()];
+    }
+
+    private void checkDone() {
+        if (liveSteps == 0 && textDepth < 0 && copyDepth < 0) {
+            done = true;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+
+/**
+ * An expression of the subset of XPath 1.0 supported by
+ * {@link StreamingXpathEngine}, compiled into the steps of the automaton run
+ * by {@link StreamingEvaluation}.
+ */
+final class StreamingXpath {
+
+    enum Function {
+        NONE, COUNT, STRING, BOOLEAN
+    }
+
+    private final String expression;
+    private final Function function;
+    private final boolean absolute;
+    private final Step[] steps;
+    private final int positionSlots;
+
+    private StreamingXpath(String expression, Function function, boolean absolute, List<Step> steps,
+            int positionSlots) {
+        this.expression = expression;
+        this.function = function;
+        this.absolute = absolute;
+        this.steps = steps.toArray(new Step[steps.size()]);
+        this.positionSlots = positionSlots;
+    }
+
+    String getExpression() {
+        return expression;
+    }
+
+    Function getFunction() {
+        return function;
+    }
+
+    /**
+     * Whether the path starts at the root of the document rather than at the
+     * context node.
+     */
+    boolean isAbsolute() {
+        return absolute;
+    }
+
+    Step[] getSteps() {
+        return steps;
+    }
+
+    /**
+     * Number of positional predicates, each of them needs a counter per
+     * context node.
+     */
+    int getPositionSlots() {
+        return positionSlots;
+    }
+
+    /**
+     * A location step along the child or descendant axis, or a final step
+     * along the attribute axis.
+     */
+    static final class Step {
+        final boolean descendant;
+        final boolean attribute;
+        // null matches any namespace
+        final String namespaceUri;
+        // null matches any local name
+        final String localName;
+        final Predicate[] predicates;
+
+        private Step(boolean descendant, boolean attribute, String namespaceUri, String localName,
+                List<Predicate> predicates) {
+            this.descendant = descendant;
+            this.attribute = attribute;
+            this.namespaceUri = namespaceUri;
+            this.localName = localName;
+            this.predicates = predicates.toArray(new Predicate[predicates.size()]);
+        }
+
+        boolean matchesName(String uri, String local) {
+            return (localName == null || localName.equals(local))
+                    && (namespaceUri == null || namespaceUri.equals(uri == null ? XMLConstants.NULL_NS_URI : uri));
+        }
+    }
+
+    /**
+     * Either a positional predicate or a test for the existence or value of
+     * an attribute.
+     */
+    static final class Predicate {
+        // 0 for attribute tests
+        final int position;
+        final int slot;
+        final String namespaceUri;
+        final String localName;
+        // null tests for existence only
+        final String value;
+
+        private Predicate(int position, int slot) {
+            this.position = position;
+            this.slot = slot;
+            namespaceUri = localName = value = null;
+        }
+
+        private Predicate(String namespaceUri, String localName, String value) {
+            position = 0;
+            slot = -1;
+            this.namespaceUri = namespaceUri;
+            this.localName = localName;
+            this.value = value;
+        }
+
+        boolean isPositional() {
+            return position > 0;
+        }
+    }
+
+    /**
+     * Compiles an expression.
+     *
+     * @throws XpathException
+     *             if the expression isn't part of the supported subset or
+     *             uses an unbound prefix
+     */
+    static StreamingXpath compile(String expression, Map<String, String> prefix2Uri) throws XpathException {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression must not be null");
+        }
+        return new Parser(expression, prefix2Uri).parse();
+    }
+
+    private static final class Parser {
+        private final String expr;
+        private final Map<String, String> prefix2Uri;
+        private int pos;
+        private int slots;
+
+        private Parser(String expr, Map<String, String> prefix2Uri) {
+            this.expr = expr;
+            this.prefix2Uri = prefix2Uri;
+        }
+
+        private StreamingXpath parse() throws XpathException {
+            Function function = Function.NONE;
+            skipWhitespace();
+            int start = pos;
+            String name = peekName();
+            if (name != null) {
+                pos += name.length();
+                skipWhitespace();
+                if (lookingAt("(")) {
+                    function = function(name, start);
+                    pos++;
+                } else {
+                    // a relative path, parsed as such below
+                    pos = start;
+                }
+            }
+
+            skipWhitespace();
+            boolean absolute = lookingAt("/");
+            List<Step> steps = new ArrayList<Step>();
+            boolean first = true;
+            while (true) {
+                skipWhitespace();
+                boolean descendant = false;
+                if (lookingAt("//")) {
+                    descendant = true;
+                    pos += 2;
+                } else if (lookingAt("/")) {
+                    pos++;
+                } else if (!first || absolute) {
+                    break;
+                }
+                first = false;
+                if (!steps.isEmpty() && steps.get(steps.size() - 1).attribute) {
+                    throw unsupported("attributes can only be selected by the last step");
+                }
+                steps.add(step(descendant));
+            }
+            if (steps.isEmpty()) {
+                throw unsupported("an empty path");
+            }
+
+            if (function != Function.NONE) {
+                skipWhitespace();
+                expect(")");
+            }
+            skipWhitespace();
+            if (pos < expr.length()) {
+                throw unsupported("'" + expr.substring(pos) + "' can't follow a location path");
+            }
+            return new StreamingXpath(expr, function, absolute, steps, slots);
+        }
+
+        private Function function(String name, int start) throws XpathException {
+            if ("count".equals(name)) {
+                return Function.COUNT;
+            }
+            if ("string".equals(name)) {
+                return Function.STRING;
+            }
+            if ("boolean".equals(name)) {
+                return Function.BOOLEAN;
+            }
+            pos = start;
+            throw unsupported("function " + name + "()");
+        }
+
+        private Step step(boolean descendant) throws XpathException {
+            skipWhitespace();
+            boolean attribute = false;
+            if (lookingAt("@")) {
+                attribute = true;
+                pos++;
+            } else if (lookingAt("attribute::")) {
+                attribute = true;
+                pos += "attribute::".length();
+            } else if (lookingAt("child::")) {
+                pos += "child::".length();
+            }
+            String[] name = nameTest(attribute);
+            List<Predicate> predicates = new ArrayList<Predicate>();
+            skipWhitespace();
+            while (lookingAt("[")) {
+                if (attribute) {
+                    throw unsupported("predicates on attributes");
+                }
+                pos++;
+                predicates.add(predicate());
+                skipWhitespace();
+            }
+            return new Step(descendant, attribute, name[0], name[1], predicates);
+        }
+
+        private Predicate predicate() throws XpathException {
+            skipWhitespace();
+            Predicate p;
+            if (pos < expr.length() && Character.isDigit(expr.charAt(pos))) {
+                int start = pos;
+                while (pos < expr.length() && Character.isDigit(expr.charAt(pos))) {
+                    pos++;
+                }
+                int position;
+                try {
+                    position = Integer.parseInt(expr.substring(start, pos));
+                } catch (NumberFormatException ex) {
+                    throw unsupported("position " + expr.substring(start, pos));
+                }
+                if (position < 1) {
+                    throw unsupported("positions smaller than 1");
+                }
+                p = new Predicate(position, slots++);
+            } else if (lookingAt("@")) {
+                pos++;
+                String[] name = nameTest(true);
+                if (name[1] == null) {
+                    throw unsupported("wildcards in attribute predicates");
+                }
+                String value = null;
+                skipWhitespace();
+                if (lookingAt("=")) {
+                    pos++;
+                    skipWhitespace();
+                    value = literal();
+                }
+                p = new Predicate(name[0], name[1], value);
+            } else {
+                throw unsupported("predicates other than [n], [@name] and [@name='value']");
+            }
+            skipWhitespace();
+            expect("]");
+            return p;
+        }
+
+        private String literal() throws XpathException {
+            if (pos >= expr.length() || (expr.charAt(pos) != '\'' && expr.charAt(pos) != '"')) {
+                throw unsupported("comparisons with anything but a string literal");
+            }
+            char quote = expr.charAt(pos);
+            int end = expr.indexOf(quote, pos + 1);
+            if (end < 0) {
+                throw new XpathException("Unterminated string literal in " + expr);
+            }
+            String value = expr.substring(pos + 1, end);
+            pos = end + 1;
+            return value;
+        }
+
+        /**
+         * @return namespace URI and local name, null for wildcards
+         */
+        private String[] nameTest(boolean attribute) throws XpathException {
+            skipWhitespace();
+            if (lookingAt("*")) {
+                pos++;
+                return new String[] { null, null };
+            }
+            String first = peekName();
+            if (first == null) {
+                throw unsupported("node tests other than names and *");
+            }
+            pos += first.length();
+            if (lookingAt("(")) {
+                throw unsupported(first + "()");
+            }
+            if (lookingAt("::")) {
+                throw unsupported("the " + first + " axis");
+            }
+            if (!lookingAt(":")) {
+                // unprefixed names never belong to a namespace in XPath 1.0
+                return new String[] { XMLConstants.NULL_NS_URI, first };
+            }
+            pos++;
+            String uri = prefix2Uri.get(first);
+            if (uri == null) {
+                throw new XpathException("Prefix " + first + " is not bound in " + expr);
+            }
+            if (lookingAt("*")) {
+                pos++;
+                return new String[] { uri, null };
+            }
+            String local = peekName();
+            if (local == null) {
+                throw new XpathException("Missing local name after " + first + ": in " + expr);
+            }
+            pos += local.length();
+            return new String[] { uri, local };
+        }
+
+        private String peekName() {
+            int end = pos;
+            if (end < expr.length()) {
+                char c = expr.charAt(end);
+                if (!Character.isLetter(c) && c != '_') {
+                    return null;
+                }
+                end++;
+            }
+            while (end < expr.length()) {
+                char c = expr.charAt(end);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                    break;
+                }
+                end++;
+            }
+            return end > pos ? expr.substring(pos, end) : null;
+        }
+
+        private boolean lookingAt(String s) {
+            return expr.startsWith(s, pos);
+        }
+
+        private void expect(String s) throws XpathException {
+            if (!lookingAt(s)) {
+                throw unsupported(pos < expr.length() ? "'" + expr.substring(pos) + "'" : "a missing " + s);
+            }
+            pos += s.length();
+        }
+
+        private void skipWhitespace() {
+            while (pos < expr.length() && Character.isWhitespace(expr.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private XpathException unsupported(String what) {
+            return new XpathException("XPath expression " + expr + " is not supported by "
+                    + StreamingXpathEngine.class.getSimpleName() + ": " + what + " at position " + pos);
+        }
+    }
+}
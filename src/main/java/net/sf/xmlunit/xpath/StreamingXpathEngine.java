@@ -0,0 +1,590 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+
+import net.sf.xmlunit.util.Convert;
+import net.sf.xmlunit.util.IterableNodeList;
+import net.sf.xmlunit.util.Preconditions;
+import net.sf.xmlunit.xpath.StreamingEvaluation.ElementEvent;
+import net.sf.xmlunit.xpath.StreamingEvaluation.Mode;
+
+import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * XPath engine that evaluates a subset of XPath 1.0 while reading the
+ * document as a stream of StAX events, without building a tree.
+ *
+ * <p>
+ * Memory use depends on the depth of the document rather than its size,
+ * which makes this engine suitable for existence and value checks on very
+ * large documents. Reading stops as soon as the result is known - for
+ * example after the first match when checking for existence or evaluating
+ * the string value - or when no part of the document that is still to come
+ * can match anymore.
+ * </p>
+ *
+ * <p>
+ * Supported expressions are location paths, optionally passed to one of
+ * the functions <code>count</code>, <code>string</code> or
+ * <code>boolean</code>. Location paths may be absolute or relative and
+ * consist of
+ * </p>
+ * <ul>
+ * <li>steps along the child (<code>/</code>) and descendant (<code>//</code>)
+ * axes with a name test - <code>name</code>, <code>prefix:name</code>,
+ * <code>prefix:*</code> or <code>*</code>,</li>
+ * <li>any number of predicates <code>[@name]</code>,
+ * <code>[@name='value']</code> and <code>[n]</code> on these steps,</li>
+ * <li>optionally a last step along the attribute axis, like
+ * <code>//item/@code</code>.</li>
+ * </ul>
+ *
+ * <p>
+ * Examples are <code>/a/b[@id='x']/c</code>, <code>//item/@code</code> and
+ * <code>count(//x)</code>. Any other expression is rejected with an
+ * {@link XpathException} naming the unsupported construct.
+ * </p>
+ *
+ * <p>
+ * Nodes selected from a stream are copies containing elements, attributes
+ * and text, nodes selected from a DOMSource or a Node are the nodes of that
+ * tree. Instances of this class may be shared between threads.
+ * </p>
+ */
+public class StreamingXpathEngine implements BatchXpathEngine {
+    private final XMLInputFactory factory;
+
+    // immutable
+    private volatile Map<String, String> namespaces = Collections.emptyMap();
+
+    /**
+     * Creates an engine using a namespace aware instance of the default
+     * XMLInputFactory.
+     */
+    public StreamingXpathEngine() {
+        this(newDefaultFactory());
+    }
+
+    /**
+     * @param fac
+     *            the factory to create StAX readers with, it should be
+     *            namespace aware
+     */
+    public StreamingXpathEngine(XMLInputFactory fac) {
+        Preconditions.checkArgument(fac != null, "XMLInputFactory must not be null");
+        this.factory = fac;
+    }
+
+    private static XMLInputFactory newDefaultFactory() {
+        try {
+            XMLInputFactory fac = XMLInputFactory.newInstance();
+            fac.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+            return fac;
+        } catch (Exception e) {
+            throw new ConfigurationException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public IterableNodeList selectNodes(String xPath, Source s) throws XpathException {
+        StreamingEvaluation evaluation = newEvaluation(compileNodeSelection(xPath), Mode.NODES, null);
+        run(s, evaluation);
+        return new IterableNodeList(new ListNodeList(evaluation.getNodes()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public String evaluate(String xPath, Source s) throws XpathException {
+        StreamingXpath compiled = compile(xPath);
+        StreamingEvaluation evaluation = newEvaluation(compiled, valueMode(compiled), null);
+        run(s, evaluation);
+        return stringValue(evaluation);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public IterableNodeList selectNodes(String xPath, Node n) throws XpathException {
+        StreamingXpath compiled = compileNodeSelection(xPath);
+        StreamingEvaluation evaluation = evaluateOnNode(compiled, Mode.NODES, n);
+        return new IterableNodeList(new ListNodeList(evaluation.getNodes()));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public String evaluate(String xPath, Node n) throws XpathException {
+        StreamingXpath compiled = compile(xPath);
+        return stringValue(evaluateOnNode(compiled, valueMode(compiled), n));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public double evaluateNumber(String xPath, Node n) throws XpathException {
+        StreamingXpath compiled = compile(xPath);
+        StreamingEvaluation evaluation = evaluateOnNode(compiled, valueMode(compiled), n);
+        switch (compiled.getFunction()) {
+        case COUNT:
+            return evaluation.getCount();
+        case BOOLEAN:
+            return evaluation.exists() ? 1 : 0;
+        default:
+            try {
+                return Double.parseDouble(evaluation.getFirstString().trim());
+            } catch (NumberFormatException ex) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws XpathException
+     */
+    public boolean evaluateBoolean(String xPath, Node n) throws XpathException {
+        StreamingXpath compiled = compile(xPath);
+        if (compiled.getFunction() == StreamingXpath.Function.STRING) {
+            return evaluateOnNode(compiled, Mode.FIRST_STRING, n).getFirstString().length() > 0;
+        }
+        // a non-empty node-set, a count other than zero
+        return evaluateOnNode(compiled, Mode.EXISTS, n).exists();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * All expressions are evaluated together while the source is read.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, IterableNodeList> selectNodes(Collection<String> xPaths, Source s) throws XpathException {
+        Preconditions.checkArgument(xPaths != null, "expressions must not be null");
+        Map<String, StreamingEvaluation> evaluations = new LinkedHashMap<String, StreamingEvaluation>();
+        for (String xPath : xPaths) {
+            if (!evaluations.containsKey(xPath)) {
+                evaluations.put(xPath, newEvaluation(compileNodeSelection(xPath), Mode.NODES, null));
+            }
+        }
+        run(s, evaluations.values().toArray(new StreamingEvaluation[evaluations.size()]));
+
+        Map<String, IterableNodeList> result = new LinkedHashMap<String, IterableNodeList>();
+        for (Map.Entry<String, StreamingEvaluation> entry : evaluations.entrySet()) {
+            result.put(entry.getKey(), new IterableNodeList(new ListNodeList(entry.getValue().getNodes())));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * All expressions are evaluated together while the source is read.
+     * </p>
+     *
+     * @throws XpathException
+     */
+    public Map<String, String> evaluate(Collection<String> xPaths, Source s) throws XpathException {
+        Preconditions.checkArgument(xPaths != null, "expressions must not be null");
+        Map<String, StreamingEvaluation> evaluations = new LinkedHashMap<String, StreamingEvaluation>();
+        for (String xPath : xPaths) {
+            if (!evaluations.containsKey(xPath)) {
+                StreamingXpath compiled = compile(xPath);
+                evaluations.put(xPath, newEvaluation(compiled, valueMode(compiled), null));
+            }
+        }
+        run(s, evaluations.values().toArray(new StreamingEvaluation[evaluations.size()]));
+
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, StreamingEvaluation> entry : evaluations.entrySet()) {
+            result.put(entry.getKey(), stringValue(entry.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void setNamespaceContext(Map<String, String> prefix2Uri) {
+        namespaces = prefix2Uri == null ? Collections.<String, String> emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<String, String>(prefix2Uri));
+    }
+
+    private StreamingXpath compile(String xPath) throws XpathException {
+        return StreamingXpath.compile(xPath, namespaces);
+    }
+
+    private StreamingXpath compileNodeSelection(String xPath) throws XpathException {
+        StreamingXpath compiled = compile(xPath);
+        if (compiled.getFunction() != StreamingXpath.Function.NONE) {
+            throw new XpathException("XPath expression " + xPath + " doesn't select nodes");
+        }
+        return compiled;
+    }
+
+    private static Mode valueMode(StreamingXpath compiled) {
+        switch (compiled.getFunction()) {
+        case COUNT:
+            return Mode.COUNT;
+        case BOOLEAN:
+            return Mode.EXISTS;
+        default:
+            return Mode.FIRST_STRING;
+        }
+    }
+
+    private static String stringValue(StreamingEvaluation evaluation) {
+        switch (evaluation.getXpath().getFunction()) {
+        case COUNT:
+            return Long.toString(evaluation.getCount());
+        case BOOLEAN:
+            return Boolean.toString(evaluation.exists());
+        default:
+            return evaluation.getFirstString();
+        }
+    }
+
+    private static StreamingEvaluation newEvaluation(StreamingXpath compiled, Mode mode, ElementEvent context) {
+        return new StreamingEvaluation(compiled, mode, context);
+    }
+
+    /**
+     * Absolute paths start at the document of the node, relative paths at
+     * the node itself.
+     */
+    private static StreamingEvaluation evaluateOnNode(StreamingXpath compiled, Mode mode, Node n) {
+        Preconditions.checkArgument(n != null, "Node must not be null");
+        StreamingEvaluation evaluation;
+        Node context;
+        if (compiled.isAbsolute() || n.getNodeType() == Node.DOCUMENT_NODE) {
+            context = n.getNodeType() == Node.DOCUMENT_NODE ? n : n.getOwnerDocument();
+            evaluation = newEvaluation(compiled, mode, null);
+        } else if (n.getNodeType() == Node.ELEMENT_NODE) {
+            context = n;
+            evaluation = newEvaluation(compiled, mode, new DomElementEvent((Element) n));
+        } else {
+            // no other kind of node has child elements or attributes
+            context = null;
+            evaluation = newEvaluation(compiled, mode, null);
+        }
+        StreamingEvaluation[] evaluations = new StreamingEvaluation[] { evaluation };
+        if (context != null && !evaluation.isDone()) {
+            walk(context, evaluations);
+        }
+        evaluation.endDocument();
+        return evaluation;
+    }
+
+    private void run(Source s, StreamingEvaluation... evaluations) throws XpathException {
+        Preconditions.checkArgument(s != null, "Source must not be null");
+        if (s instanceof DOMSource && ((DOMSource) s).getNode() instanceof Document) {
+            if (!allDone(evaluations)) {
+                walk(((DOMSource) s).getNode(), evaluations);
+            }
+        } else {
+            read(s, evaluations);
+        }
+        for (StreamingEvaluation evaluation : evaluations) {
+            evaluation.endDocument();
+        }
+    }
+
+    /**
+     * Reports the elements below a node of a DOM tree.
+     *
+     * @return false if all evaluations are done
+     */
+    private static boolean walk(Node parent, StreamingEvaluation[] evaluations) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            switch (child.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                ElementEvent e = new DomElementEvent((Element) child);
+                for (StreamingEvaluation evaluation : evaluations) {
+                    evaluation.startElement(e);
+                }
+                if (allDone(evaluations) || !walk(child, evaluations)) {
+                    return false;
+                }
+                for (StreamingEvaluation evaluation : evaluations) {
+                    evaluation.endElement();
+                }
+                if (allDone(evaluations)) {
+                    return false;
+                }
+                break;
+            case Node.ENTITY_REFERENCE_NODE:
+                if (!walk(child, evaluations)) {
+                    return false;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void read(Source s, StreamingEvaluation[] evaluations) throws XpathException {
+        InputSource is;
+        try {
+            is = Convert.toInputSource(s);
+        } catch (XMLUnitRuntimeException ex) {
+            throw new XpathException(ex.getCause() != null ? ex.getCause() : ex);
+        }
+        Closeable input = null;
+        XMLStreamReader reader = null;
+        try {
+            try {
+                if (is.getCharacterStream() != null) {
+                    input = is.getCharacterStream();
+                    reader = createReader(is.getSystemId(), is.getCharacterStream(), null, null);
+                } else {
+                    InputStream in = is.getByteStream();
+                    if (in == null) {
+                        Preconditions.checkArgument(is.getSystemId() != null, "Source has no content");
+                        in = new URL(is.getSystemId()).openStream();
+                    }
+                    input = in;
+                    reader = createReader(is.getSystemId(), null, in, is.getEncoding());
+                }
+                StaxElementEvent e = new StaxElementEvent(reader);
+                while (reader.hasNext() && !allDone(evaluations)) {
+                    switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        for (StreamingEvaluation evaluation : evaluations) {
+                            evaluation.startElement(e);
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        for (StreamingEvaluation evaluation : evaluations) {
+                            evaluation.endElement();
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        for (StreamingEvaluation evaluation : evaluations) {
+                            if (evaluation.wantsText()) {
+                                evaluation.characters(reader.getTextCharacters(), reader.getTextStart(),
+                                        reader.getTextLength());
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+                if (input != null) {
+                    input.close();
+                }
+            }
+        } catch (XMLStreamException ex) {
+            throw new XpathException(ex);
+        } catch (IOException ex) {
+            throw new XpathException(ex);
+        }
+    }
+
+    private XMLStreamReader createReader(String systemId, Reader r, InputStream in, String encoding)
+            throws XMLStreamException {
+        // XMLInputFactory isn't guaranteed to be thread-safe
+        synchronized (factory) {
+            if (r != null) {
+                return factory.createXMLStreamReader(systemId, r);
+            }
+            return encoding != null ? factory.createXMLStreamReader(in, encoding)
+                    : factory.createXMLStreamReader(systemId, in);
+        }
+    }
+
+    private static boolean allDone(StreamingEvaluation[] evaluations) {
+        for (StreamingEvaluation evaluation : evaluations) {
+            if (!evaluation.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class StaxElementEvent implements ElementEvent {
+        private final XMLStreamReader reader;
+
+        private StaxElementEvent(XMLStreamReader reader) {
+            this.reader = reader;
+        }
+
+        public String getNamespaceURI() {
+            return reader.getNamespaceURI();
+        }
+
+        public String getLocalName() {
+            return reader.getLocalName();
+        }
+
+        public String getPrefix() {
+            return reader.getPrefix();
+        }
+
+        public int getAttributeCount() {
+            return reader.getAttributeCount();
+        }
+
+        public String getAttributeNamespaceURI(int index) {
+            return reader.getAttributeNamespace(index);
+        }
+
+        public String getAttributeLocalName(int index) {
+            return reader.getAttributeLocalName(index);
+        }
+
+        public String getAttributePrefix(int index) {
+            return reader.getAttributePrefix(index);
+        }
+
+        public String getAttributeValue(int index) {
+            return reader.getAttributeValue(index);
+        }
+
+        public Element getElement() {
+            return null;
+        }
+
+        public Attr getAttribute(int index) {
+            return null;
+        }
+    }
+
+    private static final class DomElementEvent implements ElementEvent {
+        private final Element element;
+        private final List<Attr> attributes;
+
+        private DomElementEvent(Element element) {
+            this.element = element;
+            NamedNodeMap map = element.getAttributes();
+            if (map.getLength() == 0) {
+                attributes = Collections.emptyList();
+            } else {
+                attributes = new ArrayList<Attr>(map.getLength());
+                for (int i = 0; i < map.getLength(); i++) {
+                    Attr a = (Attr) map.item(i);
+                    if (!isNamespaceDeclaration(a)) {
+                        attributes.add(a);
+                    }
+                }
+            }
+        }
+
+        public String getNamespaceURI() {
+            return element.getNamespaceURI();
+        }
+
+        public String getLocalName() {
+            return localNameOf(element);
+        }
+
+        public String getPrefix() {
+            return element.getPrefix();
+        }
+
+        public int getAttributeCount() {
+            return attributes.size();
+        }
+
+        public String getAttributeNamespaceURI(int index) {
+            return attributes.get(index).getNamespaceURI();
+        }
+
+        public String getAttributeLocalName(int index) {
+            return localNameOf(attributes.get(index));
+        }
+
+        public String getAttributePrefix(int index) {
+            return attributes.get(index).getPrefix();
+        }
+
+        public String getAttributeValue(int index) {
+            return attributes.get(index).getValue();
+        }
+
+        public Element getElement() {
+            return element;
+        }
+
+        public Attr getAttribute(int index) {
+            return attributes.get(index);
+        }
+
+        private static boolean isNamespaceDeclaration(Attr a) {
+            if (a.getNamespaceURI() != null) {
+                return XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(a.getNamespaceURI());
+            }
+            // trees built without namespace support
+            String name = a.getName();
+            return XMLConstants.XMLNS_ATTRIBUTE.equals(name) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+        }
+
+        private static String localNameOf(Node n) {
+            String local = n.getLocalName();
+            return local != null ? local : n.getNodeName();
+        }
+    }
+}
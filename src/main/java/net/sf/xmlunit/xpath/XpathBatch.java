@@ -0,0 +1,317 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
+
+import net.sf.xmlunit.util.Convert;
+import net.sf.xmlunit.util.IterableNodeList;
+import net.sf.xmlunit.util.Preconditions;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Evaluates several XPath expressions against the same document.
+ *
+ * <p>
+ * The source is parsed once. Expressions that are simple absolute location
+ * paths - element name tests along the child and descendant axes like
+ * <code>/a/b</code>, <code>//p:c</code> or <code>/a//*</code> - are matched
+ * together in a single walk over the document. All other expressions are
+ * handed to the engine's node based methods one by one.
+ * </p>
+ */
+final class XpathBatch {
+
+    private XpathBatch() {
+    }
+
+    /**
+     * Selects the nodes matching each of the expressions.
+     *
+     * @return results keyed by expression in the iteration order of the
+     *         given expressions
+     */
+    static Map<String, IterableNodeList> selectNodes(NodeXpathEngine engine, Map<String, String> prefix2Uri,
+            Collection<String> xPaths, Source s) throws XpathException {
+        Document d = parse(xPaths, s);
+        Map<String, List<Node>> matches = matchLocationPaths(d, prefix2Uri, xPaths);
+
+        Map<String, IterableNodeList> result = new LinkedHashMap<String, IterableNodeList>();
+        for (String xPath : xPaths) {
+            List<Node> nodes = matches.get(xPath);
+            result.put(xPath, nodes != null ? new IterableNodeList(new ListNodeList(nodes))
+                    : engine.selectNodes(xPath, d));
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates each of the expressions and stringifies the results.
+     *
+     * @return results keyed by expression in the iteration order of the
+     *         given expressions
+     */
+    static Map<String, String> evaluate(NodeXpathEngine engine, Map<String, String> prefix2Uri,
+            Collection<String> xPaths, Source s) throws XpathException {
+        Document d = parse(xPaths, s);
+        Map<String, List<Node>> matches = matchLocationPaths(d, prefix2Uri, xPaths);
+
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (String xPath : xPaths) {
+            List<Node> nodes = matches.get(xPath);
+            if (nodes == null) {
+                result.put(xPath, engine.evaluate(xPath, d));
+            } else {
+                // the string value of a node-set is the one of its first node
+                result.put(xPath, nodes.isEmpty() ? "" : nodes.get(0).getTextContent());
+            }
+        }
+        return result;
+    }
+
+    private static Document parse(Collection<String> xPaths, Source s) throws XpathException {
+        Preconditions.checkArgument(xPaths != null, "expressions must not be null");
+        Preconditions.checkArgument(s != null, "Source must not be null");
+        try {
+            return Convert.toDocument(s);
+        } catch (XMLUnitRuntimeException ex) {
+            throw new XpathException(ex.getCause() != null ? ex.getCause() : ex);
+        }
+    }
+
+    /**
+     * Matches all expressions that are simple location paths in one walk.
+     *
+     * @return matching elements in document order keyed by expression,
+     *         expressions that are not simple location paths are missing
+     */
+    private static Map<String, List<Node>> matchLocationPaths(Document d, Map<String, String> prefix2Uri,
+            Collection<String> xPaths) {
+        Map<String, String> ns = prefix2Uri != null ? prefix2Uri : Collections.<String, String> emptyMap();
+        Map<String, LocationPath> paths = new LinkedHashMap<String, LocationPath>();
+        for (String xPath : xPaths) {
+            if (!paths.containsKey(xPath)) {
+                LocationPath path = LocationPath.parse(xPath, ns);
+                if (path != null) {
+                    paths.put(xPath, path);
+                }
+            }
+        }
+        if (paths.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        LocationPath[] pathArray = paths.values().toArray(new LocationPath[paths.size()]);
+        boolean[][] active = new boolean[pathArray.length][];
+        List<List<Node>> found = new ArrayList<List<Node>>(pathArray.length);
+        for (int i = 0; i < pathArray.length; i++) {
+            active[i] = new boolean[pathArray[i].length()];
+            active[i][0] = true;
+            found.add(new ArrayList<Node>());
+        }
+        walk(d, pathArray, active, found);
+
+        Map<String, List<Node>> result = new LinkedHashMap<String, List<Node>>();
+        int i = 0;
+        for (String xPath : paths.keySet()) {
+            result.put(xPath, found.get(i++));
+        }
+        return result;
+    }
+
+    /**
+     * Visits the element children of a node in document order.
+     *
+     * @param active
+     *            per path the steps that may be applied to the children of
+     *            parent, null if no step of that path can match below parent
+     */
+    private static void walk(Node parent, LocationPath[] paths, boolean[][] active, List<List<Node>> found) {
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            boolean[][] next = new boolean[paths.length][];
+            boolean descend = false;
+            for (int p = 0; p < paths.length; p++) {
+                boolean[] steps = active[p];
+                if (steps == null) {
+                    continue;
+                }
+                LocationPath path = paths[p];
+                int last = path.length() - 1;
+                boolean[] nextSteps = null;
+                boolean matched = false;
+                for (int i = 0; i <= last; i++) {
+                    if (!steps[i]) {
+                        continue;
+                    }
+                    if (path.isDescendant(i)) {
+                        // child's children are descendants of the context too
+                        nextSteps = set(nextSteps, i, last + 1);
+                    }
+                    if (path.matches(i, child)) {
+                        if (i == last) {
+                            matched = true;
+                        } else {
+                            nextSteps = set(nextSteps, i + 1, last + 1);
+                        }
+                    }
+                }
+                if (matched) {
+                    found.get(p).add(child);
+                }
+                next[p] = nextSteps;
+                descend |= nextSteps != null;
+            }
+            if (descend) {
+                walk(child, paths, next, found);
+            }
+        }
+    }
+
+    private static boolean[] set(boolean[] steps, int index, int length) {
+        boolean[] s = steps != null ? steps : new boolean[length];
+        s[index] = true;
+        return s;
+    }
+
+    /**
+     * An absolute location path made up of element name tests along the
+     * child and descendant axes.
+     */
+    static final class LocationPath {
+        private final boolean[] descendant;
+        // null matches any namespace
+        private final String[] namespaceUris;
+        // null matches any local name
+        private final String[] localNames;
+
+        private LocationPath(List<Boolean> descendant, List<String> namespaceUris, List<String> localNames) {
+            int length = descendant.size();
+            this.descendant = new boolean[length];
+            for (int i = 0; i < length; i++) {
+                this.descendant[i] = descendant.get(i);
+            }
+            this.namespaceUris = namespaceUris.toArray(new String[length]);
+            this.localNames = localNames.toArray(new String[length]);
+        }
+
+        /**
+         * Parses an expression.
+         *
+         * @return null if the expression isn't a simple location path or
+         *         uses a prefix not bound in the namespace context.
+         */
+        static LocationPath parse(String xPath, Map<String, String> prefix2Uri) {
+            String expr = xPath.trim();
+            List<Boolean> descendant = new ArrayList<Boolean>();
+            List<String> uris = new ArrayList<String>();
+            List<String> locals = new ArrayList<String>();
+
+            int pos = 0;
+            final int len = expr.length();
+            while (pos < len) {
+                if (expr.charAt(pos) != '/') {
+                    return null;
+                }
+                boolean desc = pos + 1 < len && expr.charAt(pos + 1) == '/';
+                pos += desc ? 2 : 1;
+                int end = expr.indexOf('/', pos);
+                if (end < 0) {
+                    end = len;
+                }
+                String nameTest = expr.substring(pos, end);
+                int colon = nameTest.indexOf(':');
+                String prefix = colon < 0 ? null : nameTest.substring(0, colon);
+                String local = colon < 0 ? nameTest : nameTest.substring(colon + 1);
+
+                String uri;
+                if (prefix == null) {
+                    uri = "*".equals(local) ? null : XMLConstants.NULL_NS_URI;
+                } else {
+                    uri = prefix2Uri.get(prefix);
+                    if (!isNCName(prefix) || uri == null) {
+                        return null;
+                    }
+                }
+                if ("*".equals(local)) {
+                    local = null;
+                } else if (!isNCName(local)) {
+                    return null;
+                }
+                descendant.add(desc);
+                uris.add(uri);
+                locals.add(local);
+                pos = end;
+            }
+            return descendant.isEmpty() ? null : new LocationPath(descendant, uris, locals);
+        }
+
+        private static boolean isNCName(String s) {
+            if (s.length() == 0) {
+                return false;
+            }
+            char first = s.charAt(0);
+            if (!Character.isLetter(first) && first != '_') {
+                return false;
+            }
+            for (int i = 1; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int length() {
+            return descendant.length;
+        }
+
+        boolean isDescendant(int step) {
+            return descendant[step];
+        }
+
+        boolean matches(int step, Node element) {
+            String local = localNames[step];
+            if (local != null && !local.equals(localNameOf(element))) {
+                return false;
+            }
+            String uri = namespaceUris[step];
+            if (uri == null) {
+                return true;
+            }
+            String elementUri = element.getNamespaceURI();
+            return uri.equals(elementUri == null ? XMLConstants.NULL_NS_URI : elementUri);
+        }
+
+        private static String localNameOf(Node n) {
+            String local = n.getLocalName();
+            return local != null ? local : n.getNodeName();
+        }
+    }
+}
@@ -44,14 +44,13 @@ import java.util.Map.Entry;
 import java.util.Properties;
 
 import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
 import javax.xml.transform.stream.StreamResult;
 
 import net.sf.xmlunit.util.XsltUtils;
 
 import org.w3c.dom.Node;
 import org.xmlunit.builder.Input;
-import org.xmlunit.builder.Transform;
-import org.xmlunit.builder.Transform.Builder;
 
 /**
  * Adapter class to present the content of a DOM Node (e.g. a Document) as an
@@ -113,20 +112,23 @@ public class NodeInputStream extends InputStream {
             xsltUtils.setUriResolver(properties.getUriResolver());
             xsltUtils.setTransformerFactoryClass(properties.getTransformerFactoryClass());
 
-            Builder transformBuilder = Transform.source(source)
-                    .usingFactory(xsltUtils.newTransformerFactory());
-            Iterator<Entry<Object, Object>> it = outputProperties.entrySet().iterator();
-            while (it.hasNext()) {
-                Entry<Object, Object> entry = it.next();
-                String key = (String) entry.getKey();
-                String value = (String) entry.getValue();
-                if (key != null && value != null) {
-                    transformBuilder.withOutputProperty(key, value);
+            Transformer transformer = xsltUtils.acquireTransformer();
+            try {
+                Iterator<Entry<Object, Object>> it = outputProperties.entrySet().iterator();
+                while (it.hasNext()) {
+                    Entry<Object, Object> entry = it.next();
+                    String key = (String) entry.getKey();
+                    String value = (String) entry.getValue();
+                    if (key != null && value != null) {
+                        transformer.setOutputProperty(key, value);
+                    }
                 }
-            }
 
-            StreamResult byteResult = new StreamResult(nodeContentBytes);
-            transformBuilder.build().to(byteResult);
+                StreamResult byteResult = new StreamResult(nodeContentBytes);
+                transformer.transform(source, byteResult);
+            } finally {
+                xsltUtils.releaseTransformer(transformer);
+            }
         } catch (Exception e) {
             throw new IOException("Unable to serialize document to outputstream: "
                     + e.toString());
@@ -17,6 +17,7 @@ public class XmlUnitProperties implements Cloneable {
 
     private boolean ignoreWhitespace = false;
     private boolean normalizeWhitespace = false;
+    private boolean normalizeWhitespaceWhileComparing = false;
     private boolean ignoreComments = false;
     private NamespaceContext xpathNamespaceContext;
     private boolean compareUnmatched = true;
@@ -86,6 +87,41 @@ public class XmlUnitProperties implements Cloneable {
         this.normalizeWhitespace = normalizeWhitespace;
     }
 
+    /**
+     * Whether the difference engine compares text, CDATA, comment, attribute
+     * and processing instruction values as if their whitespace had been
+     * normalized.
+     * 
+     * <p>
+     * The default value is false.
+     * </p>
+     */
+    public boolean getNormalizeWhitespaceWhileComparing() {
+        return normalizeWhitespaceWhileComparing;
+    }
+
+    /**
+     * Whether the difference engine compares text, CDATA, comment, attribute
+     * and processing instruction values as if their whitespace had been
+     * normalized.
+     * 
+     * <p>
+     * Unlike {@link #setNormalizeWhitespace} the documents aren't copied and
+     * normalized before they are compared, which saves allocations for
+     * values that turn out to be equal. Whitespace-only text nodes are kept,
+     * though.
+     * </p>
+     * 
+     * <p>
+     * The default value is false.
+     * </p>
+     * 
+     * @see net.sf.xmlunit.diff.DOMDifferenceEngine#setNormalizeWhitespace
+     */
+    public void setNormalizeWhitespaceWhileComparing(boolean normalize) {
+        this.normalizeWhitespaceWhileComparing = normalize;
+    }
+
     /**
      * Whether comments should be ignored.
      * 
@@ -35,16 +35,13 @@ POSSIBILITY OF SUCH DAMAGE.
  */
 package org.custommonkey.xmlunit;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.namespace.QName;
-
-import net.sf.xmlunit.diff.XPathContext;
 import net.sf.xmlunit.util.IterableNodeList;
-import net.sf.xmlunit.util.Linqy;
 
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -70,19 +67,29 @@ import org.w3c.dom.NodeList;
  * belong to.
  * </p>
  * 
+ * <p>
+ * Every node of the tracked path keeps counters for the children that have
+ * been seen so far, so visiting a node takes constant time regardless of the
+ * number of its preceding siblings. The XPath string itself is only built by
+ * {@link #toXpathString toXpathString}.
+ * </p>
+ * 
  * @see NodeDetail#getXpathLocation()
  * @see Difference#getControlNodeDetail
  * @see Difference#getTestNodeDetail
  */
 public class XpathNodeTracker implements XMLConstants {
-	private XPathContext ctx;
+	// the nodes from the document down to the current node
+	private final ArrayList<PathNode> path = new ArrayList<PathNode>();
+	// local name of the current attribute, if any
+	private String attribute;
 	private final LinkedList<TrackingEntry> levels = new LinkedList<TrackingEntry>();
 
 	/**
 	 * Simple constructor
 	 */
 	public XpathNodeTracker() {
-		ctx = new XPathContext();
+		path.add(new PathNode(null, Node.DOCUMENT_NODE, 0));
 		newLevel();
 	}
 
@@ -90,7 +97,9 @@ public class XpathNodeTracker implements XMLConstants {
 	 * Clear state data. Call if required to reuse an existing instance.
 	 */
 	private void reset() {
-		ctx = new XPathContext();
+		path.clear();
+		path.add(new PathNode(null, Node.DOCUMENT_NODE, 0));
+		attribute = null;
 		levels.clear();
 		indent();
 	}
@@ -207,7 +216,10 @@ public class XpathNodeTracker implements XMLConstants {
 	 *            the local name of the attribute.
 	 */
 	protected void visitedAttribute(String visited) {
-		levels.getLast().trackAttribute(new QName(visited));
+		if (visited == null) {
+			throw new IllegalArgumentException("local part must not be null");
+		}
+		levels.getLast().trackAttribute(visited);
 	}
 
 	/**
@@ -250,7 +262,15 @@ public class XpathNodeTracker implements XMLConstants {
 	 * @return the last visited node as an xpath-location String
 	 */
 	public String toXpathString() {
-		return ctx.getXPath();
+		StringBuilder sb = new StringBuilder();
+		for (PathNode n : path) {
+			sb.append(XPATH_SEPARATOR);
+			n.appendExpression(sb);
+		}
+		if (attribute != null) {
+			sb.append(XPATH_SEPARATOR).append(XPATH_ATTRIBUTE_IDENTIFIER).append(attribute);
+		}
+		return sb.toString().replace(XPATH_SEPARATOR + XPATH_SEPARATOR, XPATH_SEPARATOR);
 	}
 
 	/**
@@ -264,6 +284,15 @@ public class XpathNodeTracker implements XMLConstants {
 		return nodeName;
 	}
 
+	/**
+	 * The name an element is counted under, the local name for namespace
+	 * aware DOM trees.
+	 */
+	private static String getElementName(Node n) {
+		String localName = n.getLocalName();
+		return localName != null ? localName : n.getNodeName();
+	}
+
 	/**
 	 * Preload the nodes by visiting each in turn. Required for pieces of test
 	 * XML whose node children can be visited out of sequence by a
@@ -286,6 +315,99 @@ public class XpathNodeTracker implements XMLConstants {
 		levels.getLast().trackNodesAsWellAsValues(false);
 	}
 
+	/**
+	 * A node of the tracked tree with the XPath step selecting it from its
+	 * parent.
+	 * 
+	 * <p>
+	 * The children are numbered per element name and per kind of other node
+	 * when they are added. DOM implementations usually intern names, so the
+	 * counter lookups rarely need to compare characters.
+	 * </p>
+	 */
+	private static final class PathNode {
+		private final String name;
+		private final short type;
+		private final int position;
+
+		private List<PathNode> children;
+		private Map<String, int[]> elements;
+		private int comments;
+		private int pis;
+		private int texts;
+
+		private PathNode(String name, short type, int position) {
+			this.name = name;
+			this.type = type;
+			this.position = position;
+		}
+
+		private PathNode addChild(String childName, short childType) {
+			int childPosition = 0;
+			switch (childType) {
+				case Node.COMMENT_NODE:
+					childPosition = ++comments;
+					break;
+				case Node.PROCESSING_INSTRUCTION_NODE:
+					childPosition = ++pis;
+					break;
+				case Node.CDATA_SECTION_NODE:
+				case Node.TEXT_NODE:
+					childPosition = ++texts;
+					break;
+				case Node.ELEMENT_NODE:
+					if (elements == null) {
+						elements = new HashMap<String, int[]>();
+					}
+					int[] count = elements.get(childName);
+					if (count == null) {
+						count = new int[1];
+						elements.put(childName, count);
+					}
+					childPosition = ++count[0];
+					break;
+				default:
+					// not addressable, shows up as an empty step
+					break;
+			}
+			PathNode child = new PathNode(childName, childType, childPosition);
+			if (children == null) {
+				children = new ArrayList<PathNode>();
+			}
+			children.add(child);
+			return child;
+		}
+
+		private PathNode getChild(int index) {
+			if (children == null) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
+			}
+			return children.get(index);
+		}
+
+		private void appendExpression(StringBuilder sb) {
+			String step;
+			switch (type) {
+				case Node.COMMENT_NODE:
+					step = XPATH_COMMENT_IDENTIFIER;
+					break;
+				case Node.PROCESSING_INSTRUCTION_NODE:
+					step = XPATH_PROCESSING_INSTRUCTION_IDENTIFIER;
+					break;
+				case Node.CDATA_SECTION_NODE:
+				case Node.TEXT_NODE:
+					step = XPATH_CHARACTER_NODE_IDENTIFIER;
+					break;
+				case Node.ELEMENT_NODE:
+					step = name;
+					break;
+				default:
+					return;
+			}
+			sb.append(step).append(XPATH_NODE_INDEX_START).append(position).append(XPATH_NODE_INDEX_END);
+		}
+	}
+
 	/**
 	 * Holds node tracking details - one instance is used for each level of
 	 * indentation in a DOM
@@ -294,10 +416,10 @@ public class XpathNodeTracker implements XMLConstants {
 	 * of that value
 	 */
 	private final class TrackingEntry {
-		// Is the XPathContext looking at an attribute?
+		// Is the path looking at an attribute?
 		private boolean atAttribute = false;
 
-		// Has the XPathContext walked down a child node?
+		// Has the path walked down a child node?
 		private boolean atChild = false;
 
 		// the next index usable for a child node
@@ -334,28 +456,19 @@ public class XpathNodeTracker implements XMLConstants {
 			reset();
 
 			if (trackNodeReferences || nodeReferenceMap == null) {
-				XPathContext.NodeInfo info = null;
+				PathNode parent = path.get(path.size() - 1);
 				if (visited != null) {
-					info = new XPathContext.DOMNodeInfo(visited);
+					parent.addChild(getElementName(visited), visited.getNodeType());
 				} else {
 					// visited is only ever null when invoked from the
 					// unit tests and in this case it is always
 					// expected to be an element node
-					info = new XPathContext.NodeInfo() {
-						public short getType() {
-							return Node.ELEMENT_NODE;
-						}
-
-						public QName getName() {
-							return new QName(value);
-						}
-					};
+					parent.addChild(value, Node.ELEMENT_NODE);
 				}
-				ctx.appendChildren(Linqy.singleton(info));
 			}
 
 			if (!trackNodeReferences) {
-				ctx.navigateToChild(currentIndex);
+				path.add(path.get(path.size() - 1).getChild(currentIndex));
 				atChild = true;
 			}
 		}
@@ -366,12 +479,8 @@ public class XpathNodeTracker implements XMLConstants {
 		 * @param value
 		 *            the attribute visited
 		 */
-		private void trackAttribute(QName visited) {
-			if (atAttribute) {
-				ctx.navigateToParent();
-			}
-			ctx.addAttributes(Linqy.singleton(visited));
-			ctx.navigateToAttribute(visited);
+		private void trackAttribute(String visited) {
+			attribute = visited;
 			atAttribute = true;
 		}
 
@@ -380,7 +489,7 @@ public class XpathNodeTracker implements XMLConstants {
 		 */
 		void clearTrackedAttribute() {
 			if (atAttribute) {
-				ctx.navigateToParent();
+				attribute = null;
 				atAttribute = false;
 			}
 		}
@@ -388,7 +497,7 @@ public class XpathNodeTracker implements XMLConstants {
 		private void reset() {
 			clearTrackedAttribute();
 			if (atChild) {
-				ctx.navigateToParent();
+				path.remove(path.size() - 1);
 				atChild = false;
 			}
 		}
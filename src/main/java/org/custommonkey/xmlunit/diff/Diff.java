@@ -46,6 +46,7 @@ import net.sf.xmlunit.diff.DifferenceEngine;
 import net.sf.xmlunit.diff.DifferenceEngineFactory;
 
 import org.custommonkey.xmlunit.XmlUnitProperties;
+import org.xmlunit.validation.ValidationResult;
 
 /**
  * Compares and describes any difference between XML documents. Two documents
@@ -73,6 +74,7 @@ import org.custommonkey.xmlunit.XmlUnitProperties;
 public class Diff {
     private final Source ctrlSource;
     private final Source testSource;
+    private final ValidationResult validationResult;
     private DifferenceEngineFactory engineFactory;
 
     private boolean similar = true;
@@ -82,6 +84,7 @@ public class Diff {
     Diff(DiffBuilder builder) {
         this.ctrlSource = builder.controlSource;
         this.testSource = builder.testSource;
+        this.validationResult = builder.testValidationResult;
         this.engineFactory = builder.engineFactory;
     }
 
@@ -97,9 +100,21 @@ public class Diff {
         // TODO clone?
         this.ctrlSource = prototype.ctrlSource;
         this.testSource = prototype.testSource;
+        this.validationResult = prototype.validationResult;
         this.engineFactory = prototype.engineFactory;
     }
 
+    /**
+     * The result of validating the test document or null if it hasn't been
+     * validated.
+     *
+     * @see DiffBuilder#validatingTestDocument
+     */
+    @Nullable
+    public ValidationResult getValidationResult() {
+        return validationResult;
+    }
+
     public void setEngineFactory(DifferenceEngineFactory factory) {
         this.engineFactory = factory;
     }
@@ -16,6 +16,12 @@ package org.custommonkey.xmlunit.diff;
 
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.xml.parsers.DocumentBuilder;
@@ -33,8 +39,11 @@ import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.InputSource;
 import org.xmlunit.builder.Input;
+import org.xmlunit.validation.ValidationResult;
+import org.xmlunit.validation.Validator;
 
 public class DiffBuilder {
+    private final XmlUnitProperties properties;
     final DocumentUtils documentUtils;
 
     Source testSource;
@@ -42,38 +51,238 @@ public class DiffBuilder {
 
     DifferenceEngineFactory engineFactory;
 
+    private Executor executor;
+    private CompletionService<Source> pendingSources;
+    private Future<Source> pendingControlSource;
+    private Future<Source> pendingTestSource;
+
+    private Validator testValidator;
+    // written by the task preparing the test document
+    volatile ValidationResult testValidationResult;
+
     public DiffBuilder(@Nullable XmlUnitProperties properties) {
         XmlUnitProperties xmlUnitProperties = properties;
         if (xmlUnitProperties == null) {
             xmlUnitProperties = new XmlUnitProperties();
         }
 
+        this.properties = xmlUnitProperties.clone();
         documentUtils = new DocumentUtils(xmlUnitProperties);
         engineFactory = new DefaultDifferenceEngineFactory(xmlUnitProperties);
     }
 
-    private Document prepareDocumentFrom(InputSource inputSource, DocumentBuilder parser) throws BuilderException {
+    private static Document prepareDocumentFrom(InputSource inputSource, DocumentBuilder parser)
+            throws BuilderException {
         try {
-            Document document = documentUtils.buildDocument(parser, inputSource);
+            Document document = parser.parse(inputSource);
             return document;
         } catch (Exception e) {
             throw new BuilderException("Failed to build Diff!", e);
         }
     }
 
-    private Document prepareDocumentFrom(Reader reader, DocumentBuilder parser) throws BuilderException {
+    private static Document prepareDocumentFrom(Reader reader, DocumentBuilder parser) throws BuilderException {
         try {
-            Document document = documentUtils.buildDocument(parser, reader);
+            Document document = parser.parse(new InputSource(reader));
             return document;
         } catch (Exception e) {
             throw new BuilderException("Failed to build Diff!", e);
         }
     }
 
+    /**
+     * Parses and normalizes the control and test documents concurrently
+     * using the given executor.
+     *
+     * <p>
+     * Must be called before the documents are specified. Both documents are
+     * then parsed in the background and {@link DiffPropertiesBuilder#build()}
+     * waits for them, parse errors are thrown by build() instead of the
+     * methods specifying the documents.
+     * </p>
+     */
+    public DiffBuilder concurrentlyUsing(Executor executor) {
+        Preconditions.checkArgument(executor != null, "Executor cannot be null");
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Validates the test document against the schema of the given validator
+     * once it has been parsed.
+     *
+     * <p>
+     * The document isn't parsed a second time for validation: the validator
+     * reads the parsed document - before whitespace or comments are stripped
+     * - so only validators that {@link Validator#validatesDomDirectly
+     * validate DOM trees directly} are accepted. DTDs can't be validated this
+     * way. The result is available from {@link Diff#getValidationResult}.
+     * </p>
+     *
+     * @throws IllegalArgumentException
+     *             if the validator would serialize and parse the document
+     * @throws IllegalStateException
+     *             if the test document has already been specified
+     */
+    public DiffBuilder validatingTestDocument(Validator validator) {
+        Preconditions.checkArgument(validator != null, "Validator cannot be null");
+        Preconditions.checkArgument(validator.validatesDomDirectly(),
+                "Validator must validate the parsed document directly");
+        if (testSource != null || pendingTestSource != null) {
+            throw new IllegalStateException("Test document has already been specified");
+        }
+        this.testValidator = validator;
+        return this;
+    }
+
+    private interface SourceTask {
+        Source call() throws BuilderException;
+    }
+
+    /**
+     * A task parsing the document with a parser created up front, the task
+     * may run in another thread.
+     */
+    private SourceTask parse(final InputSource inputSource, boolean control) {
+        final DocumentBuilder parser = newDocumentBuilder(control);
+        return new SourceTask() {
+            @Override
+            public Source call() throws BuilderException {
+                Document document = prepareDocumentFrom(inputSource, parser);
+                return Input.fromDocument(document).build();
+            }
+        };
+    }
+
+    private SourceTask parse(final Reader reader, boolean control) {
+        final DocumentBuilder parser = newDocumentBuilder(control);
+        return new SourceTask() {
+            @Override
+            public Source call() throws BuilderException {
+                Document document = prepareDocumentFrom(reader, parser);
+                return Input.fromDocument(document).build();
+            }
+        };
+    }
+
+    /**
+     * Validates the test document produced by the task if a validator has
+     * been specified.
+     */
+    private SourceTask validated(final SourceTask task) {
+        if (testValidator == null) {
+            return task;
+        }
+        final Validator validator = testValidator;
+        return new SourceTask() {
+            @Override
+            public Source call() throws BuilderException {
+                Source source = task.call();
+                testValidationResult = validator.validateInstance(source);
+                return source;
+            }
+        };
+    }
+
+    private static SourceTask just(final Source source) {
+        return new SourceTask() {
+            @Override
+            public Source call() {
+                return source;
+            }
+        };
+    }
+
+    private DocumentBuilder newDocumentBuilder(boolean control) {
+        return control ? documentUtils.newControlDocumentBuilder() : documentUtils.newTestDocumentBuilder();
+    }
+
+    /**
+     * Schedules the task followed by applying the source properties to its
+     * result.
+     *
+     * <p>
+     * DocumentUtils isn't thread-safe, each task gets its own instance.
+     * </p>
+     */
+    private Future<Source> submit(final SourceTask task) {
+        final DocumentUtils utils = new DocumentUtils(properties);
+        if (pendingSources == null) {
+            pendingSources = new ExecutorCompletionService<Source>(executor);
+        }
+        return pendingSources.submit(new Callable<Source>() {
+            @Override
+            public Source call() throws BuilderException {
+                return utils.applySourceProperties(task.call());
+            }
+        });
+    }
+
+    /**
+     * Waits for the next pending document to be prepared, successfully or
+     * not.
+     */
+    private Future<Source> next() throws BuilderException {
+        try {
+            return pendingSources.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while building Diff!", e);
+        }
+    }
+
+    private static Source join(Future<Source> future) throws BuilderException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BuilderException("Interrupted while building Diff!", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BuilderException) {
+                throw (BuilderException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new BuilderException("Failed to build Diff!", cause);
+        }
+    }
+
+    private void prepareControl(SourceTask task) throws BuilderException {
+        if (executor == null) {
+            controlSource = task.call();
+        } else {
+            pendingControlSource = submit(task);
+        }
+    }
+
+    private void prepareControl(Source source) {
+        if (executor == null) {
+            controlSource = source;
+        } else {
+            pendingControlSource = submit(just(source));
+        }
+    }
+
+    private void prepareTest(SourceTask task) throws BuilderException {
+        if (executor == null) {
+            testSource = validated(task).call();
+        } else {
+            pendingTestSource = submit(validated(task));
+        }
+    }
+
+    private void prepareTest(Source source) throws BuilderException {
+        prepareTest(just(source));
+    }
+
     public DiffTestDocBuilder betweenControlDocument(Document document) {
         Preconditions.checkArgument(document != null, "Document cannot be null");
-        this.controlSource = Input.fromDocument(document).build();
-        ;
+        prepareControl(Input.fromDocument(document).build());
         return new DiffTestDocBuilder();
     }
 
@@ -81,33 +290,56 @@ public class DiffBuilder {
         Preconditions.checkArgument(source != null, "Source cannot be null");
         // TODO probably this should be converted to DOM first to apply all
         // properties like coalescing
-        this.controlSource = source;
+        prepareControl(source);
         return new DiffTestDocBuilder();
     }
 
     public DiffTestDocBuilder betweenControlDocument(InputSource source) throws BuilderException {
         Preconditions.checkArgument(source != null, "Source cannot be null");
-        Document controlDoc = prepareDocumentFrom(source, documentUtils.newControlDocumentBuilder());
-        this.controlSource = Input.fromDocument(controlDoc).build();
+        prepareControl(parse(source, true));
         return new DiffTestDocBuilder();
     }
 
     public DiffTestDocBuilder betweenControlDocument(String string) throws BuilderException {
         Preconditions.checkArgument(string != null, "String cannot be null");
-        Document controlDoc = prepareDocumentFrom(
-                new StringReader(string),
-                documentUtils.newControlDocumentBuilder());
-        this.controlSource = Input.fromDocument(controlDoc).build();
+        prepareControl(parse(new StringReader(string), true));
         return new DiffTestDocBuilder();
     }
 
     public DiffTestDocBuilder betweenControlDocument(Reader reader) throws BuilderException {
         Preconditions.checkArgument(reader != null, "Reader cannot be null");
-        Document controlDoc = prepareDocumentFrom(reader, documentUtils.newControlDocumentBuilder());
-        this.controlSource = Input.fromDocument(controlDoc).build();
+        prepareControl(parse(reader, true));
         return new DiffTestDocBuilder();
     }
 
+    private void joinPendingSources() throws BuilderException {
+        try {
+            // documents are joined in the order they are finished, so a
+            // failure is reported without waiting for the other document
+            int pending = (pendingControlSource != null ? 1 : 0) + (pendingTestSource != null ? 1 : 0);
+            for (int i = 0; i < pending; i++) {
+                join(next());
+            }
+            if (pendingControlSource != null) {
+                controlSource = join(pendingControlSource);
+            }
+            if (pendingTestSource != null) {
+                testSource = join(pendingTestSource);
+            }
+        } finally {
+            // don't leave the other document parsing if one of them failed
+            if (pendingControlSource != null) {
+                pendingControlSource.cancel(true);
+            }
+            if (pendingTestSource != null) {
+                pendingTestSource.cancel(true);
+            }
+            pendingSources = null;
+            pendingControlSource = null;
+            pendingTestSource = null;
+        }
+    }
+
     private void validate() throws BuilderException {
         if (controlSource == null) {
             throw new BuilderException("Control document must be provided!");
@@ -124,7 +356,7 @@ public class DiffBuilder {
 
         public DiffPropertiesBuilder andTestDocument(Document document) throws BuilderException {
             Preconditions.checkArgument(document != null, "Document cannot be null");
-            testSource = Input.fromDocument(document).build();
+            prepareTest(Input.fromDocument(document).build());
             return new DiffPropertiesBuilder();
         }
 
@@ -133,30 +365,25 @@ public class DiffBuilder {
             // TODO
             // Document testDoc = source.getNode().getOwnerDocument();
             // testSource = Input.fromDocument(testDoc).build();
-            testSource = source;
+            prepareTest(source);
             return new DiffPropertiesBuilder();
         }
 
         public DiffPropertiesBuilder andTestDocument(InputSource source) throws BuilderException {
             Preconditions.checkArgument(source != null, "Source cannot be null");
-            Document testDoc = prepareDocumentFrom(source, documentUtils.newTestDocumentBuilder());
-            testSource = Input.fromDocument(testDoc).build();
+            prepareTest(parse(source, false));
             return new DiffPropertiesBuilder();
         }
 
         public DiffPropertiesBuilder andTestDocument(String string) throws BuilderException {
             Preconditions.checkArgument(string != null, "String cannot be null");
-            Document testDoc = prepareDocumentFrom(
-                    new StringReader(string),
-                    documentUtils.newTestDocumentBuilder());
-            testSource = Input.fromDocument(testDoc).build();
+            prepareTest(parse(new StringReader(string), false));
             return new DiffPropertiesBuilder();
         }
 
         public DiffPropertiesBuilder andTestDocument(Reader reader) throws BuilderException {
             Preconditions.checkArgument(reader != null, "Reader cannot be null");
-            Document testDoc = prepareDocumentFrom(reader, documentUtils.newTestDocumentBuilder());
-            testSource = Input.fromDocument(testDoc).build();
+            prepareTest(parse(reader, false));
             return new DiffPropertiesBuilder();
         }
 
@@ -175,9 +402,14 @@ public class DiffBuilder {
 
         @Override
         public Diff build() throws BuilderException {
-            validate();
-            testSource = documentUtils.applySourceProperties(testSource);
-            controlSource = documentUtils.applySourceProperties(controlSource);
+            if (executor != null) {
+                joinPendingSources();
+                validate();
+            } else {
+                validate();
+                testSource = documentUtils.applySourceProperties(testSource);
+                controlSource = documentUtils.applySourceProperties(controlSource);
+            }
             return new Diff(DiffBuilder.this);
         }
     }
@@ -14,14 +14,23 @@
 
 package org.custommonkey.xmlunit.matchers;
 
+import java.io.IOException;
+
 import javax.annotation.Nullable;
 
+import net.sf.xmlunit.xpath.XpathEngine;
+
 import org.custommonkey.xmlunit.XmlUnit;
 import org.custommonkey.xmlunit.XmlUnitBuilder;
 import org.hamcrest.TypeSafeMatcher;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
 public abstract class AbstractXmlUnitMatcher<T> extends TypeSafeMatcher<T> {
     protected XmlUnit xmlUnit;
+    private XmlUnit defaultXmlUnit;
+    private XpathEngine xpathEngine;
+    private XmlUnit xpathEngineOwner;
 
     public AbstractXmlUnitMatcher<T> using(@Nullable XmlUnit xmlUnit) {
         this.xmlUnit = xmlUnit;
@@ -29,13 +38,44 @@ public abstract class AbstractXmlUnitMatcher<T> extends TypeSafeMatcher<T> {
     }
 
     protected XmlUnit getXmlUnit() {
-        XmlUnit xmlUnit;
-        if (this.xmlUnit == null) {
-            xmlUnit = new XmlUnitBuilder().build();
-        } else {
-            xmlUnit = this.xmlUnit;
+        if (this.xmlUnit != null) {
+            return this.xmlUnit;
+        }
+        if (defaultXmlUnit == null) {
+            defaultXmlUnit = new XmlUnitBuilder().build();
+        }
+        return defaultXmlUnit;
+    }
+
+    /**
+     * The XpathEngine of the XmlUnit in use, created once and reused for
+     * all evaluations of this matcher.
+     */
+    protected XpathEngine getXpathEngine() {
+        XmlUnit xmlUnit = getXmlUnit();
+        if (xpathEngine == null || xpathEngineOwner != xmlUnit) {
+            xpathEngine = xmlUnit.newDocumentUtils().newXpathEngine();
+            xpathEngineOwner = xmlUnit;
         }
-        return xmlUnit;
+        return xpathEngine;
+    }
+
+    /**
+     * Parses a string with the control parser, using the
+     * {@link ParsedDocumentCache} of the current thread. The document must
+     * not be modified.
+     */
+    protected Document parseControlDocument(String xml) throws SAXException, IOException {
+        return ParsedDocumentCache.forCurrentThread().parseControl(xml, getXmlUnit().getProperties());
+    }
+
+    /**
+     * Parses a string with the test parser, using the
+     * {@link ParsedDocumentCache} of the current thread. The document must
+     * not be modified.
+     */
+    protected Document parseTestDocument(String xml) throws SAXException, IOException {
+        return ParsedDocumentCache.forCurrentThread().parseTest(xml, getXmlUnit().getProperties());
     }
 
     protected String quote(String string) {
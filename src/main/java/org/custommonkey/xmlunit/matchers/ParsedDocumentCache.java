@@ -0,0 +1,218 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.custommonkey.xmlunit.matchers;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.custommonkey.xmlunit.XmlUnitProperties;
+import org.custommonkey.xmlunit.util.DocumentUtils;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+/**
+ * Documents parsed from strings by the matchers, so that several
+ * assertions on the same payload parse it only once.
+ *
+ * <p>
+ * Entries are keyed by the string - compared by identity first and by
+ * content if the identity differs - and the properties that configure the
+ * parser. DOM trees must not be shared between threads, even for reading,
+ * so each thread has its own cache. It holds at most {@link #DEFAULT_SIZE}
+ * documents parsed from at most {@link #DEFAULT_MAX_CHARACTERS} characters
+ * in total, the least recently used document is dropped first. Strings
+ * longer than that aren't cached at all. The documents are shared between
+ * matchers and must not be modified.
+ * </p>
+ *
+ * <p>
+ * {@link #setLimits} changes the limits of a thread's cache, a limit of
+ * zero documents disables it.
+ * </p>
+ */
+public final class ParsedDocumentCache {
+    /**
+     * Number of documents cached per thread.
+     */
+    public static final int DEFAULT_SIZE = 16;
+
+    /**
+     * Number of characters of the strings whose documents are cached per
+     * thread.
+     */
+    public static final int DEFAULT_MAX_CHARACTERS = 1024 * 1024;
+
+    private static final ThreadLocal<ParsedDocumentCache> CACHES = new ThreadLocal<ParsedDocumentCache>() {
+        @Override
+        protected ParsedDocumentCache initialValue() {
+            return new ParsedDocumentCache();
+        }
+    };
+
+    // iterates from the least to the most recently used document
+    private final Map<Key, Document> documents = new LinkedHashMap<Key, Document>(16, 0.75f, true);
+    private int size = DEFAULT_SIZE;
+    private int maxCharacters = DEFAULT_MAX_CHARACTERS;
+    private long characters;
+    private long hits;
+    private long misses;
+
+    private ParsedDocumentCache() {
+    }
+
+    /**
+     * The cache of the current thread.
+     */
+    public static ParsedDocumentCache forCurrentThread() {
+        return CACHES.get();
+    }
+
+    /**
+     * Parses a string with the control parser configured by the properties
+     * unless the same string has been parsed with the same configuration
+     * before.
+     */
+    public Document parseControl(String xml, XmlUnitProperties properties) throws SAXException, IOException {
+        return parse(xml, properties, true);
+    }
+
+    /**
+     * Parses a string with the test parser configured by the properties
+     * unless the same string has been parsed with the same configuration
+     * before.
+     */
+    public Document parseTest(String xml, XmlUnitProperties properties) throws SAXException, IOException {
+        return parse(xml, properties, false);
+    }
+
+    private Document parse(String xml, XmlUnitProperties properties, boolean control)
+            throws SAXException, IOException {
+        if (xml == null) {
+            throw new IllegalArgumentException("xml must not be null");
+        }
+        Key key = new Key(xml, properties, control);
+        Document d = documents.get(key);
+        if (d != null) {
+            hits++;
+            return d;
+        }
+        misses++;
+        DocumentUtils documentUtils = new DocumentUtils(properties);
+        d = control ? documentUtils.buildControlDocument(xml) : documentUtils.buildTestDocument(xml);
+        if (size > 0 && xml.length() <= maxCharacters) {
+            documents.put(key, d);
+            characters += xml.length();
+            trim();
+        }
+        return d;
+    }
+
+    /**
+     * Drops the least recently used documents until the cache is within its
+     * limits.
+     */
+    private void trim() {
+        Iterator<Key> eldest = documents.keySet().iterator();
+        while (documents.size() > size || characters > maxCharacters) {
+            characters -= eldest.next().xml.length();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Set the number of documents and the total number of characters of the
+     * strings they have been parsed from this cache holds at most.
+     *
+     * <p>
+     * Documents are dropped right away if the cache exceeds the new limits,
+     * zero documents disable the cache.
+     * </p>
+     */
+    public void setLimits(int size, int maxCharacters) {
+        if (size < 0) {
+            throw new IllegalArgumentException("size must not be negative");
+        }
+        if (maxCharacters < 0) {
+            throw new IllegalArgumentException("maxCharacters must not be negative");
+        }
+        this.size = size;
+        this.maxCharacters = maxCharacters;
+        trim();
+    }
+
+    /**
+     * Number of strings that didn't need to be parsed.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Number of strings that have been parsed.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Drops all documents and resets the statistics.
+     */
+    public void clear() {
+        documents.clear();
+        characters = 0;
+        hits = 0;
+        misses = 0;
+    }
+
+    private static final class Key {
+        private final String xml;
+        private final boolean control;
+        private final Class<?> factoryClass;
+        private final boolean ignoreWhitespace;
+        private final boolean expandEntityReferences;
+        private final int hashCode;
+
+        private Key(String xml, XmlUnitProperties properties, boolean control) {
+            this.xml = xml;
+            this.control = control;
+            factoryClass = control ? properties.getControlDocumentBuilderFactoryClass()
+                    : properties.getTestDocumentBuilderFactoryClass();
+            ignoreWhitespace = properties.getIgnoreWhitespace();
+            expandEntityReferences = properties.getExpandEntityReferences();
+            // String caches its hash code, repeated lookups don't rehash
+            hashCode = xml.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode
+                    && control == other.control
+                    && factoryClass == other.factoryClass
+                    && ignoreWhitespace == other.ignoreWhitespace
+                    && expandEntityReferences == other.expandEntityReferences
+                    && (xml == other.xml || xml.equals(other.xml));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
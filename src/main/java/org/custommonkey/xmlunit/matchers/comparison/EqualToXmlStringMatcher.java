@@ -14,12 +14,16 @@
 
 package org.custommonkey.xmlunit.matchers.comparison;
 
+import java.io.IOException;
+
 import org.custommonkey.xmlunit.XmlUnit;
 import org.custommonkey.xmlunit.diff.Diff;
 import org.custommonkey.xmlunit.exceptions.XmlUnitException;
 import org.custommonkey.xmlunit.matchers.AbstractXmlUnitMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Factory;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
 
 /**
  * Compares two XML documents end checks if these are similar.
@@ -27,6 +31,8 @@ import org.hamcrest.Factory;
 public class EqualToXmlStringMatcher extends AbstractXmlUnitMatcher<String> {
 
     private final String expectedString;
+    private Document expectedDocument;
+    private XmlUnit expectedDocumentOwner;
 
     public EqualToXmlStringMatcher(String expectedString) {
         this.expectedString = expectedString;
@@ -47,13 +53,28 @@ public class EqualToXmlStringMatcher extends AbstractXmlUnitMatcher<String> {
 
         Diff diff;
         try {
-            diff = xmlUnit.compareXML(expectedString, actualDoc);
+            diff = xmlUnit.compareXML(getExpectedDocument(xmlUnit), parseTestDocument(actualDoc));
         } catch (XmlUnitException e) {
             throw new IllegalArgumentException("Failed to compare documents.", e);
+        } catch (SAXException e) {
+            throw new IllegalArgumentException("Failed to compare documents.", e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to compare documents.", e);
         }
         return diff.similar();
     }
 
+    /**
+     * The expected document is parsed once per XmlUnit configuration.
+     */
+    private Document getExpectedDocument(XmlUnit xmlUnit) throws SAXException, IOException {
+        if (expectedDocument == null || expectedDocumentOwner != xmlUnit) {
+            expectedDocument = parseControlDocument(expectedString);
+            expectedDocumentOwner = xmlUnit;
+        }
+        return expectedDocument;
+    }
+
     @Factory
     public static EqualToXmlStringMatcher equalToXmlString(String expectedString) {
         return new EqualToXmlStringMatcher(expectedString);
@@ -47,7 +47,7 @@ public abstract class AbstractXpathEqualMatcher extends AbstractXmlUnitMatcher<X
 
         XmlUnitProperties properties = getXmlUnit().getProperties();
         DocumentUtils documentUtils = getXmlUnit().newDocumentUtils();
-        XpathEngine xpath = documentUtils.newXpathEngine();
+        XpathEngine xpath = getXpathEngine();
 
         expectedXpathDocument = asXpathResultDocument(
                 documentUtils.newControlDocumentBuilder(),
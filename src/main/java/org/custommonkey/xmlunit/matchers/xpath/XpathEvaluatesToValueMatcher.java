@@ -53,7 +53,7 @@ public class XpathEvaluatesToValueMatcher extends AbstractXmlUnitMatcher<XpathWr
         if (actualXpath == null) {
             throw new IllegalArgumentException("Actual xpath cannot be null or empty!");
         }
-        XpathEngine xpathEngine = getXmlUnit().newDocumentUtils().newXpathEngine();
+        XpathEngine xpathEngine = getXpathEngine();
         try {
             actualEvalueatedXpathValue = xpathEngine.evaluate(
                     actualXpath.getXpath(), new DOMSource(actualXpath.getDocument()));
@@ -75,7 +75,7 @@ public class XpathExistsInDocumentMatcher extends AbstractXmlUnitMatcher<Documen
 
         IterableNodeList nodeList;
         try {
-            XpathEngine xpathEngine = getXmlUnit().newDocumentUtils().newXpathEngine();
+            XpathEngine xpathEngine = getXpathEngine();
             nodeList = xpathEngine.selectNodes(expectedXpath, new DOMSource(actualXmlDoc));
         } catch (XpathException e) {
             throw new IllegalArgumentException("Invalid xpath!", e);
@@ -14,16 +14,14 @@
 
 package org.custommonkey.xmlunit.matchers.xpath;
 
-import java.io.IOException;
-
 import javax.xml.transform.dom.DOMSource;
 
+import java.io.IOException;
+
 import net.sf.xmlunit.util.IterableNodeList;
-import net.sf.xmlunit.xpath.XpathEngine;
 
 import org.custommonkey.xmlunit.exceptions.XpathException;
 import org.custommonkey.xmlunit.matchers.AbstractXmlUnitMatcher;
-import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.hamcrest.Description;
 import org.hamcrest.Factory;
 import org.w3c.dom.Document;
@@ -68,11 +66,9 @@ public class XpathExistsInXmlStringMatcher extends AbstractXmlUnitMatcher<String
         int matches;
 
         try {
-            DocumentUtils documentUtils = new DocumentUtils(getXmlUnit().getProperties());
-            inDocument = documentUtils.buildControlDocument(actualXmlString);
+            inDocument = parseControlDocument(actualXmlString);
 
-            XpathEngine xpathEngine = getXmlUnit().newDocumentUtils().newXpathEngine();
-            IterableNodeList nodeList = xpathEngine.selectNodes(expectedXpath, new DOMSource(inDocument));
+            IterableNodeList nodeList = getXpathEngine().selectNodes(expectedXpath, new DOMSource(inDocument));
             matches = nodeList.getLength();
         } catch (SAXException e) {
             throw new IllegalStateException("Couldn't check xpath", e);
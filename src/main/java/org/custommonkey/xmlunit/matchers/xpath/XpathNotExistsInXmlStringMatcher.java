@@ -14,16 +14,14 @@
 
 package org.custommonkey.xmlunit.matchers.xpath;
 
-import java.io.IOException;
-
 import javax.xml.transform.dom.DOMSource;
 
+import java.io.IOException;
+
 import net.sf.xmlunit.util.IterableNodeList;
-import net.sf.xmlunit.xpath.XpathEngine;
 
 import org.custommonkey.xmlunit.exceptions.XpathException;
 import org.custommonkey.xmlunit.matchers.AbstractXmlUnitMatcher;
-import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.hamcrest.Description;
 import org.hamcrest.Factory;
 import org.w3c.dom.Document;
@@ -68,11 +66,9 @@ public class XpathNotExistsInXmlStringMatcher extends AbstractXmlUnitMatcher<Str
         int matches;
 
         try {
-            DocumentUtils documentUtils = new DocumentUtils(getXmlUnit().getProperties());
-            inDocument = documentUtils.buildControlDocument(actualXmlDoc);
+            inDocument = parseControlDocument(actualXmlDoc);
 
-            XpathEngine simpleXpathEngine = getXmlUnit().newDocumentUtils().newXpathEngine();
-            IterableNodeList nodeList = simpleXpathEngine.selectNodes(expectedXpath, new DOMSource(inDocument));
+            IterableNodeList nodeList = getXpathEngine().selectNodes(expectedXpath, new DOMSource(inDocument));
             matches = nodeList.getLength();
         } catch (SAXException e) {
             throw new IllegalStateException("Couldn't check xpath", e);
@@ -54,7 +54,7 @@ public class XpathValuesEqualMatcher extends AbstractXmlUnitMatcher<XpathWrapper
         if (actualXpath == null) {
             throw new IllegalArgumentException("Actual xpath cannot be null!");
         }
-        XpathEngine xpath = getXmlUnit().newDocumentUtils().newXpathEngine();
+        XpathEngine xpath = getXpathEngine();
         try {
             expectedXpathValue = xpath.evaluate(
                     expectedXpath.getXpath(), new DOMSource(expectedXpath.getDocument()));
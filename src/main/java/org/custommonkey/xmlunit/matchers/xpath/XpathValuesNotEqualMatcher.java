@@ -48,7 +48,7 @@ public class XpathValuesNotEqualMatcher extends AbstractXmlUnitMatcher<XpathWrap
 
     @Override
     public boolean matchesSafely(XpathWrapper actualXpath) {
-        XpathEngine xpath = getXmlUnit().newDocumentUtils().newXpathEngine();
+        XpathEngine xpath = getXpathEngine();
         try {
             expectedXpathValue = xpath.evaluate(
                     expectedXpath.getXpath(), new DOMSource(expectedXpath.getDocument()));
@@ -38,6 +38,7 @@ import net.sf.xmlunit.input.CommentLessSource;
 import net.sf.xmlunit.input.WhitespaceNormalizedSource;
 import net.sf.xmlunit.input.WhitespaceStrippedSource;
 import net.sf.xmlunit.util.Preconditions;
+import net.sf.xmlunit.util.XsltUtils;
 import net.sf.xmlunit.xpath.JaxpXpathEngine;
 import net.sf.xmlunit.xpath.SimpleXpathEngine;
 import net.sf.xmlunit.xpath.XpathEngine;
@@ -355,11 +356,15 @@ public class DocumentUtils {
         DOMSource domSource = new DOMSource(document);
         StringWriter writer = new StringWriter();
         StreamResult result = new StreamResult(writer);
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-        transformer.setOutputProperty(OutputKeys.METHOD, "xml");
-        transformer.transform(domSource, result);
+        XsltUtils xsltUtils = new XsltUtils();
+        Transformer transformer = xsltUtils.acquireTransformer();
+        try {
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+            transformer.transform(domSource, result);
+        } finally {
+            xsltUtils.releaseTransformer(transformer);
+        }
         return writer.toString();
     }
 }
@@ -14,8 +14,8 @@
 package org.xmlunit.builder;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -23,11 +23,15 @@ import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 
+import net.sf.xmlunit.transform.TransformationSource;
+import net.sf.xmlunit.util.ByteBufferInputStream;
 
 import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
 import org.w3c.dom.Document;
@@ -88,10 +92,8 @@ public class Input {
             source = new StreamSource(r);
         }
 
-        void setSystemId(String id) {
-            if (id != null) {
-                source.setSystemId(id);
-            }
+        private StreamBuilder(String systemId) {
+            source = new StreamSource(systemId);
         }
 
         @Override
@@ -143,42 +145,110 @@ public class Input {
         return fromStream(new ByteArrayInputStream(b));
     }
 
+    private static class ByteBufferBuilder implements Builder {
+        private final ByteBuffer buffer;
+        private final String systemId;
+
+        private ByteBufferBuilder(ByteBuffer buffer, String systemId) {
+            if (buffer == null) {
+                throw new IllegalArgumentException("buffer must not be null");
+            }
+            this.buffer = buffer;
+            this.systemId = systemId;
+        }
+
+        /**
+         * Each invocation creates a fresh Source reading the buffer from its
+         * original position, the buffer itself is never copied.
+         */
+        @Override
+        public Source build() {
+            StreamSource source =
+                    new StreamSource(new ByteBufferInputStream(buffer));
+            if (systemId != null) {
+                source.setSystemId(systemId);
+            }
+            return source;
+        }
+    }
+
     /**
-     * Build a Source from an URL.
+     * Build a Source from a ByteBuffer.
+     * 
+     * <p>
+     * The bytes between the buffer's position and its limit are read
+     * without copying them, so direct and memory-mapped buffers stay off the
+     * heap. The buffer's position is not modified.
+     * </p>
      */
-    public static Builder fromURL(URL url) {
+    public static Builder fromByteBuffer(ByteBuffer buffer) {
+        return new ByteBufferBuilder(buffer, null);
+    }
+
+    /**
+     * Build a Source from a memory-mapped file.
+     * 
+     * <p>
+     * The file is mapped read-only via {@link FileChannel#map} and read
+     * straight from the OS page cache instead of being copied into a heap
+     * buffer. The file must not be truncated while the Source is in use.
+     * </p>
+     *
+     * @param f
+     *            the file to map - must not be bigger than 2GB
+     */
+    public static Builder fromMappedFile(File f) {
+        String fileId = f.getAbsoluteFile().toURI().toString();
         try {
-            InputStream in = null;
+            FileInputStream in = new FileInputStream(f);
             try {
-                in = url.openStream();
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                int read = -1;
-                byte[] buf = new byte[4096];
-                while ((read = in.read(buf)) >= 0) {
-                    if (read > 0) {
-                        baos.write(buf, 0, read);
-                    }
-                }
-                StreamBuilder b =
-                        (StreamBuilder) fromMemory(baos.toByteArray());
-                try {
-                    b.setSystemId(url.toURI().toString());
-                } catch (URISyntaxException use) {
-                    // impossible - shouldn't have been an URL in the
-                    // first place
-                    b.setSystemId(url.toString());
+                FileChannel channel = in.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new XMLUnitRuntimeException(fileId
+                            + " is too big to be mapped");
                 }
-                return b;
+                // the mapping stays valid after the channel has been closed
+                ByteBuffer buffer =
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+                return new ByteBufferBuilder(buffer, fileId);
             } finally {
-                if (in != null) {
-                    in.close();
-                }
+                in.close();
             }
         } catch (IOException ex) {
             throw new XMLUnitRuntimeException(ex);
         }
     }
 
+    /**
+     * Build a Source from a named memory-mapped file.
+     * 
+     * @see #fromMappedFile(File)
+     */
+    public static Builder fromMappedFile(String name) {
+        return fromMappedFile(new File(name));
+    }
+
+    /**
+     * Build a Source from an URL.
+     * 
+     * <p>
+     * The content is not read eagerly, the parser will stream it from the
+     * URL when the Source is consumed.
+     * </p>
+     */
+    public static Builder fromURL(URL url) {
+        String systemId;
+        try {
+            systemId = url.toURI().toString();
+        } catch (URISyntaxException use) {
+            // impossible - shouldn't have been an URL in the
+            // first place
+            systemId = url.toString();
+        }
+        return new StreamBuilder(systemId);
+    }
+
     /**
      * Build a Source from an URI.
      * 
@@ -215,12 +285,28 @@ public class Input {
          * Sets the stylesheet to use.
          */
         TransformationBuilder withStylesheet(Builder b);
+
+        /**
+         * Makes {@link #build} return a {@link TransformationSource} that
+         * performs the transformation whenever it is read rather than a
+         * DOMSource holding its result.
+         *
+         * <p>
+         * SAX based readers receive the result as events and readers that
+         * need a Document get one without copying, which avoids building an
+         * intermediate tree for large results. The source can only be read
+         * as often as the transformed source.
+         * </p>
+         */
+        TransformationBuilder streaming();
     }
 
     private static class Transformation
             extends AbstractTransformationBuilder<TransformationBuilder>
             implements TransformationBuilder {
 
+        private boolean streaming;
+
         private Transformation(Source s) {
             super(s);
         }
@@ -230,8 +316,17 @@ public class Input {
             return withStylesheet(b.build());
         }
 
+        @Override
+        public TransformationBuilder streaming() {
+            streaming = true;
+            return this;
+        }
+
         @Override
         public Source build() {
+            if (streaming) {
+                return new TransformationSource(getHelper());
+            }
             return new DOMSource(getHelper().transformToDocument());
         }
     }
@@ -13,8 +13,13 @@
  */
 package org.xmlunit.builder;
 
+import java.util.Iterator;
+import java.util.concurrent.Executor;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import net.sf.xmlunit.transform.BatchTransformation;
 import net.sf.xmlunit.transform.Transformation;
 import org.w3c.dom.Document;
 
@@ -72,10 +77,175 @@ public final class Transform {
         }
     }
 
+    public interface BatchBuilder extends TransformationBuilderBase<BatchBuilder> {
+        /**
+         * Sets the number of threads transforming the sources, defaults to
+         * the number of available processors.
+         */
+        BatchBuilder withThreads(int threads);
+
+        /**
+         * Sets the number of results that may be transformed ahead of their
+         * consumption, defaults to twice the number of threads.
+         */
+        BatchBuilder withMaxPendingResults(int maxPendingResults);
+
+        /**
+         * Transforms the sources using the given executor instead of a
+         * thread pool created for the batch.
+         */
+        BatchBuilder concurrentlyUsing(Executor executor);
+
+        /**
+         * Start the transformations, the stylesheet is compiled once for all
+         * sources.
+         */
+        BatchResults build();
+    }
+
+    /**
+     * The results of a batch in the order of their sources.
+     */
+    public interface BatchResults extends Iterator<BatchResult> {
+        /**
+         * Stops the transformations still running and discards results not
+         * consumed, yet.
+         */
+        void close();
+    }
+
+    /**
+     * The result of transforming one source of a batch, all output methods
+     * throw the exception the transformation has failed with.
+     *
+     * <p>
+     * If the output method of the stylesheet isn't xml there is no document
+     * and the result can only be written to a String or a StreamResult with
+     * a Writer or OutputStream.
+     * </p>
+     */
+    public interface BatchResult extends TransformationResult {
+        /**
+         * The transformed source.
+         */
+        Source getSource();
+
+        /**
+         * The exception the transformation failed with or null.
+         */
+        RuntimeException getFailure();
+    }
+
+    private static class BatchTransformationBuilder implements BatchBuilder {
+        private final BatchTransformation helper;
+
+        private BatchTransformationBuilder(Iterable<? extends Source> sources) {
+            helper = new BatchTransformation(sources);
+        }
+
+        public BatchBuilder withStylesheet(Source s) {
+            helper.setStylesheet(s);
+            return this;
+        }
+
+        public BatchBuilder withOutputProperty(String name, String value) {
+            helper.addOutputProperty(name, value);
+            return this;
+        }
+
+        public BatchBuilder withParameter(String name, Object value) {
+            helper.addParameter(name, value);
+            return this;
+        }
+
+        public BatchBuilder usingFactory(TransformerFactory f) {
+            helper.setFactory(f);
+            return this;
+        }
+
+        public BatchBuilder withURIResolver(URIResolver r) {
+            helper.setURIResolver(r);
+            return this;
+        }
+
+        public BatchBuilder withThreads(int threads) {
+            helper.setThreads(threads);
+            return this;
+        }
+
+        public BatchBuilder withMaxPendingResults(int maxPendingResults) {
+            helper.setMaxPendingResults(maxPendingResults);
+            return this;
+        }
+
+        public BatchBuilder concurrentlyUsing(Executor executor) {
+            helper.setExecutor(executor);
+            return this;
+        }
+
+        public BatchResults build() {
+            final BatchTransformation.Results results = helper.transformToDocuments();
+            return new BatchResults() {
+                public boolean hasNext() {
+                    return results.hasNext();
+                }
+
+                public BatchResult next() {
+                    return new DocumentResult(results.next());
+                }
+
+                public void remove() {
+                    results.remove();
+                }
+
+                public void close() {
+                    results.close();
+                }
+            };
+        }
+    }
+
+    private static class DocumentResult implements BatchResult {
+        private final BatchTransformation.Result result;
+
+        private DocumentResult(BatchTransformation.Result result) {
+            this.result = result;
+        }
+
+        public Source getSource() {
+            return result.getSource();
+        }
+
+        public RuntimeException getFailure() {
+            return result.getFailure();
+        }
+
+        public Document toDocument() {
+            return result.getDocument();
+        }
+
+        @Override
+        public String toString() {
+            return result.transformToString();
+        }
+
+        public void to(Result r) {
+            result.transformTo(r);
+        }
+    }
+
     /**
      * Build a transformation for a source document.
      */
     public static Builder source(Source s) {
         return new TransformationBuilder(s);
     }
+
+    /**
+     * Build a transformation of many source documents that shares the
+     * compiled stylesheet and runs on several threads.
+     */
+    public static BatchBuilder sources(Iterable<? extends Source> sources) {
+        return new BatchTransformationBuilder(sources);
+    }
 }
@@ -0,0 +1,220 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.transform.Source;
+
+import net.sf.xmlunit.util.Preconditions;
+import net.sf.xmlunit.util.WorkerPools;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+
+/**
+ * Validates many instance documents against the schema of a Validator using
+ * a bounded number of threads.
+ *
+ * <p>
+ * The schema is compiled once for all documents if the Validator supports it
+ * - otherwise the documents are validated one after another. The sources are
+ * read lazily, at most twice as many documents as there are threads are
+ * validated ahead of the results that have been collected. The documents are
+ * validated by the {@link #setExecutor given executor} or by a thread
+ * pool of the batch.
+ * </p>
+ *
+ * @see Validator#validateInstances
+ */
+public final class BatchValidation {
+    private final Validator validator;
+    private final Iterable<? extends Source> instances;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private Executor executor;
+    private boolean failFast;
+    private int maxProblems = Integer.MAX_VALUE;
+
+    /**
+     * @param validator
+     *            the validator providing the schema - must not be null.
+     * @param instances
+     *            the documents to validate - must not be null.
+     */
+    public BatchValidation(Validator validator, Iterable<? extends Source> instances) {
+        Preconditions.checkArgument(validator != null, "Validator must not be null!");
+        Preconditions.checkArgument(instances != null, "Instances must not be null!");
+        this.validator = validator;
+        this.instances = instances;
+    }
+
+    /**
+     * Set the number of threads validating documents, defaults to the number
+     * of available processors.
+     */
+    public void setThreads(int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        this.threads = threads;
+    }
+
+    /**
+     * Validates the documents using the given executor instead of a thread
+     * pool created for the batch.
+     *
+     * <p>
+     * The number of threads still limits the number of documents validated
+     * ahead of the collected results.
+     * </p>
+     */
+    public void setExecutor(Executor executor) {
+        Preconditions.checkArgument(executor != null, "Executor cannot be null");
+        this.executor = executor;
+    }
+
+    /**
+     * Whether to stop at the first invalid document in the order of the
+     * sources, defaults to false.
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Set the number of problems retained by the results of the batch,
+     * further problems are only counted. Defaults to no limit.
+     *
+     * <p>
+     * The validation of each document stores no more problems than may still
+     * be retained when it starts.
+     * </p>
+     */
+    public void setMaxProblems(int maxProblems) {
+        Preconditions.checkArgument(maxProblems >= 0, "maxProblems must not be negative");
+        this.maxProblems = maxProblems;
+    }
+
+    /**
+     * Validates the documents.
+     *
+     * @exception XMLUnitRuntimeException
+     *                if the schema is invalid or a document cannot be read,
+     *                the batch is stopped in that case
+     */
+    public BatchValidationResult validate() {
+        final Validator v = validator.getThreadSafeValidator();
+        Collector collector = new Collector();
+        Iterator<? extends Source> sources = instances.iterator();
+        if (v == null || threads == 1 && executor == null) {
+            Validator sequential = v != null ? v : validator;
+            while (sources.hasNext()) {
+                if (!collector.add(sequential.validateInstance(sources.next(), collector.getRemainingProblems()))) {
+                    return collector.getResult(!sources.hasNext());
+                }
+            }
+            return collector.getResult(true);
+        }
+
+        ExecutorService pool = executor == null ? WorkerPools.newPool("validate", threads) : null;
+        Executor workers = pool != null ? pool : executor;
+        Deque<Future<ValidationResult>> pending = new ArrayDeque<Future<ValidationResult>>();
+        try {
+            while (true) {
+                while (pending.size() < 2 * threads && sources.hasNext()) {
+                    final Source s = sources.next();
+                    // documents ahead of this one may use up the limit, but
+                    // not enlarge it
+                    final int maxRetainedProblems = collector.getRemainingProblems();
+                    FutureTask<ValidationResult> task = new FutureTask<ValidationResult>(
+                            new Callable<ValidationResult>() {
+                                public ValidationResult call() {
+                                    return v.validateInstance(s, maxRetainedProblems);
+                                }
+                            });
+                    workers.execute(task);
+                    pending.add(task);
+                }
+                Future<ValidationResult> next = pending.poll();
+                if (next == null) {
+                    return collector.getResult(true);
+                }
+                if (!collector.add(next.get())) {
+                    return collector.getResult(pending.isEmpty() && !sources.hasNext());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLUnitRuntimeException("Interrupted while waiting for validation", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new XMLUnitRuntimeException(e.getCause());
+        } finally {
+            for (Future<ValidationResult> f : pending) {
+                f.cancel(true);
+            }
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Collects the results in the order of the sources and applies the limit
+     * of retained problems.
+     */
+    private final class Collector {
+        private final List<ValidationResult> results = new ArrayList<ValidationResult>();
+        private final List<ValidationProblem> retained = new ArrayList<ValidationProblem>();
+        private int invalidCount;
+        private int problemCount;
+
+        /**
+         * @return whether the batch should go on
+         */
+        private boolean add(ValidationResult r) {
+            List<ValidationProblem> problems = new ArrayList<ValidationProblem>();
+            problemCount += r.getProblemCount();
+            for (ValidationProblem p : r.getProblems()) {
+                if (retained.size() < maxProblems) {
+                    retained.add(p);
+                    problems.add(p);
+                }
+            }
+            results.add(new ValidationResult(r.isValid(), problems));
+            if (!r.isValid()) {
+                invalidCount++;
+                return !failFast;
+            }
+            return true;
+        }
+
+        private int getRemainingProblems() {
+            return maxProblems - retained.size();
+        }
+
+        private BatchValidationResult getResult(boolean complete) {
+            return new BatchValidationResult(results, retained, invalidCount, problemCount, complete);
+        }
+    }
+}
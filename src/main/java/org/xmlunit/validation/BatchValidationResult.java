@@ -0,0 +1,80 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of validating a batch of instance documents.
+ *
+ * <p>
+ * As a ValidationResult it summarizes the batch: it is valid if all validated
+ * documents are valid and it holds the retained problems of all of them.
+ * </p>
+ *
+ * @see BatchValidation
+ */
+public class BatchValidationResult extends ValidationResult {
+    private final List<ValidationResult> results;
+    private final int invalidCount;
+    private final int problemCount;
+    private final boolean complete;
+
+    public BatchValidationResult(List<ValidationResult> results, List<ValidationProblem> retainedProblems,
+            int invalidCount, int problemCount, boolean complete) {
+        super(invalidCount == 0, Collections.unmodifiableList(retainedProblems));
+        this.results = Collections.unmodifiableList(results);
+        this.invalidCount = invalidCount;
+        this.problemCount = problemCount;
+        this.complete = complete;
+    }
+
+    /**
+     * The results of the validated documents in the order of their sources.
+     */
+    public List<ValidationResult> getResults() {
+        return results;
+    }
+
+    /**
+     * The number of documents that have been validated.
+     */
+    public int getValidatedCount() {
+        return results.size();
+    }
+
+    /**
+     * The number of documents that have been found invalid.
+     */
+    public int getInvalidCount() {
+        return invalidCount;
+    }
+
+    /**
+     * The number of problems found, including those that haven't been
+     * retained.
+     */
+    public int getProblemCount() {
+        return problemCount;
+    }
+
+    /**
+     * Whether all documents have been validated - false if the batch has
+     * stopped at the first invalid document.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+
+import net.sf.xmlunit.util.Preconditions;
+
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Validator for an already compiled schema that may be shared by any number
+ * of threads.
+ *
+ * <p>
+ * The schema is fixed, {@link #setSchemaURI} and {@link #setSchemaSources}
+ * throw an UnsupportedOperationException. The options of instance validation
+ * inherited from Validator remain mutable and should be set before the
+ * validator is shared.
+ * </p>
+ *
+ * <p>
+ * JAXP Validators aren't thread-safe, each validation borrows one from a pool
+ * and returns it after {@link javax.xml.validation.Validator#reset resetting}
+ * it. At most {@link #MAX_IDLE} idle JAXP Validators are kept.
+ * </p>
+ *
+ * @see JAXPValidator#compile
+ */
+public final class CompiledSchemaValidator extends Validator {
+    public static final int MAX_IDLE = 2 * Runtime.getRuntime().availableProcessors();
+
+    private final Schema schema;
+    private final Queue<javax.xml.validation.Validator> idle =
+            new ConcurrentLinkedQueue<javax.xml.validation.Validator>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * @param schema
+     *            the schema to validate against - must not be null.
+     */
+    public CompiledSchemaValidator(Schema schema) {
+        Preconditions.checkArgument(schema != null, "Schema must not be null!");
+        this.schema = schema;
+    }
+
+    /**
+     * The schema instances are validated against.
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Not supported, the schema is fixed.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void setSchemaURI(String uri) {
+        throw new UnsupportedOperationException("The schema of a CompiledSchemaValidator is fixed");
+    }
+
+    /**
+     * Not supported, the schema is fixed.
+     *
+     * @throws UnsupportedOperationException
+     *             always
+     */
+    @Override
+    public void setSchemaSources(Source[] s) {
+        throw new UnsupportedOperationException("The schema of a CompiledSchemaValidator is fixed");
+    }
+
+    /**
+     * The schema has been compiled successfully, so it is valid.
+     */
+    @Override
+    public ValidationResult validateSchema() {
+        return new ValidationResult(true, Collections.<ValidationProblem> emptyList());
+    }
+
+    /**
+     * JAXP Validators walk DOM trees directly.
+     */
+    @Override
+    public boolean validatesDomDirectly() {
+        return true;
+    }
+
+    @Override
+    protected Validator getThreadSafeValidator() {
+        return this;
+    }
+
+    @Override
+    public ValidationResult validateInstance(Source s) {
+        return validateInstance(s, Integer.MAX_VALUE);
+    }
+
+    @Override
+    ValidationResult validateInstance(Source s, int maxRetainedProblems) {
+        ValidationHandler handler = newValidationHandler(maxRetainedProblems);
+        javax.xml.validation.Validator validator = acquire();
+        validator.setErrorHandler(handler);
+        boolean reusable = false;
+        try {
+            validator.validate(StAXReader.adapt(s));
+            reusable = true;
+        } catch (SAXParseException e) {
+            handler.exceptionThrown(e);
+            reusable = true;
+        } catch (Exception e) {
+            throw new XMLUnitRuntimeException(e);
+        } finally {
+            if (reusable) {
+                release(validator);
+            }
+        }
+        return handler.getResult();
+    }
+
+    private javax.xml.validation.Validator acquire() {
+        javax.xml.validation.Validator validator = idle.poll();
+        if (validator == null) {
+            return schema.newValidator();
+        }
+        idleCount.decrementAndGet();
+        return validator;
+    }
+
+    private void release(javax.xml.validation.Validator validator) {
+        validator.setErrorHandler(null);
+        try {
+            validator.reset();
+        } catch (UnsupportedOperationException e) {
+            // can't be reused
+            return;
+        }
+        if (idleCount.incrementAndGet() <= MAX_IDLE) {
+            idle.offer(validator);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+}
@@ -23,6 +23,11 @@ import org.xml.sax.SAXParseException;
 
 /**
  * Validator using the javax.xml.validation namespace.
+ *
+ * <p>
+ * Schemas used for instance validation are compiled once and shared via the
+ * {@link SchemaCache}.
+ * </p>
  */
 public class JAXPValidator extends Validator {
     private final String language;
@@ -49,7 +54,7 @@ public class JAXPValidator extends Validator {
         try {
             factory.newSchema(getSchemaSources());
         } catch (SAXParseException e) {
-            handler.error(e);
+            handler.exceptionThrown(e);
         } catch (Exception e) {
             throw new XMLUnitRuntimeException(e);
         } finally {
@@ -58,21 +63,64 @@ public class JAXPValidator extends Validator {
         return handler.getResult();
     }
 
+    /**
+     * Creates a thread-safe Validator with a fixed schema for the current
+     * schema sources and options, the schema is compiled once.
+     *
+     * <p>
+     * The result only validates instances: its schema setters throw an
+     * UnsupportedOperationException and, as the schema has been compiled,
+     * its {@link Validator#validateSchema} reports a valid schema. Use this
+     * Validator to validate the schema itself.
+     * </p>
+     *
+     * @exception XMLUnitRuntimeException
+     *                if the schema is invalid
+     */
+    public CompiledSchemaValidator compile() {
+        try {
+            CompiledSchemaValidator v =
+                    new CompiledSchemaValidator(SchemaCache.getSchema(language, factory, getSchemaSources()));
+            copyOptionsTo(v);
+            return v;
+        } catch (SAXException e) {
+            throw new XMLUnitRuntimeException("The schema is invalid", e);
+        }
+    }
+
+    @Override
+    protected Validator getThreadSafeValidator() {
+        return compile();
+    }
+
+    /**
+     * JAXP Validators walk DOM trees directly.
+     */
+    @Override
+    public boolean validatesDomDirectly() {
+        return true;
+    }
+
     @Override
     public ValidationResult validateInstance(Source s) {
+        return validateInstance(s, Integer.MAX_VALUE);
+    }
+
+    @Override
+    ValidationResult validateInstance(Source s, int maxRetainedProblems) {
         Schema schema;
         try {
-            schema = getFactory().newSchema(getSchemaSources());
+            schema = SchemaCache.getSchema(language, factory, getSchemaSources());
         } catch (SAXException e) {
             throw new XMLUnitRuntimeException("The schema is invalid", e);
         }
-        ValidationHandler handler = new ValidationHandler();
+        ValidationHandler handler = newValidationHandler(maxRetainedProblems);
         javax.xml.validation.Validator validator = schema.newValidator();
         validator.setErrorHandler(handler);
         try {
-            validator.validate(s);
+            validator.validate(StAXReader.adapt(s));
         } catch (SAXParseException e) {
-            handler.error(e);
+            handler.exceptionThrown(e);
         } catch (Exception e) {
             throw new XMLUnitRuntimeException(e);
         }
@@ -13,17 +13,28 @@
  */
 package org.xmlunit.validation;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
 
+import net.sf.xmlunit.util.CompilationCache;
 import net.sf.xmlunit.util.Convert;
 
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
 import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
@@ -39,9 +50,35 @@ import org.xml.sax.helpers.DefaultHandler;
  * Even though this implementation supports W3C Schema you shouldn't use it for
  * that language but rather use JAXPValidator.
  * </p>
+ *
+ * <p>
+ * Parsers are reused between validations. If the parser is Xerces - like the
+ * one of the JDK before Java 9, whose internal classes can't be accessed from
+ * then on - the compiled grammars are kept in a grammar pool, so DTDs and
+ * schemas are only read once. Otherwise the content of the DTD set as schema
+ * source is read once. Changing the schema drops the grammars.
+ * </p>
+ *
+ * <p>
+ * Xerces pools W3C Schemas by their target namespace, so schemas are only
+ * pooled if they are set as schema sources. Without schema sources the
+ * locations given by the instances may differ for the same namespace and
+ * each validation reads the schemas again.
+ * </p>
+ *
+ * <p>
+ * DOM and StAX instances are validated against W3C Schemas without being
+ * serialized and parsed again: the validator walks the tree or reads the
+ * events directly.
+ * </p>
  */
 public class ParsingValidator extends Validator {
     private final Language language;
+    private final AtomicReference<SAXParser> idleParser = new AtomicReference<SAXParser>();
+    private SAXParserFactory factory;
+    private volatile boolean grammarPoolUnsupported;
+    private volatile Object grammarPool;
+    private volatile byte[] dtdContent;
 
     public ParsingValidator(Language language) {
         switch (language) {
@@ -55,41 +92,132 @@ public class ParsingValidator extends Validator {
         this.language = language;
     }
 
+    @Override
+    public void setSchemaURI(String uri) {
+        super.setSchemaURI(uri);
+        dropGrammars();
+    }
+
+    @Override
+    public void setSchemaSources(Source[] s) {
+        super.setSchemaSources(s);
+        dropGrammars();
+    }
+
     @Override
     public ValidationResult validateSchema() {
         throw new XMLUnitRuntimeException("Schema validation is not supported by"
                 + " ParsingValidator");
     }
 
+    /**
+     * Only W3C Schema validation walks DOM trees directly, DTD validation
+     * requires parsing.
+     */
+    @Override
+    public boolean validatesDomDirectly() {
+        return language == Language.XML_SCHEMA;
+    }
+
     @Override
     public ValidationResult validateInstance(Source source) {
-        SAXParser parser;
-        try {
-            parser = createParser();
-        } catch (ParserConfigurationException ex) {
-            throw new ConfigurationException(ex);
-        } catch (SAXException ex) {
-            throw new XMLUnitRuntimeException(ex);
+        return validateInstance(source, Integer.MAX_VALUE);
+    }
+
+    @Override
+    ValidationResult validateInstance(Source source, int maxRetainedProblems) {
+        if (language == Language.XML_SCHEMA && canValidateDirectly(source)) {
+            return validateDirectly(source, maxRetainedProblems);
+        }
+        SAXParser parser = idleParser.getAndSet(null);
+        if (parser == null) {
+            try {
+                parser = createParser();
+            } catch (ParserConfigurationException ex) {
+                throw new ConfigurationException(ex);
+            } catch (SAXException ex) {
+                throw new XMLUnitRuntimeException(ex);
+            }
         }
 
+        boolean reusable = false;
         try {
-            return doInstanceValidation(parser, source);
+            ValidationResult result = doInstanceValidation(parser, source, maxRetainedProblems);
+            reusable = true;
+            return result;
         } catch (SAXNotRecognizedException ex) {
             throw new ConfigurationException(ex);
         } catch (SAXNotSupportedException ex) {
             throw new ConfigurationException(ex);
         } catch (IOException ex) {
             throw new XMLUnitRuntimeException(ex);
+        } finally {
+            if (reusable) {
+                releaseParser(parser);
+            }
         }
     }
 
-    private ValidationResult doInstanceValidation(SAXParser parser, Source source)
+    /**
+     * Whether a javax.xml.validation.Validator can read the source without
+     * it being serialized.
+     */
+    private static boolean canValidateDirectly(Source source) {
+        if (source instanceof StAXSource) {
+            return true;
+        }
+        if (!(source instanceof DOMSource) || ((DOMSource) source).getNode() == null) {
+            return false;
+        }
+        Node n = ((DOMSource) source).getNode();
+        Node element = n instanceof Document ? ((Document) n).getDocumentElement() : n;
+        // DOM level 1 nodes carry no namespace information, a parser has to
+        // take care of that
+        return element != null && element.getNodeType() == Node.ELEMENT_NODE
+                && element.getLocalName() != null;
+    }
+
+    private ValidationResult validateDirectly(Source source, int maxRetainedProblems) {
+        ValidationHandler handler = newValidationHandler(maxRetainedProblems);
+        try {
+            Source[] sources = getSchemaSources();
+            Schema schema = sources.length == 0
+                    // use the schema locations given by the instance
+                    ? SchemaFactory.newInstance(language.getNsUri()).newSchema()
+                    : SchemaCache.getSchema(language.getNsUri(), null, sources);
+            javax.xml.validation.Validator validator = schema.newValidator();
+            validator.setErrorHandler(handler);
+            validator.validate(StAXReader.adapt(source));
+        } catch (SAXParseException e) {
+            handler.exceptionThrown(e);
+        } catch (SAXException e) {
+            throw new XMLUnitRuntimeException(e);
+        } catch (IOException e) {
+            throw new XMLUnitRuntimeException(e);
+        }
+        return handler.getResult();
+    }
+
+    private void releaseParser(SAXParser parser) {
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            // JAXP 1.2 implementation, can't be reused
+            return;
+        }
+        idleParser.set(parser);
+    }
+
+    private ValidationResult doInstanceValidation(SAXParser parser, Source source, int maxRetainedProblems)
             throws SAXNotRecognizedException, SAXNotSupportedException, IOException {
         if (language == Language.XML_SCHEMA) {
             parser.setProperty(Properties.SCHEMA_LANGUAGE, language.getNsUri());
         }
         final Source[] sources = getSchemaSources();
-        Handler handler = new Handler();
+        if (language == Language.XML_DTD || sources.length != 0) {
+            useGrammarPool(parser);
+        }
+        Handler handler = new Handler(newValidationHandler(maxRetainedProblems));
         if (sources.length != 0) {
             if (language == Language.XML_SCHEMA) {
                 InputSource[] schemaSource = new InputSource[sources.length];
@@ -105,20 +233,107 @@ public class ParsingValidator extends Validator {
         return handler.getResult();
     }
 
-    private SAXParser createParser() throws ParserConfigurationException, SAXException {
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        factory.setNamespaceAware(true);
-        factory.setValidating(true);
+    private synchronized SAXParser createParser() throws ParserConfigurationException, SAXException {
+        if (factory == null) {
+            factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.setValidating(true);
+        }
         SAXParser parser = factory.newSAXParser();
         return parser;
     }
 
+    /**
+     * Makes the parser use this validator's grammar pool if it is a Xerces
+     * parser whose grammar pool can be created.
+     */
+    private void useGrammarPool(SAXParser parser) throws SAXNotRecognizedException, SAXNotSupportedException {
+        if (grammarPoolUnsupported) {
+            return;
+        }
+        Object pool = grammarPool;
+        if (pool == null) {
+            try {
+                pool = newGrammarPool(parser.getXMLReader().getClass());
+            } catch (SAXException e) {
+                throw new ConfigurationException(e);
+            }
+            if (pool == null) {
+                // fall back to caching the DTD's content
+                grammarPoolUnsupported = true;
+                return;
+            }
+            grammarPool = pool;
+        }
+        parser.setProperty(Properties.GRAMMAR_POOL, pool);
+    }
+
+    /**
+     * Creates the grammar pool matching the given Xerces XMLReader.
+     *
+     * @return null if the reader isn't Xerces or its grammar pool can't be
+     *         accessed - the JDK's internal one can't from Java 9 on
+     */
+    private static Object newGrammarPool(Class<?> readerClass) {
+        String name = readerClass.getName();
+        String poolClass;
+        if (name.startsWith(Properties.JDK_XERCES_PACKAGE)) {
+            poolClass = Properties.JDK_XERCES_PACKAGE + Properties.GRAMMAR_POOL_CLASS;
+        } else if (name.startsWith(Properties.XERCES_PACKAGE)) {
+            poolClass = Properties.XERCES_PACKAGE + Properties.GRAMMAR_POOL_CLASS;
+        } else {
+            return null;
+        }
+        try {
+            return Class.forName(poolClass, true, readerClass.getClassLoader())
+                    .getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InstantiationException e) {
+            throw new ConfigurationException(e);
+        } catch (InvocationTargetException e) {
+            throw new ConfigurationException(e.getCause());
+        }
+    }
+
+    private void dropGrammars() {
+        grammarPool = null;
+        dtdContent = null;
+    }
+
+    /**
+     * The DTD at the given system id, read only once unless the parser
+     * caches the grammar itself.
+     */
+    private InputSource getDtd(String systemId) {
+        if (!grammarPoolUnsupported) {
+            return new InputSource(systemId);
+        }
+        byte[] content = dtdContent;
+        if (content == null) {
+            try {
+                content = CompilationCache.readFully(new URL(systemId).openStream());
+            } catch (IOException e) {
+                // let the parser report the problem
+                return new InputSource(systemId);
+            }
+            dtdContent = content;
+        }
+        InputSource dtd = new InputSource(new ByteArrayInputStream(content));
+        dtd.setSystemId(systemId);
+        return dtd;
+    }
+
     private void parse(Source source, SAXParser parser, Handler handler) throws IOException {
         InputSource input = Convert.toInputSource(source);
         try {
             parser.parse(input, handler);
         } catch (SAXParseException e) {
-            handler.error(e);
+            handler.exceptionThrown(e);
         } catch (SAXException e) {
             throw new XMLUnitRuntimeException(e);
         }
@@ -130,27 +345,44 @@ public class ParsingValidator extends Validator {
 
         static final String SCHEMA_SOURCE =
                 "http://java.sun.com/xml/jaxp/properties/schemaSource";
+
+        static final String GRAMMAR_POOL =
+                "http://apache.org/xml/properties/internal/grammar-pool";
+
+        static final String JDK_XERCES_PACKAGE = "com.sun.org.apache.xerces.internal.";
+
+        static final String XERCES_PACKAGE = "org.apache.xerces.";
+
+        static final String GRAMMAR_POOL_CLASS = "util.XMLGrammarPoolImpl";
     }
 
     private class Handler extends DefaultHandler {
-        private final ValidationHandler v = new ValidationHandler();
+        private final ValidationHandler v;
         private String systemId;
 
+        private Handler(ValidationHandler v) {
+            this.v = v;
+        }
+
         @Override
-        public void error(SAXParseException e) {
+        public void error(SAXParseException e) throws SAXParseException {
             v.error(e);
         }
 
         @Override
-        public void fatalError(SAXParseException e) {
+        public void fatalError(SAXParseException e) throws SAXParseException {
             v.fatalError(e);
         }
 
         @Override
-        public void warning(SAXParseException e) {
+        public void warning(SAXParseException e) throws SAXParseException {
             v.warning(e);
         }
 
+        private void exceptionThrown(SAXParseException e) {
+            v.exceptionThrown(e);
+        }
+
         private void setSchemaSystemId(String id) {
             systemId = id;
         }
@@ -158,7 +390,7 @@ public class ParsingValidator extends Validator {
         @Override
         public InputSource resolveEntity(String publicId, String systemId) throws IOException, SAXException {
             if (this.systemId != null && (getSchemaURI() == null || getSchemaURI().equals(publicId))) {
-                return new InputSource(this.systemId);
+                return getDtd(this.systemId);
             }
             return super.resolveEntity(publicId, systemId);
         }
@@ -0,0 +1,159 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import java.util.Arrays;
+
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+
+import net.sf.xmlunit.util.CompilationCache;
+import net.sf.xmlunit.util.Predicate;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Compiled schemas shared by all {@link JAXPValidator}s of the JVM.
+ *
+ * <p>
+ * A schema is identified by its language, the factory compiling it and the
+ * system ids of its sources - or for streams their content and system id.
+ * Schemas with other sources, like DOM sources, are compiled each time. The least
+ * recently used schemas are dropped once the cache holds {@link #SIZE} of
+ * them.
+ * </p>
+ *
+ * <p>
+ * Schemas read from a system id aren't reloaded when the document behind it
+ * changes, use {@link #invalidate} or {@link #clear} in that case.
+ * </p>
+ */
+public final class SchemaCache {
+    public static final int SIZE = 64;
+
+    private static final CompilationCache<Key, Schema> SCHEMAS = new CompilationCache<Key, Schema>(SIZE);
+
+    private SchemaCache() {
+    }
+
+    /**
+     * Drops all compiled schemas and resets the statistics.
+     */
+    public static void clear() {
+        SCHEMAS.clear();
+    }
+
+    /**
+     * Drops all compiled schemas one of whose sources has the given system
+     * id.
+     */
+    public static void invalidate(final String systemId) {
+        SCHEMAS.removeAll(new Predicate<Key>() {
+            public boolean matches(Key key) {
+                return Arrays.asList(key.ids).contains(systemId);
+            }
+        });
+    }
+
+    /**
+     * The number of compiled schemas held.
+     */
+    public static int size() {
+        return SCHEMAS.size();
+    }
+
+    /**
+     * How often a compiled schema has been reused.
+     */
+    public static long getHitCount() {
+        return SCHEMAS.getHitCount();
+    }
+
+    /**
+     * How often a cacheable schema had to be compiled.
+     */
+    public static long getMissCount() {
+        return SCHEMAS.getMissCount();
+    }
+
+    /**
+     * Returns the compiled schema, compiling it with the given factory - or
+     * a new factory for the language if it is null - unless it has been
+     * compiled before.
+     */
+    static Schema getSchema(String language, SchemaFactory factory, Source[] sources) throws SAXException {
+        Object[] ids = new Object[sources.length];
+        Source[] toCompile = new Source[sources.length];
+        boolean cacheable = true;
+        for (int i = 0; i < sources.length; i++) {
+            CompilationCache.Identified source = CompilationCache.identify(sources[i]);
+            ids[i] = source.getId();
+            toCompile[i] = source.getSource();
+            cacheable &= ids[i] != null;
+        }
+        if (!cacheable) {
+            return compile(language, factory, toCompile);
+        }
+
+        Key key = new Key(language, factory, ids);
+        Schema schema = SCHEMAS.get(key);
+        if (schema == null) {
+            schema = compile(language, factory, toCompile);
+            SCHEMAS.put(key, schema);
+        }
+        return schema;
+    }
+
+    private static Schema compile(String language, SchemaFactory factory, Source[] sources)
+            throws SAXException {
+        if (factory == null) {
+            return SchemaFactory.newInstance(language).newSchema(sources);
+        }
+        // SchemaFactory isn't thread-safe
+        synchronized (factory) {
+            return factory.newSchema(sources);
+        }
+    }
+
+    private static final class Key {
+        private final String language;
+        // configured factories may resolve differently, so they are
+        // compared by identity
+        private final SchemaFactory factory;
+        private final Object[] ids;
+
+        private Key(String language, SchemaFactory factory, Object[] ids) {
+            this.language = language;
+            this.factory = factory;
+            this.ids = ids;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return factory == other.factory
+                    && language.equals(other.language)
+                    && Arrays.equals(ids, other.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return language.hashCode() * 31 + Arrays.hashCode(ids);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stax.StAXSource;
+
+import net.sf.xmlunit.util.EventEmittingReader;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * XMLReader that emits the events of a StAX stream as SAX events instead of
+ * parsing its input.
+ *
+ * <p>
+ * Not every javax.xml.validation implementation accepts a StAXSource, all of
+ * them accept a SAXSource using this reader. The stream can only be read
+ * once.
+ * </p>
+ */
+final class StAXReader extends EventEmittingReader {
+    private final XMLStreamReader stream;
+
+    StAXReader(XMLStreamReader stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * Replaces a StAXSource based on an XMLStreamReader by a SAXSource that
+     * reads the same events, other sources are returned unchanged.
+     */
+    static Source adapt(Source source) {
+        if (source instanceof StAXSource && ((StAXSource) source).getXMLStreamReader() != null) {
+            XMLStreamReader stream = ((StAXSource) source).getXMLStreamReader();
+            return new SAXSource(new StAXReader(stream), new InputSource(source.getSystemId()));
+        }
+        return source;
+    }
+
+    @Override
+    public void parse(InputSource input) throws SAXException {
+        ContentHandler h = getTargetContentHandler();
+        h.setDocumentLocator(new StreamLocator());
+        try {
+            h.startDocument();
+            int depth = 0;
+            int event = stream.getEventType();
+            while (true) {
+                switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    startElement(h);
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    endElement(h);
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    h.characters(stream.getTextCharacters(), stream.getTextStart(), stream.getTextLength());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    h.processingInstruction(stream.getPITarget(), stream.getPIData());
+                    break;
+                default:
+                    // comments and the DTD aren't reported
+                    break;
+                }
+                // a stream positioned at an element ends with that element
+                if (event == XMLStreamConstants.END_DOCUMENT
+                        || (depth == 0 && event == XMLStreamConstants.END_ELEMENT)
+                        || !stream.hasNext()) {
+                    break;
+                }
+                event = stream.next();
+            }
+            h.endDocument();
+        } catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+    }
+
+    private void startElement(ContentHandler h) throws SAXException {
+        for (int i = 0; i < stream.getNamespaceCount(); i++) {
+            h.startPrefixMapping(nonNull(stream.getNamespacePrefix(i)), nonNull(stream.getNamespaceURI(i)));
+        }
+        AttributesImpl attributes = new AttributesImpl();
+        for (int i = 0; i < stream.getAttributeCount(); i++) {
+            String prefix = stream.getAttributePrefix(i);
+            String localName = stream.getAttributeLocalName(i);
+            attributes.addAttribute(nonNull(stream.getAttributeNamespace(i)), localName,
+                    qName(prefix, localName), stream.getAttributeType(i), stream.getAttributeValue(i));
+        }
+        h.startElement(nonNull(stream.getNamespaceURI()), stream.getLocalName(),
+                qName(stream.getPrefix(), stream.getLocalName()), attributes);
+    }
+
+    private void endElement(ContentHandler h) throws SAXException {
+        h.endElement(nonNull(stream.getNamespaceURI()), stream.getLocalName(),
+                qName(stream.getPrefix(), stream.getLocalName()));
+        for (int i = 0; i < stream.getNamespaceCount(); i++) {
+            h.endPrefixMapping(nonNull(stream.getNamespacePrefix(i)));
+        }
+    }
+
+    private static String qName(String prefix, String localName) {
+        return prefix == null || prefix.length() == 0 ? localName : prefix + ":" + localName;
+    }
+
+    private static String nonNull(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * Reports the position of the stream.
+     */
+    private final class StreamLocator implements Locator {
+        public String getPublicId() {
+            Location l = stream.getLocation();
+            return l == null ? null : l.getPublicId();
+        }
+
+        public String getSystemId() {
+            Location l = stream.getLocation();
+            return l == null ? null : l.getSystemId();
+        }
+
+        public int getLineNumber() {
+            Location l = stream.getLocation();
+            return l == null ? -1 : l.getLineNumber();
+        }
+
+        public int getColumnNumber() {
+            Location l = stream.getLocation();
+            return l == null ? -1 : l.getColumnNumber();
+        }
+    }
+}
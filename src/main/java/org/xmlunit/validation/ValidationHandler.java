@@ -13,8 +13,8 @@
  */
 package org.xmlunit.validation;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 
 import org.xml.sax.ErrorHandler;
@@ -22,37 +22,110 @@ import org.xml.sax.SAXParseException;
 
 /**
  * ErrorHandler collecting parser exceptions as ValidationProblems
+ *
+ * <p>
+ * Depending on the options of the Validator the parse is aborted at the first
+ * error or once a number of errors has been found, aborting throws a
+ * SAXParseException that is ignored when it is passed back to {@link #error}.
+ * Warnings never abort the parse, so a result that is valid covers the whole
+ * instance.
+ * </p>
  */
 final class ValidationHandler implements ErrorHandler {
-    private final List<ValidationProblem> problems = new LinkedList<ValidationProblem>();
+    private final List<ValidationProblem> problems = new ArrayList<ValidationProblem>();
+    private final boolean failFast;
+    private final int maxProblems;
+    private final int maxRetainedProblems;
+    private final List<ValidationProblemListener> listeners;
     private boolean valid = true;
+    private int errorCount;
+    private int problemCount;
     // fatal errors are re-thrown by the parser
     private SAXParseException lastFatalError = null;
 
+    ValidationHandler() {
+        this(false, Integer.MAX_VALUE, Integer.MAX_VALUE, Collections.<ValidationProblemListener> emptyList());
+    }
+
+    /**
+     * @param maxRetainedProblems
+     *            the number of problems the result holds, further problems
+     *            are only counted and passed to the listeners
+     */
+    ValidationHandler(boolean failFast, int maxProblems, int maxRetainedProblems,
+            List<ValidationProblemListener> listeners) {
+        this.failFast = failFast;
+        this.maxProblems = maxProblems;
+        this.maxRetainedProblems = maxRetainedProblems;
+        this.listeners = listeners;
+    }
+
     @Override
-    public void error(SAXParseException e) {
-        if (e != lastFatalError) {
+    public void error(SAXParseException e) throws SAXParseException {
+        if (e != lastFatalError && !(e instanceof Abort)) {
             valid = false;
-            ValidationProblem problem = ValidationProblem.fromException(e, ValidationProblem.ProblemType.ERROR);
-            problems.add(problem);
+            add(ValidationProblem.fromException(e, ValidationProblem.ProblemType.ERROR), e);
+        }
+    }
+
+    /**
+     * Records an exception the validation has ended with unless it has been
+     * reported before or is the result of aborting.
+     */
+    void exceptionThrown(SAXParseException e) {
+        if (e != lastFatalError && !(e instanceof Abort)) {
+            valid = false;
+            record(ValidationProblem.fromException(e, ValidationProblem.ProblemType.ERROR));
         }
     }
 
     @Override
-    public void fatalError(SAXParseException e) {
+    public void fatalError(SAXParseException e) throws SAXParseException {
         valid = false;
         lastFatalError = e;
-        ValidationProblem problem = ValidationProblem.fromException(e, ValidationProblem.ProblemType.ERROR);
-        problems.add(problem);
+        add(ValidationProblem.fromException(e, ValidationProblem.ProblemType.ERROR), e);
     }
 
     @Override
-    public void warning(SAXParseException e) {
-        ValidationProblem problem = ValidationProblem.fromException(e, ValidationProblem.ProblemType.WARNING);
-        problems.add(problem);
+    public void warning(SAXParseException e) throws SAXParseException {
+        add(ValidationProblem.fromException(e, ValidationProblem.ProblemType.WARNING), e);
+    }
+
+    private void add(ValidationProblem problem, SAXParseException e) throws SAXParseException {
+        record(problem);
+        // a fatal error ends the parse anyway
+        if (e != lastFatalError && problem.getType() == ValidationProblem.ProblemType.ERROR
+                && (failFast || errorCount >= maxProblems)) {
+            throw new Abort(e);
+        }
+    }
+
+    private void record(ValidationProblem problem) {
+        if (problem.getType() == ValidationProblem.ProblemType.ERROR) {
+            errorCount++;
+        }
+        problemCount++;
+        if (problems.size() < maxRetainedProblems) {
+            problems.add(problem);
+        }
+        for (ValidationProblemListener l : listeners) {
+            l.problemFound(problem);
+        }
     }
 
     ValidationResult getResult() {
-        return new ValidationResult(valid, Collections.unmodifiableList(problems));
+        return new ValidationResult(valid, Collections.unmodifiableList(problems), problemCount);
+    }
+
+    /**
+     * Thrown to stop the parser.
+     */
+    private static final class Abort extends SAXParseException {
+        private static final long serialVersionUID = 1L;
+
+        private Abort(SAXParseException cause) {
+            super("Validation aborted: " + cause.getMessage(), cause.getPublicId(), cause.getSystemId(),
+                    cause.getLineNumber(), cause.getColumnNumber(), cause);
+        }
     }
 }
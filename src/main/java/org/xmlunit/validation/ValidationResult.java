@@ -14,14 +14,22 @@
 package org.xmlunit.validation;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 
 public class ValidationResult {
     private final boolean valid;
     private final Iterable<ValidationProblem> problems;
+    // negative if all problems are retained
+    private final int problemCount;
 
     public ValidationResult(boolean valid, Iterable<ValidationProblem> problems) {
+        this(valid, problems, -1);
+    }
+
+    ValidationResult(boolean valid, Iterable<ValidationProblem> problems, int problemCount) {
         this.valid = valid;
         this.problems = problems;
+        this.problemCount = problemCount;
     }
 
     /**
@@ -40,4 +48,19 @@ public class ValidationResult {
         }
         return problems;
     }
+
+    /**
+     * The number of problems that have been found, including those the
+     * result doesn't hold.
+     */
+    int getProblemCount() {
+        if (problemCount >= 0) {
+            return problemCount;
+        }
+        int count = 0;
+        for (Iterator<ValidationProblem> it = getProblems().iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        return count;
+    }
 }
@@ -13,6 +13,9 @@
  */
 package org.xmlunit.validation;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
 import javax.xml.transform.Source;
 
 /**
@@ -22,6 +25,11 @@ import javax.xml.transform.Source;
 public abstract class Validator {
     private String schemaURI;
     private Source[] sourceLocations;
+    private volatile boolean failFast;
+    private volatile int maxProblems = Integer.MAX_VALUE;
+    private volatile boolean retainProblems = true;
+    private final List<ValidationProblemListener> problemListeners =
+            new CopyOnWriteArrayList<ValidationProblemListener>();
 
     /**
      * The URI (or for example the System ID in case of a DTD) that identifies
@@ -58,6 +66,71 @@ public abstract class Validator {
         return sourceLocations == null ? new Source[0] : sourceLocations;
     }
 
+    /**
+     * Whether instance validation should stop at the first error, defaults
+     * to false.
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Stop instance validation once the given number of errors has been
+     * found, defaults to no limit.
+     *
+     * <p>
+     * Warnings don't count, an instance is only reported valid if it has
+     * been validated completely.
+     * </p>
+     */
+    public void setMaxProblems(int maxProblems) {
+        if (maxProblems < 1) {
+            throw new IllegalArgumentException("maxProblems must be positive");
+        }
+        this.maxProblems = maxProblems;
+    }
+
+    /**
+     * Whether the results of instance validation hold the problems found,
+     * defaults to true.
+     *
+     * <p>
+     * Problems that are only passed to {@link #addProblemListener listeners}
+     * don't accumulate in memory.
+     * </p>
+     */
+    public void setRetainProblems(boolean retainProblems) {
+        this.retainProblems = retainProblems;
+    }
+
+    /**
+     * Registers a listener that is notified of the problems found by
+     * instance validation as soon as they are found.
+     */
+    public void addProblemListener(ValidationProblemListener l) {
+        problemListeners.add(l);
+    }
+
+    /**
+     * Creates the ErrorHandler for an instance validation whose result holds
+     * at most the given number of problems.
+     */
+    ValidationHandler newValidationHandler(int maxRetainedProblems) {
+        return new ValidationHandler(failFast, maxProblems, retainProblems ? maxRetainedProblems : 0,
+                problemListeners);
+    }
+
+    /**
+     * Applies this Validator's options for instance validation to another
+     * Validator.
+     */
+    void copyOptionsTo(Validator other) {
+        other.failFast = failFast;
+        other.maxProblems = maxProblems;
+        other.retainProblems = retainProblems;
+        other.problemListeners.addAll(problemListeners);
+    }
+
     /**
      * Validates a schema.
      * 
@@ -72,6 +145,61 @@ public abstract class Validator {
      */
     public abstract ValidationResult validateInstance(Source instance);
 
+    /**
+     * Validates an instance against the schema, the result holds at most the
+     * given number of problems.
+     *
+     * <p>
+     * Used by {@link BatchValidation}, Validators that don't support the
+     * limit hold all problems.
+     * </p>
+     */
+    ValidationResult validateInstance(Source instance, int maxRetainedProblems) {
+        return validateInstance(instance);
+    }
+
+    /**
+     * Whether {@link #validateInstance} validates namespace aware DOM
+     * instances by walking the tree rather than serializing and parsing them
+     * again, defaults to false.
+     */
+    public boolean validatesDomDirectly() {
+        return false;
+    }
+
+    /**
+     * Validates many instances against the schema, concurrently if the
+     * schema supports it.
+     *
+     * <p>
+     * Use {@link BatchValidation} directly to stop at the first invalid
+     * instance, limit the retained problems or the number of threads.
+     * </p>
+     */
+    public BatchValidationResult validateInstances(Iterable<? extends Source> instances) {
+        return new BatchValidation(this, instances).validate();
+    }
+
+    /**
+     * A Validator with the same schema that may be used by several threads
+     * concurrently or null if there is no such Validator.
+     *
+     * <p>
+     * Used by {@link BatchValidation}, which validates one instance after the
+     * other if this returns null.
+     * </p>
+     *
+     * <p>
+     * The schema of the returned Validator may be fixed - like the one of a
+     * {@link CompiledSchemaValidator} whose {@link #setSchemaURI} and
+     * {@link #setSchemaSources} throw an UnsupportedOperationException -
+     * so callers must only use it to validate instances.
+     * </p>
+     */
+    protected Validator getThreadSafeValidator() {
+        return null;
+    }
+
     /**
      * Factory that obtains a Validator instance based on the schema language.
      * 
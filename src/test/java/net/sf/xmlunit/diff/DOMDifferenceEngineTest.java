@@ -273,4 +273,18 @@ public class DOMDifferenceEngineTest extends DifferenceEngineTestAbstract {
 		assertThat(differences).hasSize(1);
 		verify(stoppingListener, times(1)).comparisonPerformed(any(Comparison.class), any(ComparisonResult.class));
 	}
+
+	@Test
+	public void should_compare_values_with_normalized_whitespace() throws Exception {
+		// given
+		String control = "<a attr=\" some  value\">some\n\t text<!-- a  comment --><?pi some  data?></a>";
+		String test = "<a attr=\"some value\"> some text <!--a comment--><?pi some data ?></a>";
+		engine.setNormalizeWhitespace(true);
+
+		// when
+		List<Comparison> differences = findDifferences(control, test);
+
+		// then
+		assertThat(differences).isEmpty();
+	}
 }
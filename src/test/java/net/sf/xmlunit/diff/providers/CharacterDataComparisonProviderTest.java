@@ -218,13 +218,48 @@ public class CharacterDataComparisonProviderTest {
 		assertThat(differences.get(0).getTestDetails().getValue()).isEqualTo("foo");
 	}
 
+	@Test
+	public void should_detect_no_differences_in_text_nodes_with_normalized_whitespace() {
+		// given
+		Text control = document.createTextNode("  some\n\ttext ");
+		Text test = document.createTextNode("some text");
+
+		// when
+		List<Comparison> differences = findCharacterDataDifferences(control, test, true);
+
+		// then
+		assertThat(differences).hasSize(0);
+	}
+
+	@Test
+	public void should_report_normalized_text_of_different_text_nodes() {
+		// given
+		Text control = document.createTextNode("  some\n\ttext ");
+		Text test = document.createTextNode("some  other text");
+
+		// when
+		List<Comparison> differences = findCharacterDataDifferences(control, test, true);
+
+		// then
+		assertThat(differences).hasSize(1);
+		assertThat(differences.get(0).getType()).isEqualTo(ComparisonType.TEXT_VALUE);
+		assertThat(String.valueOf(differences.get(0).getControlDetails().getValue())).isEqualTo("some text");
+		assertThat(String.valueOf(differences.get(0).getTestDetails().getValue())).isEqualTo("some other text");
+	}
+
 	private List<Comparison> findCharacterDataDifferences(CharacterData controlText, CharacterData testText) {
+		return findCharacterDataDifferences(controlText, testText, false);
+	}
+
+	private List<Comparison> findCharacterDataDifferences(
+	        CharacterData controlText, CharacterData testText, boolean normalizeWhitespace) {
 		ListingComparator comparator = new ListingComparator();
 
 		NodeAndXpath<CharacterData> control = new NodeAndXpath<CharacterData>(controlText, new XPathContext());
 		NodeAndXpath<CharacterData> test = new NodeAndXpath<CharacterData>(testText, new XPathContext());
 
-		Comparisons comparisons = new CharacterDataComparisonProvider().provideComparisons(control, test);
+		Comparisons comparisons = new CharacterDataComparisonProvider(normalizeWhitespace)
+		        .provideComparisons(control, test);
 		comparator.executeComparisons(comparisons);
 		return comparator.getDifferences();
 	}
@@ -90,15 +90,34 @@ public class ProcInstrComparisonProviderTest {
 		assertThat(differences).hasSize(0);
 	}
 
+	@Test
+	public void should_detect_no_differences_in_data_with_normalized_whitespace() throws Exception {
+		// given
+		ProcessingInstruction controlInstr = document.createProcessingInstruction("down", " up\n\t down ");
+		ProcessingInstruction testInstr = document.createProcessingInstruction("down", "up down");
+
+		// when
+		List<Comparison> differences = findProcessingInstrDifferences(controlInstr, testInstr, true);
+
+		// then
+		assertThat(differences).hasSize(0);
+	}
+
 	private List<Comparison> findProcessingInstrDifferences(
 	        ProcessingInstruction controlInstr, ProcessingInstruction testInstr) {
+		return findProcessingInstrDifferences(controlInstr, testInstr, false);
+	}
+
+	private List<Comparison> findProcessingInstrDifferences(
+	        ProcessingInstruction controlInstr, ProcessingInstruction testInstr, boolean normalizeWhitespace) {
 
 		ListingComparator comparator = new ListingComparator();
 
 		NodeAndXpath<ProcessingInstruction> control = NodeAndXpath.from(controlInstr, new XPathContext());
 		NodeAndXpath<ProcessingInstruction> test = NodeAndXpath.from(testInstr, new XPathContext());
 
-		Comparisons comparisons = new ProcInstrComparisonProvider().provideComparisons(control, test);
+		Comparisons comparisons = new ProcInstrComparisonProvider(normalizeWhitespace)
+		        .provideComparisons(control, test);
 		comparator.executeComparisons(comparisons);
 		return comparator.getDifferences();
 	}
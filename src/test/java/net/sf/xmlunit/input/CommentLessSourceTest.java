@@ -17,6 +17,7 @@ import static org.fest.assertions.api.Assertions.assertThat;
 
 import java.io.StringReader;
 
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.util.Convert;
@@ -49,4 +50,21 @@ public class CommentLessSourceTest {
         assertThat(child.getChildNodes().getLength()).isEqualTo(0);
     }
 
+    @Test
+    public void should_merge_text_separated_by_comments_and_keep_original() {
+        // given
+        Document original = Convert.toDocument(new StreamSource(new StringReader(
+                "<foo>a<!-- 1 -->b<!-- 2 -->c<bar><!-- 3 --></bar></foo>")));
+
+        // when
+        CommentLessSource cls = new CommentLessSource(new DOMSource(original));
+        Node foo = ((Document) cls.getNode()).getDocumentElement();
+
+        // then
+        assertThat(foo.getChildNodes().getLength()).isEqualTo(2);
+        assertThat(foo.getFirstChild().getNodeValue()).isEqualTo("abc");
+        assertThat(foo.getLastChild().getChildNodes().getLength()).isEqualTo(0);
+        assertThat(original.getDocumentElement().getChildNodes().getLength()).isEqualTo(6);
+    }
+
 }
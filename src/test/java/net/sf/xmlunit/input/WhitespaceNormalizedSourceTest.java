@@ -4,6 +4,7 @@ import static org.fest.assertions.api.Assertions.assertThat;
 
 import java.io.StringReader;
 
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.util.Convert;
@@ -48,4 +49,19 @@ public class WhitespaceNormalizedSourceTest {
         // then
         assertThat(string).isEqualTo(XML_WITHOUT_WHITESPACE);
     }
+
+    @Test
+    public void should_not_modify_document_of_DOM_source() throws Exception {
+        // given
+        Document original = Convert.toDocument(new StreamSource(new StringReader(XML_WITH_WHITESPACE)));
+
+        // when
+        WhitespaceNormalizedSource wns = new WhitespaceNormalizedSource(new DOMSource(original));
+        Document doc = Convert.toDocument(wns);
+
+        // then
+        assertThat(doc).isNotSameAs(original);
+        assertThat(DocumentUtils.documentToString(doc)).isEqualTo(XML_WITHOUT_WHITESPACE);
+        assertThat(DocumentUtils.documentToString(original)).isEqualTo(XML_WITH_WHITESPACE);
+    }
 }
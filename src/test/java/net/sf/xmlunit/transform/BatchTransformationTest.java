@@ -0,0 +1,81 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.transform;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.transform.Source;
+
+import net.sf.xmlunit.TestResources;
+
+import org.junit.After;
+import org.junit.Test;
+import org.xmlunit.builder.Input;
+
+public class BatchTransformationTest {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @After
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    private BatchTransformation dogs(int count) throws Exception {
+        List<Source> sources = new ArrayList<Source>();
+        for (int i = 0; i < count; i++) {
+            sources.add(Input.fromFile(TestResources.DOG_FILE.getFile()).build());
+        }
+        BatchTransformation batch = new BatchTransformation(sources);
+        batch.setStylesheet(Input.fromFile(TestResources.ANIMAL_XSL.getFile()).build());
+        batch.setExecutor(executor);
+        batch.setThreads(1);
+        batch.setMaxPendingResults(2);
+        return batch;
+    }
+
+    @Test
+    public void should_release_transformers_when_batch_is_complete() throws Exception {
+        // given
+        BatchTransformation.Results results = dogs(3).transformToDocuments();
+
+        // when
+        List<String> elements = new ArrayList<String>();
+        while (results.hasNext()) {
+            elements.add(results.next().getDocument().getDocumentElement().getTagName());
+        }
+
+        // then
+        assertThat(elements).containsExactly("dog", "dog", "dog");
+        assertThat(results.getIdleTransformers()).isZero();
+    }
+
+    @Test
+    public void should_release_transformers_when_results_are_closed() throws Exception {
+        // given
+        BatchTransformation.Results results = dogs(5).transformToDocuments();
+        results.next();
+        results.next();
+
+        // when
+        results.close();
+
+        // then
+        assertThat(results.getIdleTransformers()).isZero();
+    }
+}
@@ -17,9 +17,20 @@ import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
 import java.io.IOException;
+import java.io.StringReader;
 
 import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.TestResources;
 
@@ -31,8 +42,14 @@ import org.xmlunit.builder.Input;
 public class TransformationTest {
     private Transformation transformation;
 
+    private static final String IDENTITY_XSL = "<xsl:stylesheet version=\"1.0\""
+            + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+            + "<xsl:template match=\"/\"><xsl:copy-of select=\".\"/></xsl:template>"
+            + "</xsl:stylesheet>";
+
     @Before
     public void createTransformation() throws IOException {
+        Transformation.clearStylesheetCache();
         transformation = new Transformation(Input.fromFile(TestResources.DOG_FILE.getFile()).build());
         transformation.setStylesheet(Input.fromFile(TestResources.ANIMAL_XSL.getFile()).build());
     }
@@ -54,4 +71,110 @@ public class TransformationTest {
         assertThat(transformation.transformToString(), not("<?xml version=\"1.0\" encoding=\"UTF-8\"?><dog/>"));
     }
 
+    @Test
+    public void should_compile_stylesheet_with_same_system_id_once() throws Exception {
+        // given
+        TransformerFactory factory = spy(TransformerFactory.newInstance());
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            Transformation t = new Transformation(Input.fromFile(TestResources.DOG_FILE.getFile()).build());
+            t.setStylesheet(Input.fromFile(TestResources.ANIMAL_XSL.getFile()).build());
+            t.setFactory(factory);
+            assertEquals("dog", t.transformToDocument().getDocumentElement().getTagName());
+        }
+
+        // then
+        verify(factory, times(1)).newTemplates(any(Source.class));
+    }
+
+    @Test
+    public void should_compile_streamed_stylesheet_with_same_content_once() throws Exception {
+        // given
+        TransformerFactory factory = spy(TransformerFactory.newInstance());
+
+        // when
+        for (int i = 0; i < 2; i++) {
+            Transformation t = new Transformation(Input.fromMemory("<a><b/></a>").build());
+            t.setStylesheet(Input.fromMemory(IDENTITY_XSL).build());
+            t.setFactory(factory);
+            assertEquals("a", t.transformToDocument().getDocumentElement().getTagName());
+        }
+
+        // then
+        verify(factory, times(1)).newTemplates(any(Source.class));
+    }
+
+    @Test
+    public void should_not_mix_up_streamed_stylesheets_with_same_system_id() throws Exception {
+        // given
+        Transformation first = new Transformation(Input.fromMemory("<a/>").build());
+        first.setStylesheet(new StreamSource(new StringReader(stylesheetWriting("one")), "file:/tmp/base/"));
+        Transformation second = new Transformation(Input.fromMemory("<a/>").build());
+        second.setStylesheet(new StreamSource(new StringReader(stylesheetWriting("two")), "file:/tmp/base/"));
+
+        // when
+        Document firstResult = first.transformToDocument();
+        Document secondResult = second.transformToDocument();
+
+        // then
+        assertEquals("one", firstResult.getDocumentElement().getTagName());
+        assertEquals("two", secondResult.getDocumentElement().getTagName());
+    }
+
+    @Test
+    public void should_compile_stylesheet_again_for_other_factory_of_same_class() throws Exception {
+        // given
+        TransformerFactory factory = spy(TransformerFactory.newInstance());
+        TransformerFactory otherFactory = spy(TransformerFactory.newInstance());
+        transformation.setFactory(factory);
+        transformation.transformToString();
+
+        // when
+        transformation.setFactory(otherFactory);
+        transformation.transformToString();
+
+        // then
+        verify(factory, times(1)).newTemplates(any(Source.class));
+        verify(otherFactory, times(1)).newTemplates(any(Source.class));
+    }
+
+    @Test
+    public void should_compile_stylesheet_again_for_other_resolver() throws Exception {
+        // given
+        TransformerFactory factory = spy(TransformerFactory.newInstance());
+        transformation.setFactory(factory);
+        transformation.transformToString();
+        URIResolver resolver = factory.getURIResolver();
+
+        // when
+        factory.setURIResolver(new URIResolver() {
+            public Source resolve(String href, String base) {
+                return null;
+            }
+        });
+        transformation.transformToString();
+        factory.setURIResolver(resolver);
+        transformation.transformToString();
+
+        // then
+        verify(factory, times(2)).newTemplates(any(Source.class));
+    }
+
+    @Test
+    public void should_share_default_factory() throws Exception {
+        // when
+        TransformerFactory first = TemplatesCache.getDefaultFactory();
+        transformation.transformToString();
+
+        // then
+        assertSame(first, TemplatesCache.getDefaultFactory());
+    }
+
+    private static String stylesheetWriting(String element) {
+        return "<xsl:stylesheet version=\"1.0\""
+                + " xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:template match=\"/\"><" + element + "/></xsl:template>"
+                + "</xsl:stylesheet>";
+    }
 }
@@ -0,0 +1,215 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.StringReader;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import net.sf.xmlunit.TestResources;
+import net.sf.xmlunit.util.Convert;
+
+import org.custommonkey.xmlunit.XmlUnitProperties;
+import org.custommonkey.xmlunit.diff.Diff;
+import org.junit.Test;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.xmlunit.builder.Input;
+
+public class CompactDocumentTest {
+    private static final String XML =
+            "<?xml version=\"1.0\"?>"
+                    + "<a xmlns=\"urn:a\" xmlns:b=\"urn:b\" b:x=\"1\" y=\"2\">"
+                    + "<!-- comment --><?pi data?>"
+                    + "text<![CDATA[<cdata>]]>"
+                    + "<b:c>more &amp; more</b:c><c/>"
+                    + "</a>";
+
+    private static CompactDocument compact(String xml) {
+        return CompactDocument.from(new StreamSource(new StringReader(xml)));
+    }
+
+    @Test
+    public void should_expose_element_structure() throws Exception {
+        // given
+        Document doc = compact(XML).getDocument();
+
+        // when
+        Element root = doc.getDocumentElement();
+
+        // then
+        assertThat(root.getLocalName()).isEqualTo("a");
+        assertThat(root.getNamespaceURI()).isEqualTo("urn:a");
+        assertThat(root.getPrefix()).isNull();
+        assertThat(root.getAttributeNS("urn:b", "x")).isEqualTo("1");
+        assertThat(root.getAttribute("b:x")).isEqualTo("1");
+        assertThat(root.getAttribute("y")).isEqualTo("2");
+        assertThat(root.getAttributes().getLength()).isEqualTo(4);
+        assertThat(root.getParentNode()).isEqualTo(doc);
+        assertThat(root.getOwnerDocument()).isEqualTo(doc);
+    }
+
+    @Test
+    public void should_expose_child_nodes_in_document_order() throws Exception {
+        // given
+        Element root = compact(XML).getDocument().getDocumentElement();
+
+        // when
+        NodeList children = root.getChildNodes();
+
+        // then
+        assertThat(children.getLength()).isEqualTo(6);
+        assertThat(children.item(0).getNodeType()).isEqualTo(Node.COMMENT_NODE);
+        assertThat(children.item(0).getNodeValue()).isEqualTo(" comment ");
+        assertThat(children.item(1).getNodeType()).isEqualTo(Node.PROCESSING_INSTRUCTION_NODE);
+        assertThat(((ProcessingInstruction) children.item(1)).getTarget()).isEqualTo("pi");
+        assertThat(children.item(2).getNodeType()).isEqualTo(Node.TEXT_NODE);
+        assertThat(children.item(2).getNodeValue()).isEqualTo("text");
+        assertThat(children.item(3).getNodeType()).isEqualTo(Node.CDATA_SECTION_NODE);
+        assertThat(children.item(3).getNodeValue()).isEqualTo("<cdata>");
+        assertThat(children.item(4).getNodeName()).isEqualTo("b:c");
+        assertThat(children.item(4).getTextContent()).isEqualTo("more & more");
+        assertThat(children.item(4).getPreviousSibling()).isEqualTo(children.item(3));
+        assertThat(root.getLastChild()).isEqualTo(children.item(5));
+    }
+
+    @Test
+    public void should_expose_doctype() throws Exception {
+        // given
+        String dtd = TestResources.getFile("/test.dtd").toURI().toString();
+        Document doc = compact("<!DOCTYPE a PUBLIC \"-//xmlunit//a\" \"" + dtd + "\"><a/>").getDocument();
+
+        // when
+        DocumentType doctype = doc.getDoctype();
+
+        // then
+        assertThat(doctype.getName()).isEqualTo("a");
+        assertThat(doctype.getPublicId()).isEqualTo("-//xmlunit//a");
+        assertThat(doctype.getSystemId()).isEqualTo(dtd);
+        assertThat(doc.getFirstChild()).isEqualTo(doctype);
+    }
+
+    @Test
+    public void should_resolve_namespaces() throws Exception {
+        // given
+        Element c = (Element) compact(XML).getDocument().getElementsByTagNameNS("urn:b", "c").item(0);
+
+        // when
+        String uri = c.lookupNamespaceURI("b");
+        String defaultUri = c.lookupNamespaceURI(null);
+
+        // then
+        assertThat(uri).isEqualTo("urn:b");
+        assertThat(defaultUri).isEqualTo("urn:a");
+        assertThat(c.lookupPrefix("urn:b")).isEqualTo("b");
+    }
+
+    @Test
+    public void should_read_DOM_source() throws Exception {
+        // given
+        Document dom = Convert.toDocument(Input.fromMemory(XML).build());
+
+        // when
+        Document doc = CompactDocument.from(new DOMSource(dom)).getDocument();
+
+        // then
+        assertThat(doc.getDocumentElement().getChildNodes().getLength()).isEqualTo(6);
+        assertThat(doc.getDocumentElement().getAttributeNS("urn:b", "x")).isEqualTo("1");
+        assertThat(doc.isEqualNode(compact(XML).getDocument())).isTrue();
+    }
+
+    @Test
+    public void should_reject_modifications() throws Exception {
+        // given
+        Element root = compact(XML).getDocument().getDocumentElement();
+
+        // when
+        DOMException caught = null;
+        try {
+            root.setAttribute("z", "3");
+        } catch (DOMException e) {
+            caught = e;
+        }
+
+        // then
+        assertThat(caught).isNotNull();
+        assertThat(caught.code).isEqualTo(DOMException.NO_MODIFICATION_ALLOWED_ERR);
+    }
+
+    @Test
+    public void should_clone_into_mutable_document() throws Exception {
+        // given
+        Document doc = compact(XML).getDocument();
+
+        // when
+        Document clone = (Document) doc.cloneNode(true);
+        clone.getDocumentElement().setAttribute("z", "3");
+
+        // then
+        assertThat(clone.getDocumentElement().getAttribute("z")).isEqualTo("3");
+        assertThat(clone.getDocumentElement().getChildNodes().getLength()).isEqualTo(6);
+        assertThat(((Attr) clone.getDocumentElement().getAttributeNodeNS("urn:b", "x")).getValue()).isEqualTo("1");
+    }
+
+    @Test
+    public void should_be_identical_to_parsed_DOM() throws Exception {
+        // given
+        Document control = compact(XML).getDocument();
+        Document test = Convert.toDocument(Input.fromMemory(XML).build());
+
+        // when
+        Diff diff = Diff.newDiff(null).betweenControlDocument(control).andTestDocument(test).build();
+
+        // then
+        assertThat(diff.identical()).isTrue();
+    }
+
+    @Test
+    public void should_find_differences() throws Exception {
+        // given
+        Document control = compact("<a><b x=\"1\">text</b></a>").getDocument();
+        Document test = compact("<a><b x=\"2\">text</b></a>").getDocument();
+
+        // when
+        Diff diff = Diff.newDiff(null).betweenControlDocument(control).andTestDocument(test).build();
+
+        // then
+        assertThat(diff.similar()).isFalse();
+    }
+
+    @Test
+    public void should_support_source_properties() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        properties.setIgnoreComments(true);
+        properties.setNormalizeWhitespace(true);
+        Document control = compact("<a><!-- c --><b>  some   text </b></a>").getDocument();
+        Document test = compact("<a><b>some text</b></a>").getDocument();
+
+        // when
+        Diff diff = Diff.newDiff(properties).betweenControlDocument(control).andTestDocument(test).build();
+
+        // then
+        assertThat(diff.identical()).isTrue();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.tree;
+
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+
+import net.sf.xmlunit.util.Convert;
+
+import com.googlecode.catchexception.apis.CatchExceptionBdd;
+
+import org.apache.commons.io.FileUtils;
+import org.custommonkey.xmlunit.diff.Diff;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xmlunit.builder.Input;
+
+public class MappedDocumentTest {
+    private static final String XML =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                    + "<a xmlns=\"urn:a\" xmlns:b=\"urn:b\" b:x=\"1\" y=\"2\">"
+                    + "<!-- comment --><?pi data?>"
+                    + "text<![CDATA[<cdata>]]>"
+                    + "<b:c>more &amp; more \u00e4</b:c><c/>"
+                    + "</a>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MappedDocument encodeAndOpen(String xml) throws Exception {
+        File f = folder.newFile();
+        MappedDocument.encode(Input.fromMemory(xml).build(), f);
+        return MappedDocument.open(f);
+    }
+
+    @Test
+    public void should_navigate_mapped_document() throws Exception {
+        // given
+        MappedDocument mapped = encodeAndOpen(XML);
+
+        // when
+        Element root = mapped.getDocument().getDocumentElement();
+
+        // then
+        assertThat(root.getNamespaceURI()).isEqualTo("urn:a");
+        assertThat(root.getAttributeNS("urn:b", "x")).isEqualTo("1");
+        assertThat(root.getChildNodes().getLength()).isEqualTo(6);
+        assertThat(root.getTextContent()).isEqualTo("text<cdata>more & more \u00e4");
+        assertThat(mapped.getXmlVersion()).isEqualTo("1.0");
+        assertThat(mapped.getNodeCount()).isEqualTo(13);
+    }
+
+    @Test
+    public void should_be_identical_to_parsed_DOM() throws Exception {
+        // given
+        Document control = encodeAndOpen(XML).getDocument();
+        Document test = Convert.toDocument(Input.fromMemory(XML).build());
+
+        // when
+        Diff diff = Diff.newDiff(null).betweenControlDocument(control).andTestDocument(test).build();
+
+        // then
+        assertThat(diff.identical()).isTrue();
+    }
+
+    @Test
+    public void should_find_differences() throws Exception {
+        // given
+        Document control = encodeAndOpen(XML).getDocument();
+        Document test = Convert.toDocument(Input.fromMemory(XML.replace("more", "less")).build());
+
+        // when
+        Diff diff = Diff.newDiff(null).betweenControlDocument(control).andTestDocument(test).build();
+
+        // then
+        assertThat(diff.similar()).isFalse();
+    }
+
+    @Test
+    public void should_fall_back_to_file_URI_as_system_id() throws Exception {
+        // given
+        File f = folder.newFile();
+        MappedDocument.encode(Input.fromMemory("<a/>").build(), f);
+
+        // when
+        MappedDocument mapped = MappedDocument.open(f);
+
+        // then
+        assertThat(mapped.getSystemId()).isEqualTo(f.getAbsoluteFile().toURI().toString());
+    }
+
+    @Test
+    public void should_reject_files_not_written_by_encoder() throws Exception {
+        // given
+        File f = folder.newFile();
+        FileUtils.writeStringToFile(f, "<a/>");
+
+        // when
+        CatchExceptionBdd.when(this).open(f);
+
+        // then
+        assertThat(caughtException()).isInstanceOf(XMLUnitRuntimeException.class);
+    }
+
+    public MappedDocument open(File f) {
+        return MappedDocument.open(f);
+    }
+}
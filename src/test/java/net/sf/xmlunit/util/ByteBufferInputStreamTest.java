@@ -0,0 +1,83 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferInputStreamTest {
+
+    @Test
+    public void should_read_remaining_bytes() throws Exception {
+        // given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, (byte) 0xFF });
+        buffer.position(1);
+        ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+
+        // when
+        byte[] read = new byte[10];
+        int count = in.read(read, 0, read.length);
+
+        // then
+        assertThat(count).isEqualTo(3);
+        assertThat(read[0]).isEqualTo((byte) 2);
+        assertThat(read[2]).isEqualTo((byte) 0xFF);
+        assertThat(in.read()).isEqualTo(-1);
+    }
+
+    @Test
+    public void should_not_modify_original_buffer() throws Exception {
+        // given
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+        ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+
+        // when
+        in.read();
+        in.skip(1);
+
+        // then
+        assertThat(buffer.position()).isEqualTo(0);
+        assertThat(in.available()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_return_unsigned_values() throws Exception {
+        // given
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { (byte) 0x80 }));
+
+        // when
+        int value = in.read();
+
+        // then
+        assertThat(value).isEqualTo(0x80);
+    }
+
+    @Test
+    public void should_reset_to_mark() throws Exception {
+        // given
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+        in.read();
+        in.mark(10);
+        in.read();
+
+        // when
+        in.reset();
+
+        // then
+        assertThat(in.read()).isEqualTo(2);
+    }
+}
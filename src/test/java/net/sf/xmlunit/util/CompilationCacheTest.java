@@ -0,0 +1,112 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class CompilationCacheTest {
+    @Test
+    public void should_identify_streams_by_content() throws Exception {
+        // given
+        StreamSource first = new StreamSource(new StringReader("<a/>"));
+        StreamSource second = new StreamSource(new StringReader("<a/>"));
+        StreamSource bytes = new StreamSource(new ByteArrayInputStream("<a/>".getBytes("UTF-8")));
+
+        // when
+        CompilationCache.Identified firstId = CompilationCache.identify(first);
+        CompilationCache.Identified secondId = CompilationCache.identify(second);
+        CompilationCache.Identified bytesId = CompilationCache.identify(bytes);
+
+        // then
+        assertThat(firstId.getId()).isEqualTo(secondId.getId());
+        assertThat(firstId.getId()).isNotEqualTo("<a/>");
+        assertThat(bytesId.getId()).isNotEqualTo(firstId.getId());
+        assertThat(CompilationCache.readFully(((StreamSource) firstId.getSource()).getReader())).isEqualTo("<a/>");
+    }
+
+    @Test
+    public void should_identify_source_by_system_id() {
+        // given
+        StreamSource source = new StreamSource("file:/a.xsl");
+
+        // when
+        CompilationCache.Identified id = CompilationCache.identify(source);
+
+        // then
+        assertThat(id.getId()).isEqualTo("file:/a.xsl");
+        assertThat(id.getSource()).isSameAs(source);
+    }
+
+    @Test
+    public void should_identify_streams_with_system_id_by_content() throws Exception {
+        // given
+        StreamSource first = new StreamSource(new StringReader("<a/>"), "file:/base/");
+        StreamSource second = new StreamSource(new StringReader("<b/>"), "file:/base/");
+        StreamSource otherBase = new StreamSource(new StringReader("<a/>"), "file:/other/");
+
+        // when
+        CompilationCache.Identified firstId = CompilationCache.identify(first);
+        CompilationCache.Identified secondId = CompilationCache.identify(second);
+        CompilationCache.Identified otherBaseId = CompilationCache.identify(otherBase);
+
+        // then
+        assertThat(firstId.getId()).isNotEqualTo(secondId.getId());
+        assertThat(firstId.getId()).isNotEqualTo(otherBaseId.getId());
+        assertThat(firstId.getId()).isNotEqualTo("file:/base/");
+        assertThat(firstId.getSource().getSystemId()).isEqualTo("file:/base/");
+    }
+
+    @Test
+    public void should_not_identify_dom_source_by_system_id() throws Exception {
+        // given
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        DOMSource source = new DOMSource(doc, "file:/a.xsl");
+
+        // when
+        CompilationCache.Identified id = CompilationCache.identify(source);
+
+        // then
+        assertThat(id.getId()).isNull();
+        assertThat(id.getSource()).isSameAs(source);
+    }
+
+    @Test
+    public void should_drop_least_recently_used_value() {
+        // given
+        CompilationCache<String, String> cache = new CompilationCache<String, String>(2);
+        cache.put("a", "A");
+        cache.put("b", "B");
+
+        // when
+        cache.get("a");
+        cache.put("c", "C");
+
+        // then
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.getHitCount()).isEqualTo(2);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.util;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+@RunWith(JUnitParamsRunner.class)
+public class WhitespaceNormalizedTextTest {
+
+    @SuppressWarnings("unused")
+    private Object[] equalTexts() {
+        return new Object[] {
+                new Object[] { "a b", "a b" },
+                new Object[] { "  a b ", "a b" },
+                new Object[] { "a \t\n b", "a b" },
+                new Object[] { "a\nb", "a b" },
+                new Object[] { "", " \n " },
+                new Object[] { "ab  ", "\tab" },
+        };
+    }
+
+    @SuppressWarnings("unused")
+    private Object[] differentTexts() {
+        return new Object[] {
+                new Object[] { "ab", "a b" },
+                new Object[] { "a b", "a b c" },
+                new Object[] { "a", "" },
+                new Object[] { "a b", "a c" },
+                new Object[] { "a  b", "a" },
+        };
+    }
+
+    @Test
+    @Parameters(method = "equalTexts")
+    public void should_treat_texts_as_equal(String control, String test) {
+        // given
+        WhitespaceNormalizedText c = WhitespaceNormalizedText.of(control);
+        WhitespaceNormalizedText t = WhitespaceNormalizedText.of(test);
+
+        // when
+        boolean equal = c.equals(t);
+
+        // then
+        assertThat(equal).isTrue();
+        assertThat(t.equals(c)).isTrue();
+        assertThat(c.hashCode()).isEqualTo(t.hashCode());
+    }
+
+    @Test
+    @Parameters(method = "differentTexts")
+    public void should_treat_texts_as_different(String control, String test) {
+        // given
+        WhitespaceNormalizedText c = WhitespaceNormalizedText.of(control);
+        WhitespaceNormalizedText t = WhitespaceNormalizedText.of(test);
+
+        // when
+        boolean equal = c.equals(t);
+
+        // then
+        assertThat(equal).isFalse();
+        assertThat(t.equals(c)).isFalse();
+    }
+
+    @Test
+    public void should_create_normalized_string_like_nodes() {
+        // given
+        String s = "\t some \n\n text  ";
+
+        // when
+        WhitespaceNormalizedText text = WhitespaceNormalizedText.of(s);
+
+        // then
+        assertThat(text.toString()).isEqualTo(Nodes.normalize(s.trim()));
+        assertThat(text.hashCode()).isEqualTo(text.toString().hashCode());
+        assertThat(text.getOriginal()).isEqualTo(s);
+    }
+}
@@ -14,8 +14,22 @@
 package net.sf.xmlunit.util;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.transform.ErrorListener;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Source;
+import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 
 import org.junit.Test;
 
@@ -35,4 +49,94 @@ public class XsltUtilsTest {
         assertThat(factoryBefore).isNotSameAs(factoryAfter);
         assertThat(factoryAfter.getClass().getName()).isEqualTo(factoryClass.getName());
     }
+
+    @Test
+    public void should_share_factory_of_same_configuration() throws Exception {
+        // given
+        URIResolver resolver = new URIResolver() {
+            public Source resolve(String href, String base) {
+                return null;
+            }
+        };
+        XsltUtils first = new XsltUtils();
+        XsltUtils second = new XsltUtils();
+        XsltUtils withResolver = new XsltUtils();
+        withResolver.setUriResolver(resolver);
+
+        // when
+        TransformerFactory factory = first.getSharedTransformerFactory();
+        URIResolver defaultResolver = factory.getURIResolver();
+        TransformerFactory sameFactory = second.getSharedTransformerFactory();
+        TransformerFactory resolvingFactory = withResolver.getSharedTransformerFactory();
+        TransformerFactory factoryAgain = first.getSharedTransformerFactory();
+
+        // then
+        assertThat(sameFactory).isSameAs(factory);
+        assertThat(resolvingFactory).isNotSameAs(factory);
+        assertThat(resolvingFactory.getURIResolver()).isSameAs(resolver);
+        assertThat(factoryAgain).isSameAs(factory);
+        assertThat(factory.getURIResolver()).isSameAs(defaultResolver);
+    }
+
+    @Test
+    public void should_not_apply_error_listener_of_other_caller() throws Exception {
+        // given
+        ErrorListener listener = mock(ErrorListener.class);
+        XsltUtils withListener = new XsltUtils();
+        withListener.setErrorListener(listener);
+        XsltUtils withoutListener = new XsltUtils();
+
+        // when
+        TransformerFactory listeningFactory = withListener.getSharedTransformerFactory();
+        TransformerFactory factory = withoutListener.getSharedTransformerFactory();
+
+        // then
+        assertThat(listeningFactory.getErrorListener()).isSameAs(listener);
+        assertThat(factory.getErrorListener()).isNotSameAs(listener);
+        assertThat(listeningFactory.getErrorListener()).isSameAs(listener);
+    }
+
+    @Test
+    public void should_not_share_factory_between_threads() throws Exception {
+        // given
+        final XsltUtils xsltUtils = new XsltUtils();
+        TransformerFactory factory = xsltUtils.getSharedTransformerFactory();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        // when
+        TransformerFactory otherThreadsFactory;
+        try {
+            otherThreadsFactory = executor.submit(new Callable<TransformerFactory>() {
+                public TransformerFactory call() {
+                    return xsltUtils.getSharedTransformerFactory();
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(otherThreadsFactory).isNotSameAs(factory);
+        assertThat(otherThreadsFactory.getClass().getName()).isEqualTo(factory.getClass().getName());
+    }
+
+    @Test
+    public void should_reset_released_transformer() throws Exception {
+        // given
+        XsltUtils xsltUtils = new XsltUtils();
+        Transformer transformer = xsltUtils.acquireTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        xsltUtils.releaseTransformer(transformer);
+
+        // when
+        Transformer reused = xsltUtils.acquireTransformer();
+        StringWriter writer = new StringWriter();
+        reused.transform(new StreamSource(new StringReader("<a/>")), new StreamResult(writer));
+        Transformer other = xsltUtils.acquireTransformer();
+
+        // then
+        assertThat(reused).isSameAs(transformer);
+        assertThat(writer.toString()).startsWith("<?xml");
+        assertThat(other).isNotSameAs(reused);
+    }
 }
@@ -15,8 +15,11 @@ package net.sf.xmlunit.xpath;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
@@ -51,7 +54,7 @@ public abstract class AbstractXpathEngineTest {
     protected Document testDocument;
     protected Source testSource;
 
-    protected abstract XpathEngine newXpathEngine();
+    protected abstract BatchXpathEngine newXpathEngine();
 
     @Before
     public void setUp() throws Exception {
@@ -64,7 +67,7 @@ public abstract class AbstractXpathEngineTest {
     public void should_not_get_any_matching_nodes() throws Exception {
         // given
         DOMSource source = new DOMSource(testDocument);
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         Iterable<Node> nodeList = engine.selectNodes("toast", source);
@@ -88,7 +91,7 @@ public abstract class AbstractXpathEngineTest {
     public void should_get_matching_element_node() throws Exception {
         // given
         DOMSource source = new DOMSource(testDocument);
-        XpathEngine xpathEngine = newXpathEngine();
+        BatchXpathEngine xpathEngine = newXpathEngine();
 
         // when
         IterableNodeList nodes = xpathEngine.selectNodes("test/nodeWithoutAttributes", source);
@@ -123,7 +126,7 @@ public abstract class AbstractXpathEngineTest {
     public void should_get_matching_node_with_children() throws Exception {
         // given
         DOMSource source = new DOMSource(testDocument);
-        XpathEngine xpathEngine = newXpathEngine();
+        BatchXpathEngine xpathEngine = newXpathEngine();
 
         // when
         IterableNodeList nodes = xpathEngine.selectNodes("test/nodeWithAttributes", source);
@@ -156,7 +159,7 @@ public abstract class AbstractXpathEngineTest {
     public void should_evaluate_node_count() throws Exception {
         // given
         DOMSource source = new DOMSource(testDocument);
-        XpathEngine xpathEngine = newXpathEngine();
+        BatchXpathEngine xpathEngine = newXpathEngine();
 
         // when
         String result = xpathEngine.evaluate("count(test//node())", source);
@@ -174,7 +177,7 @@ public abstract class AbstractXpathEngineTest {
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
         namespaceCtx.put("foo", "urn:foo");
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         engine.setNamespaceContext(namespaceCtx);
@@ -195,7 +198,7 @@ public abstract class AbstractXpathEngineTest {
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
         namespaceCtx.put("foo", "urn:foo");
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         engine.setNamespaceContext(namespaceCtx);
@@ -234,7 +237,7 @@ public abstract class AbstractXpathEngineTest {
                         + "</MtcEnv>";
 
         Source source = Input.fromMemory(testXml).build();
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         Iterable<Node> nodeList = engine.selectNodes(
@@ -249,7 +252,7 @@ public abstract class AbstractXpathEngineTest {
     public void should_not_evaluate_when_invalid_xpath() throws Exception {
         // given
         String invalidXpath = "count(test//*[@attrOne='open source])";
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         engine.evaluate(invalidXpath, new DOMSource(testDocument));
@@ -260,7 +263,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_not_get_any_matching_nodes_2() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         IterableNodeList nodeList = engine.selectNodes("foo", testSource);
@@ -273,7 +276,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_get_one_matching_node() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         IterableNodeList nodes = engine.selectNodes("//ul", testSource);
@@ -287,7 +290,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_get_multiple_matching_nodes() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
 
         // when
         IterableNodeList nodes = engine.selectNodes("//li", testSource);
@@ -364,7 +367,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_get_matching_nodes_with_custonmized_namespace_context() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
         testSource = Input.fromMemory("<n:d xmlns:n='urn:test:1'><n:e/></n:d>").build();
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
@@ -381,7 +384,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_get_matching_nodes_with_default_namespace() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
         testSource = Input.fromMemory("<d xmlns='urn:test:1'><e/></d>").build();
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
@@ -398,7 +401,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_get_matching_node_with_default_ns_and_empty_prefix() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
         testSource = Input.fromMemory("<d xmlns='urn:test:1'><e/></d>").build();
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
@@ -415,7 +418,7 @@ public abstract class AbstractXpathEngineTest {
     @Test
     public void should_not_get_matching_node_with_default_ns_and_no_prefix() throws Exception {
         // given
-        XpathEngine engine = newXpathEngine();
+        BatchXpathEngine engine = newXpathEngine();
         testSource = Input.fromMemory("<d xmlns='urn:test:1'><e/></d>").build();
 
         HashMap<String, String> namespaceCtx = new HashMap<String, String>();
@@ -428,4 +431,125 @@ public abstract class AbstractXpathEngineTest {
         // then
         assertThat(it).hasSize(0);
     }
+
+    @Test
+    public void should_select_nodes_of_live_node() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        IterableNodeList nodes = engine.selectNodes("//nodeWithoutAttributes", testDocument);
+
+        // then
+        assertThat(nodes.getLength()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_evaluate_on_live_node() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        String value = engine.evaluate("/test/nodeWithAttributes/@" + testAttrNames[0], testDocument);
+
+        // then
+        assertThat(value).isEqualTo("open source ");
+    }
+
+    @Test
+    public void should_evaluate_number_on_live_node() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        double count = engine.evaluateNumber("count(//nodeWithoutAttributes)", testDocument);
+        double notANumber = engine.evaluateNumber("/test/nodeWithAttributes", testDocument);
+
+        // then
+        assertThat(count).isEqualTo(2.0);
+        assertThat(Double.isNaN(notANumber)).isTrue();
+    }
+
+    @Test
+    public void should_evaluate_boolean_on_live_node() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        boolean exists = engine.evaluateBoolean("/test/nodeWithAttributes", testDocument);
+        boolean notExists = engine.evaluateBoolean("/test/toast", testDocument);
+
+        // then
+        assertThat(exists).isTrue();
+        assertThat(notExists).isFalse();
+    }
+
+    private static final List<String> BATCH_EXPRESSIONS = Arrays.asList(
+            "/test/nodeWithoutAttributes",
+            "//nodeWithAttributes",
+            "/test//*",
+            "/*/nodeWithoutAttributes",
+            "//toast",
+            "/test/nodeWithAttributes/@" + testAttrNames[1],
+            "count(//nodeWithoutAttributes)",
+            "//nodeWithoutAttributes[2]");
+
+    @Test
+    public void should_evaluate_batch_like_single_expressions() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        Map<String, String> values = engine.evaluate(BATCH_EXPRESSIONS, new DOMSource(testDocument));
+
+        // then
+        assertThat(new ArrayList<String>(values.keySet())).isEqualTo(BATCH_EXPRESSIONS);
+        for (String xPath : BATCH_EXPRESSIONS) {
+            assertThat(values.get(xPath)).as(xPath).isEqualTo(engine.evaluate(xPath, testDocument));
+        }
+    }
+
+    @Test
+    public void should_select_nodes_in_batch_like_single_expressions() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+        List<String> expressions = BATCH_EXPRESSIONS.subList(0, 5);
+
+        // when
+        Map<String, IterableNodeList> nodes =
+                engine.selectNodes(expressions, Input.fromMemory(testString).build());
+
+        // then
+        assertThat(new ArrayList<String>(nodes.keySet())).isEqualTo(expressions);
+        for (String xPath : expressions) {
+            List<Node> expected = engine.selectNodes(xPath, testDocument).asList();
+            List<Node> actual = nodes.get(xPath).asList();
+            assertThat(actual).as(xPath).hasSize(expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertThat(actual.get(i).getNodeName()).isEqualTo(expected.get(i).getNodeName());
+                assertThat(actual.get(i).getTextContent()).isEqualTo(expected.get(i).getTextContent());
+            }
+        }
+    }
+
+    @Test
+    public void should_evaluate_batch_with_customized_namespace_context() throws Exception {
+        // given
+        String testXml = "<t:test xmlns:t=\"urn:foo\"><t:bar>1</t:bar><bar>2</bar></t:test>";
+        HashMap<String, String> namespaceCtx = new HashMap<String, String>();
+        namespaceCtx.put("foo", "urn:foo");
+        BatchXpathEngine engine = newXpathEngine();
+        engine.setNamespaceContext(namespaceCtx);
+
+        // when
+        Map<String, String> values = engine.evaluate(
+                Arrays.asList("/foo:test/foo:bar", "/foo:test/bar", "//foo:*", "count(//foo:*)"),
+                Input.fromMemory(testXml).build());
+
+        // then
+        assertThat(values.get("/foo:test/foo:bar")).isEqualTo("1");
+        assertThat(values.get("/foo:test/bar")).isEqualTo("2");
+        assertThat(values.get("//foo:*")).isEqualTo("12");
+        assertThat(values.get("count(//foo:*)")).isEqualTo("2");
+    }
 }
@@ -0,0 +1,145 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+
+import net.sf.xmlunit.util.Convert;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlunit.builder.Input;
+
+public class IndexedXpathEngineTest extends AbstractXpathEngineTest {
+    private static final String ORDERS =
+            "<orders xmlns:n=\"urn:n\">"
+                    + "<order id=\"1\"><item id=\"11\">a</item></order>"
+                    + "<order id=\"2\"><item id=\"21\">b</item><item id=\"22\">c</item></order>"
+                    + "<n:order id=\"3\"/>"
+                    + "<order id=\"2\">duplicate</order>"
+                    + "</orders>";
+
+    @Override
+    protected BatchXpathEngine newXpathEngine() {
+        return new IndexedXpathEngine(new JaxpXpathEngine(documentUtils.newXpathFactory()), new QName("id"));
+    }
+
+    private Document orders() {
+        return Convert.toDocument(Input.fromMemory(ORDERS).build());
+    }
+
+    @Test
+    public void should_answer_name_and_key_queries_from_index() throws Exception {
+        // given
+        NodeXpathEngine jaxp = spy(new JaxpXpathEngine(documentUtils.newXpathFactory()));
+        IndexedXpathEngine engine = new IndexedXpathEngine(jaxp, new QName("id"));
+        engine.setNamespaceContext(Collections.singletonMap("n", "urn:n"));
+        Document d = orders();
+
+        // when
+        List<Node> items = engine.selectNodes("//item", d).asList();
+        List<Node> orders = engine.selectNodes("//order[@id='2']", d).asList();
+        String count = engine.evaluate("count(//*[@id='3'])", d);
+        String nsOrder = engine.evaluate("//n:order/@id", d);
+        boolean missing = engine.evaluateBoolean("//order[@id='4']", d);
+
+        // then
+        assertThat(items).hasSize(3);
+        assertThat(((Element) items.get(2)).getAttribute("id")).isEqualTo("22");
+        assertThat(orders).hasSize(2);
+        assertThat(orders.get(1).getTextContent()).isEqualTo("duplicate");
+        assertThat(count).isEqualTo("1");
+        assertThat(missing).isFalse();
+        // the attribute step isn't indexed
+        assertThat(nsOrder).isEqualTo("3");
+        verify(jaxp).setNamespaceContext(Collections.singletonMap("n", "urn:n"));
+        verify(jaxp, times(1)).evaluate("//n:order/@id", d);
+    }
+
+    @Test
+    public void should_not_index_attributes_that_are_no_keys() throws Exception {
+        // given
+        NodeXpathEngine jaxp = spy(new JaxpXpathEngine(documentUtils.newXpathFactory()));
+        IndexedXpathEngine engine = new IndexedXpathEngine(jaxp);
+        Document d = orders();
+
+        // when
+        String value = engine.evaluate("//item[@id='21']", d);
+
+        // then
+        assertThat(value).isEqualTo("b");
+        verify(jaxp).evaluate("//item[@id='21']", d);
+    }
+
+    @Test
+    public void should_reuse_index_of_document() throws Exception {
+        // given
+        NodeXpathEngine jaxp = spy(new JaxpXpathEngine(documentUtils.newXpathFactory()));
+        Document d = orders();
+        new IndexedXpathEngine(jaxp, new QName("id")).selectNodes("//order", d);
+
+        // when
+        List<Node> first = new IndexedXpathEngine(jaxp, new QName("id")).selectNodes("//order", d).asList();
+        List<Node> second = new IndexedXpathEngine(jaxp, new QName("id")).selectNodes("//order", d).asList();
+
+        // then
+        assertThat(first).isEqualTo(second);
+        verifyZeroInteractions(jaxp);
+    }
+
+    @Test
+    public void should_rebuild_invalidated_index() throws Exception {
+        // given
+        IndexedXpathEngine engine = (IndexedXpathEngine) newXpathEngine();
+        Document d = orders();
+        engine.selectNodes("//order", d);
+        d.getDocumentElement().appendChild(d.createElement("order"));
+
+        // when
+        int stale = engine.selectNodes("//order", d).getLength();
+        engine.invalidate(d);
+        int fresh = engine.selectNodes("//order", d).getLength();
+
+        // then
+        assertThat(stale).isEqualTo(3);
+        assertThat(fresh).isEqualTo(4);
+    }
+
+    @Test
+    public void should_delegate_sources_that_are_no_documents() throws Exception {
+        // given
+        NodeXpathEngine jaxp = spy(new JaxpXpathEngine(documentUtils.newXpathFactory()));
+        IndexedXpathEngine engine = new IndexedXpathEngine(jaxp, new QName("id"));
+        Source source = Input.fromMemory(ORDERS).build();
+
+        // when
+        String value = engine.evaluate("//order", source);
+
+        // then
+        assertThat(value).isEqualTo("a");
+        verify(jaxp).evaluate("//order", source);
+    }
+}
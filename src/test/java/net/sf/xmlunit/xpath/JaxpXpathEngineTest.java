@@ -13,10 +13,171 @@
  */
 package net.sf.xmlunit.xpath;
 
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
+import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathVariableResolver;
+
+import net.sf.xmlunit.util.IterableNodeList;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xmlunit.builder.Input;
 
 public class JaxpXpathEngineTest extends AbstractXpathEngineTest {
     @Override
-    protected XpathEngine newXpathEngine() {
+    protected BatchXpathEngine newXpathEngine() {
         return new JaxpXpathEngine(documentUtils.newXpathFactory());
     }
+
+    @Before
+    public void clearCache() {
+        JaxpXpathEngine.clearCache();
+    }
+
+    @Test
+    public void should_reuse_compiled_expressions() throws Exception {
+        // given
+        JaxpXpathEngine engine = new JaxpXpathEngine(documentUtils.newXpathFactory());
+
+        // when
+        engine.evaluate("/a/b", Input.fromMemory("<a><b>1</b></a>").build());
+        engine.evaluate("/a/b", Input.fromMemory("<a><b>2</b></a>").build());
+        String result = engine.evaluate("/a/b", Input.fromMemory("<a><b>3</b></a>").build());
+
+        // then
+        assertThat(result).isEqualTo("3");
+        assertThat(engine.getCacheMisses()).isEqualTo(1);
+        assertThat(engine.getCacheHits()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_recompile_expressions_for_different_namespace_context() throws Exception {
+        // given
+        JaxpXpathEngine engine = new JaxpXpathEngine(documentUtils.newXpathFactory());
+        String xml = "<a xmlns=\"urn:x\"><b>x</b></a>";
+
+        // when
+        engine.setNamespaceContext(Collections.singletonMap("p", "urn:x"));
+        String first = engine.evaluate("/p:a/p:b", Input.fromMemory(xml).build());
+        engine.setNamespaceContext(Collections.singletonMap("p", "urn:y"));
+        String second = engine.evaluate("/p:a/p:b", Input.fromMemory(xml).build());
+
+        // then
+        assertThat(first).isEqualTo("x");
+        assertThat(second).isEmpty();
+        assertThat(engine.getCacheMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_share_compiled_expressions_between_instances_using_same_factory() throws Exception {
+        // given
+        XPathFactory factory = documentUtils.newXpathFactory();
+        JaxpXpathEngine first = new JaxpXpathEngine(factory);
+        JaxpXpathEngine second = new JaxpXpathEngine(factory);
+
+        // when
+        first.evaluate("/a/b", Input.fromMemory("<a><b>1</b></a>").build());
+        String result = second.evaluate("/a/b", Input.fromMemory("<a><b>2</b></a>").build());
+
+        // then
+        assertThat(result).isEqualTo("2");
+        assertThat(first.getCacheMisses()).isEqualTo(1);
+        assertThat(second.getCacheHits()).isEqualTo(1);
+        assertThat(second.getCacheMisses()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_use_resolvers_of_each_factory() throws Exception {
+        // given
+        JaxpXpathEngine first = new JaxpXpathEngine(factoryResolving("one"));
+        JaxpXpathEngine second = new JaxpXpathEngine(factoryResolving("two"));
+
+        // when
+        String firstResult = first.evaluate("$v", Input.fromMemory("<a/>").build());
+        String secondResult = second.evaluate("$v", Input.fromMemory("<a/>").build());
+
+        // then
+        assertThat(firstResult).isEqualTo("one");
+        assertThat(secondResult).isEqualTo("two");
+        assertThat(second.getCacheMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_evict_least_recently_used_expressions() throws Exception {
+        // given
+        JaxpXpathEngine engine = new JaxpXpathEngine(documentUtils.newXpathFactory());
+        String xml = "<a><b>1</b></a>";
+
+        // when
+        engine.evaluate("/a", Input.fromMemory(xml).build());
+        for (int i = 1; i <= JaxpXpathEngine.CACHE_SIZE; i++) {
+            engine.evaluate(String.valueOf(i), Input.fromMemory(xml).build());
+        }
+        engine.evaluate("/a", Input.fromMemory(xml).build());
+
+        // then
+        assertThat(engine.getCacheMisses()).isEqualTo(JaxpXpathEngine.CACHE_SIZE + 2);
+    }
+
+    @Test
+    public void should_be_usable_from_several_threads() throws Exception {
+        // given
+        final JaxpXpathEngine engine = new JaxpXpathEngine(documentUtils.newXpathFactory());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<Future<String>>();
+
+        // when
+        try {
+            for (int i = 0; i < 100; i++) {
+                final String value = String.valueOf(i);
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return engine.evaluate("/a/b", Input.fromMemory("<a><b>" + value + "</b></a>").build());
+                    }
+                }));
+            }
+
+            // then
+            for (int i = 0; i < 100; i++) {
+                assertThat(results.get(i).get()).isEqualTo(String.valueOf(i));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(engine.getCacheHits() + engine.getCacheMisses()).isEqualTo(100);
+    }
+
+    @Test
+    public void should_return_nodes_of_live_node() throws Exception {
+        // given
+        BatchXpathEngine engine = newXpathEngine();
+
+        // when
+        IterableNodeList nodes = engine.selectNodes("/test/nodeWithAttributes", testDocument);
+
+        // then
+        assertThat(nodes.asList()).containsExactly(testDocument.getDocumentElement().getLastChild());
+    }
+
+    private XPathFactory factoryResolving(final String value) {
+        XPathFactory factory = documentUtils.newXpathFactory();
+        factory.setXPathVariableResolver(new XPathVariableResolver() {
+            @Override
+            public Object resolveVariable(QName variableName) {
+                return value;
+            }
+        });
+        return factory;
+    }
 }
@@ -15,6 +15,8 @@ package net.sf.xmlunit.xpath;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.util.Collections;
+
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.dom.DOMSource;
 
@@ -24,6 +26,7 @@ import org.custommonkey.xmlunit.XmlUnitProperties;
 import org.custommonkey.xmlunit.exceptions.XpathException;
 import org.junit.Test;
 import org.w3c.dom.Node;
+import org.xmlunit.builder.Input;
 
 public class SimpleXpathEngineTest extends AbstractXpathEngineTest {
 
@@ -81,4 +84,24 @@ public class SimpleXpathEngineTest extends AbstractXpathEngineTest {
         assertThat(tag).startsWith(XSLTConstants.XSLT_START_NO_VERSION);
         assertThat(tag).endsWith("\"" + xsltVersion + "\">");
     }
+
+    @Test
+    public void should_not_reuse_stylesheet_of_other_namespace_context() throws Exception {
+        // given
+        String testXml = "<a:test xmlns:a=\"urn:a\" xmlns:b=\"urn:b\"><a:x/><b:x/><b:x/></a:test>";
+        SimpleXpathEngine engine = newXpathEngine();
+        engine.setNamespaceContext(Collections.singletonMap("p", "urn:a"));
+        String first = engine.evaluate("count(//p:x)", Input.fromMemory(testXml).build());
+
+        // when
+        engine.setNamespaceContext(Collections.singletonMap("p", "urn:b"));
+        String second = engine.evaluate("count(//p:x)", Input.fromMemory(testXml).build());
+        engine.setNamespaceContext(Collections.singletonMap("p", "urn:a"));
+        String third = engine.evaluate("count(//p:x)", Input.fromMemory(testXml).build());
+
+        // then
+        assertThat(first).isEqualTo("1");
+        assertThat(second).isEqualTo("2");
+        assertThat(third).isEqualTo("1");
+    }
 }
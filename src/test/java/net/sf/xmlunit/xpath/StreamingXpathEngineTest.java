@@ -0,0 +1,267 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package net.sf.xmlunit.xpath;
+
+import static com.googlecode.catchexception.CatchException.caughtException;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.transform.Source;
+import javax.xml.xpath.XPathFactory;
+
+import net.sf.xmlunit.util.Convert;
+import net.sf.xmlunit.util.IterableNodeList;
+
+import org.custommonkey.xmlunit.exceptions.XpathException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xmlunit.builder.Input;
+
+import com.googlecode.catchexception.apis.CatchExceptionBdd;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+@RunWith(JUnitParamsRunner.class)
+public class StreamingXpathEngineTest {
+    private static final String XML =
+            "<a xmlns:n=\"urn:n\">"
+                    + "<b id=\"y\"><c>wrong</c></b>"
+                    + "<b id=\"x\"><c>first <d>nested</d></c><c>second</c></b>"
+                    + "<items><item code=\"1\"/><item code=\"2\"><item code=\"3\"/></item></items>"
+                    + "<n:e n:att=\"ns\">namespaced</n:e>"
+                    + "<x/><f><x/><x><x/></x></f>"
+                    + "</a>";
+
+    // the part after the first b can't be parsed
+    private static final String BROKEN_XML = "<a><b>1</b><c></d></a>";
+
+    private Source source(String xml) {
+        return Input.fromMemory(xml).build();
+    }
+
+    @SuppressWarnings("unused")
+    private Object[] expressions() {
+        return new Object[] {
+                new Object[] { "/a/b[@id='x']/c" },
+                new Object[] { "/a/b[2]/c[2]" },
+                new Object[] { "/a/b[@id][1]" },
+                new Object[] { "//item/@code" },
+                new Object[] { "//item[2]/@code" },
+                new Object[] { "count(//x)" },
+                new Object[] { "count(//item)" },
+                new Object[] { "count(/a/*)" },
+                new Object[] { "count(//@*)" },
+                new Object[] { "string(//c)" },
+                new Object[] { "boolean(//item[@code='3'])" },
+                new Object[] { "boolean(/a/toast)" },
+                new Object[] { "//n:e" },
+                new Object[] { "//n:e/@n:att" },
+                new Object[] { "count(//n:*)" },
+                new Object[] { "/a/f//x" },
+                new Object[] { "/a/nothing" },
+        };
+    }
+
+    @Test
+    @Parameters(method = "expressions")
+    public void should_evaluate_like_jaxp(String xPath) throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+        JaxpXpathEngine jaxp = new JaxpXpathEngine(XPathFactory.newInstance());
+        Map<String, String> ns = Collections.singletonMap("n", "urn:n");
+        engine.setNamespaceContext(ns);
+        jaxp.setNamespaceContext(ns);
+
+        // when
+        String value = engine.evaluate(xPath, source(XML));
+
+        // then
+        assertThat(value).isEqualTo(jaxp.evaluate(xPath, source(XML)));
+    }
+
+    @Test
+    public void should_select_copies_of_nodes_from_stream() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        List<Node> nodes = engine.selectNodes("//x", source(XML)).asList();
+        List<Node> attributes = engine.selectNodes("//item/@code", source(XML)).asList();
+
+        // then
+        assertThat(nodes).hasSize(4);
+        assertThat(nodes.get(2).getFirstChild()).isSameAs(nodes.get(3));
+        assertThat(attributes).hasSize(3);
+        assertThat(((Attr) attributes.get(2)).getValue()).isEqualTo("3");
+    }
+
+    @Test
+    public void should_copy_text_of_selected_elements() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        IterableNodeList nodes = engine.selectNodes("/a/b[@id='x']/c", source(XML));
+
+        // then
+        assertThat(nodes.getLength()).isEqualTo(2);
+        Element first = (Element) nodes.asList().get(0);
+        assertThat(first.getTextContent()).isEqualTo("first nested");
+        assertThat(first.getElementsByTagName("d").getLength()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_select_nodes_of_DOM_tree() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+        Document d = Convert.toDocument(source(XML));
+
+        // when
+        List<Node> nodes = engine.selectNodes("/a/b", d).asList();
+
+        // then
+        assertThat(nodes).hasSize(2);
+        assertThat(nodes.get(0)).isSameAs(d.getDocumentElement().getFirstChild());
+    }
+
+    @Test
+    public void should_evaluate_relative_paths_on_element() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+        Document d = Convert.toDocument(source(XML));
+        Node b = d.getDocumentElement().getChildNodes().item(1);
+
+        // when
+        String id = engine.evaluate("@id", b);
+        double count = engine.evaluateNumber("count(c)", b);
+        boolean hasD = engine.evaluateBoolean("c/d", b);
+        String absolute = engine.evaluate("/a/b/@id", b);
+
+        // then
+        assertThat(id).isEqualTo("x");
+        assertThat(count).isEqualTo(2.0);
+        assertThat(hasD).isTrue();
+        assertThat(absolute).isEqualTo("y");
+    }
+
+    @Test
+    public void should_stop_reading_once_value_is_known() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        String value = engine.evaluate("/a/b", source(BROKEN_XML));
+        String exists = engine.evaluate("boolean(//b)", source(BROKEN_XML));
+
+        // then
+        assertThat(value).isEqualTo("1");
+        assertThat(exists).isEqualTo("true");
+    }
+
+    @Test
+    public void should_stop_reading_once_nothing_can_match() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        String otherRoot = engine.evaluate("count(/x/b)", source(BROKEN_XML));
+        String pastPosition = engine.evaluate("count(/a/b[1])", source(BROKEN_XML));
+
+        // then
+        assertThat(otherRoot).isEqualTo("0");
+        assertThat(pastPosition).isEqualTo("1");
+    }
+
+    @Test
+    public void should_report_errors_of_document_that_are_read() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        CatchExceptionBdd.when(engine).evaluate("count(//b)", source(BROKEN_XML));
+
+        // then
+        assertThat(caughtException()).isInstanceOf(XpathException.class);
+    }
+
+    @Test
+    public void should_evaluate_batch_in_one_pass() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+        List<String> expressions = Arrays.asList("count(//x)", "//item[3]/@code", "/a/b/@id", "/a/b/@id");
+
+        // when
+        Map<String, String> values = engine.evaluate(expressions, source(XML));
+        Map<String, IterableNodeList> nodes = engine.selectNodes(Arrays.asList("//c", "//item"), source(XML));
+
+        // then
+        assertThat(values).hasSize(3);
+        assertThat(values.get("count(//x)")).isEqualTo("4");
+        assertThat(values.get("//item[3]/@code")).isEqualTo("");
+        assertThat(values.get("/a/b/@id")).isEqualTo("y");
+        assertThat(nodes.get("//c").getLength()).isEqualTo(3);
+        assertThat(nodes.get("//item").getLength()).isEqualTo(3);
+    }
+
+    @SuppressWarnings("unused")
+    private Object[] unsupportedExpressions() {
+        return new Object[] {
+                new Object[] { "//a[last()]" },
+                new Object[] { "/a/b[c='x']" },
+                new Object[] { "/a/text()" },
+                new Object[] { "/a/../b" },
+                new Object[] { "/a/ancestor::b" },
+                new Object[] { "sum(//x)" },
+                new Object[] { "/a/@b/c" },
+                new Object[] { "/a/@b[1]" },
+                new Object[] { "//a | //b" },
+                new Object[] { "/" },
+                new Object[] { "/a/x:b" },
+        };
+    }
+
+    @Test
+    @Parameters(method = "unsupportedExpressions")
+    public void should_reject_unsupported_expressions(String xPath) throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        CatchExceptionBdd.when(engine).evaluate(xPath, source(XML));
+
+        // then
+        assertThat(caughtException()).isInstanceOf(XpathException.class);
+    }
+
+    @Test
+    public void should_not_select_nodes_with_functions() throws Exception {
+        // given
+        StreamingXpathEngine engine = new StreamingXpathEngine();
+
+        // when
+        CatchExceptionBdd.when(engine).selectNodes("count(//x)", source(XML));
+
+        // then
+        assertThat(caughtException()).isInstanceOf(XpathException.class);
+    }
+}
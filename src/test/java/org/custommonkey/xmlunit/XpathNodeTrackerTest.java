@@ -37,6 +37,8 @@ package org.custommonkey.xmlunit;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.util.Arrays;
+
 import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -198,6 +200,53 @@ public class XpathNodeTrackerTest {
 		assertThat(xpathNodeTracker.toXpathString()).isEqualTo("/repeated[2]");
 	}
 
+	@Test
+	public void should_count_siblings_of_wide_level() {
+		// given
+		xpathNodeTracker.visitedNode(DUMMY_NODE, "diary");
+		xpathNodeTracker.indent();
+		for (int i = 0; i < 10000; i++) {
+			xpathNodeTracker.visitedNode(DUMMY_NODE, i % 2 == 0 ? "event" : "reminder");
+		}
+
+		// when
+		xpathNodeTracker.visitedNode(DUMMY_NODE, "event");
+		String event = xpathNodeTracker.toXpathString();
+		xpathNodeTracker.visitedAttribute("date");
+		String attribute = xpathNodeTracker.toXpathString();
+		xpathNodeTracker.visitedNode(DUMMY_NODE, "note");
+		String note = xpathNodeTracker.toXpathString();
+
+		// then
+		assertThat(event).isEqualTo("/diary[1]/event[5001]");
+		assertThat(attribute).isEqualTo("/diary[1]/event[5001]/@date");
+		assertThat(note).isEqualTo("/diary[1]/note[1]");
+	}
+
+	@Test
+	public void should_number_preloaded_nodes_by_kind() {
+		// given
+		Document doc = documentUtils.newControlDocumentBuilder().newDocument();
+		Element first = doc.createElement("event");
+		Text text = doc.createTextNode("text");
+		Element second = doc.createElement("event");
+		Comment comment = doc.createComment("comment");
+		xpathNodeTracker.preloadChildList(Arrays.<Node> asList(first, text, second, comment));
+
+		// when
+		xpathNodeTracker.visited(comment);
+		String commentPath = xpathNodeTracker.toXpathString();
+		xpathNodeTracker.visited(second);
+		String secondPath = xpathNodeTracker.toXpathString();
+		xpathNodeTracker.visited(text);
+		String textPath = xpathNodeTracker.toXpathString();
+
+		// then
+		assertThat(commentPath).isEqualTo("/comment()[1]");
+		assertThat(secondPath).isEqualTo("/event[2]");
+		assertThat(textPath).isEqualTo("/text()[1]");
+	}
+
 	// bug 1047364
 	@Test
 	public void should_check_empty_indent_outdent_root_node() {
@@ -37,11 +37,22 @@ POSSIBILITY OF SUCH DAMAGE.
 package org.custommonkey.xmlunit.diff;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static com.googlecode.catchexception.CatchException.caughtException;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.diff.Comparison;
 import net.sf.xmlunit.diff.ComparisonListener;
@@ -50,12 +61,19 @@ import net.sf.xmlunit.diff.DefaultDifferenceEngineFactory;
 import net.sf.xmlunit.diff.DifferenceEngine;
 import net.sf.xmlunit.diff.ListingDifferenceEvaluator;
 
+import org.custommonkey.xmlunit.builder.BuilderException;
+import org.custommonkey.xmlunit.diff.DiffBuilder.DiffPropertiesBuilder;
 import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.junit.Test;
+import org.xmlunit.validation.JAXPValidator;
+import org.xmlunit.validation.Language;
+import org.xmlunit.validation.ParsingValidator;
 import org.mockito.Mockito;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import com.googlecode.catchexception.apis.CatchExceptionBdd;
+
 public class DiffTest extends DiffTestAbstract {
     @Test
     public void should_stop_comparison_after_first_difference() throws Exception {
@@ -96,4 +114,217 @@ public class DiffTest extends DiffTestAbstract {
         Mockito.verify(listener, times(1)).comparisonPerformed(any(Comparison.class), any(ComparisonResult.class));
 
     }
+
+    @Test
+    public void should_parse_documents_concurrently() throws Exception {
+        // given
+        properties.setIgnoreWhitespace(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when
+        Diff diff;
+        try {
+            diff = Diff.newDiff(properties)
+                    .concurrentlyUsing(executor)
+                    .betweenControlDocument("<a> <b>text</b> </a>")
+                    .andTestDocument("<a><b>text</b></a>")
+                    .build();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(diff.identical()).isTrue();
+    }
+
+    @Test
+    public void should_find_differences_of_concurrently_parsed_documents() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when
+        Diff diff;
+        try {
+            diff = Diff.newDiff(properties)
+                    .concurrentlyUsing(executor)
+                    .betweenControlDocument(new StringReader("<a><b>text</b></a>"))
+                    .andTestDocument(new StringReader("<a><b>other</b></a>"))
+                    .build();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(diff.similar()).isFalse();
+    }
+
+    @Test
+    public void should_report_parse_errors_of_concurrently_parsed_documents_on_build() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DiffPropertiesBuilder builder = Diff.newDiff(properties)
+                .concurrentlyUsing(executor)
+                .betweenControlDocument("<a>")
+                .andTestDocument("<a/>");
+
+        // when
+        try {
+            CatchExceptionBdd.when(builder).build();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(caughtException()).isInstanceOf(BuilderException.class);
+    }
+
+    @Test
+    public void should_cancel_control_document_when_test_document_fails() throws Exception {
+        // given
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        Reader blocking = new Reader() {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                reading.countDown();
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new InterruptedIOException();
+                }
+                return -1;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        // fails once the control document is being read, so that its task
+        // has to be interrupted rather than just not being started
+        Reader broken = new Reader() {
+            private final Reader content = new StringReader("<a>");
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                try {
+                    reading.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return content.read(buffer, offset, length);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        DiffPropertiesBuilder builder = Diff.newDiff(properties)
+                .concurrentlyUsing(executor)
+                .betweenControlDocument(blocking)
+                .andTestDocument(broken);
+
+        // when
+        try {
+            CatchExceptionBdd.when(builder).build();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(caughtException()).isInstanceOf(BuilderException.class);
+        assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void should_validate_test_document_while_building_diff() throws Exception {
+        // when
+        Diff valid = Diff.newDiff(properties)
+                .validatingTestDocument(newIntListValidator())
+                .betweenControlDocument("<a><b>1</b></a>")
+                .andTestDocument("<a><b>1</b></a>")
+                .build();
+        Diff invalid = Diff.newDiff(properties)
+                .validatingTestDocument(newIntListValidator())
+                .betweenControlDocument("<a><b>1</b></a>")
+                .andTestDocument(new StringReader("<a><b>x</b></a>"))
+                .build();
+
+        // then
+        assertThat(valid.getValidationResult().isValid()).isTrue();
+        assertThat(valid.identical()).isTrue();
+        assertThat(invalid.getValidationResult().isValid()).isFalse();
+        assertThat(invalid.similar()).isFalse();
+    }
+
+    @Test
+    public void should_validate_concurrently_parsed_test_document() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // when
+        Diff diff;
+        try {
+            diff = Diff.newDiff(properties)
+                    .concurrentlyUsing(executor)
+                    .validatingTestDocument(newIntListValidator())
+                    .betweenControlDocument("<a><b>1</b></a>")
+                    .andTestDocument("<a><b>x</b></a>")
+                    .build();
+        } finally {
+            executor.shutdown();
+        }
+
+        // then
+        assertThat(diff.getValidationResult().isValid()).isFalse();
+        assertThat(diff.getValidationResult().getProblems().iterator().hasNext()).isTrue();
+    }
+
+    @Test
+    public void should_reject_validator_that_parses_test_document_again() throws Exception {
+        // given
+        DiffBuilder builder = Diff.newDiff(properties);
+
+        // when
+        CatchExceptionBdd.when(builder).validatingTestDocument(new ParsingValidator(Language.XML_DTD));
+
+        // then
+        assertThat(caughtException()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void should_reject_validator_after_test_document() throws Exception {
+        // given
+        DiffBuilder builder = Diff.newDiff(properties);
+        builder.betweenControlDocument("<a/>").andTestDocument("<a/>");
+
+        // when
+        CatchExceptionBdd.when(builder).validatingTestDocument(newIntListValidator());
+
+        // then
+        assertThat(caughtException()).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void should_not_have_validation_result_without_validator() throws Exception {
+        // when
+        Diff diff = Diff.newDiff(properties)
+                .betweenControlDocument("<a/>")
+                .andTestDocument("<a/>")
+                .build();
+
+        // then
+        assertThat(diff.getValidationResult()).isNull();
+    }
+
+    private static JAXPValidator newIntListValidator() {
+        JAXPValidator validator = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        validator.setSchemaSource(new StreamSource(new StringReader(
+                "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                        + "<xs:element name='a'><xs:complexType><xs:sequence>"
+                        + "<xs:element name='b' type='xs:int' maxOccurs='unbounded'/>"
+                        + "</xs:sequence></xs:complexType></xs:element></xs:schema>")));
+        return validator;
+    }
 }
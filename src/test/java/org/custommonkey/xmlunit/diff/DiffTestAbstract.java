@@ -965,6 +965,20 @@ public abstract class DiffTestAbstract {
         should_be_identical_and_similar_when_different_commants();
     }
 
+    @Test
+    public void should_normalize_whitespace_while_comparing() throws Exception {
+        // given
+        properties.setNormalizeWhitespaceWhileComparing(true);
+
+        // when
+        Diff diff = prepareDiff(properties,
+                "<a attr=\" some  value\">some\n\t text<!-- a  comment --></a>",
+                "<a attr=\"some value\"> some text <!--a comment--></a>");
+
+        // then
+        assertThat(diff.identical()).isTrue();
+    }
+
     @Test
     public void should_check_normalization() throws Exception {
         // given
@@ -0,0 +1,166 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.custommonkey.xmlunit.matchers;
+
+import static org.custommonkey.xmlunit.matchers.XmlUnitMatchers.containsXpath;
+import static org.custommonkey.xmlunit.matchers.XmlUnitMatchers.equalToXmlString;
+import static org.custommonkey.xmlunit.matchers.XmlUnitMatchers.notContainsXpath;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import org.custommonkey.xmlunit.XmlUnitProperties;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class ParsedDocumentCacheTest {
+    private static final String XML = "<a><b/><c>text</c></a>";
+
+    private ParsedDocumentCache cache;
+
+    @Before
+    public void setUp() {
+        cache = ParsedDocumentCache.forCurrentThread();
+        cache.clear();
+    }
+
+    @After
+    public void restoreLimits() {
+        cache.setLimits(ParsedDocumentCache.DEFAULT_SIZE, ParsedDocumentCache.DEFAULT_MAX_CHARACTERS);
+    }
+
+    @Test
+    public void should_parse_equal_strings_once() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        Document first = cache.parseControl(XML, properties);
+
+        // when
+        Document second = cache.parseControl(new String(XML), new XmlUnitProperties());
+
+        // then
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_parse_again_with_other_parser_configuration() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        Document control = cache.parseControl(XML, properties);
+        properties.setIgnoreWhitespace(true);
+
+        // when
+        Document ignoringWhitespace = cache.parseControl(XML, properties);
+        Document test = cache.parseTest(XML, properties);
+
+        // then
+        assertThat(ignoringWhitespace).isNotSameAs(control);
+        assertThat(test).isNotSameAs(ignoringWhitespace);
+        assertThat(cache.getMisses()).isEqualTo(3);
+    }
+
+    @Test
+    public void should_drop_least_recently_used_documents() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        Document first = cache.parseControl("<a0/>", properties);
+        for (int i = 1; i < ParsedDocumentCache.DEFAULT_SIZE; i++) {
+            cache.parseControl("<a" + i + "/>", properties);
+        }
+
+        // when
+        cache.parseControl("<a0/>", properties);
+        cache.parseControl("<b/>", properties);
+        Document stillCached = cache.parseControl("<a0/>", properties);
+        cache.parseControl("<a1/>", properties);
+
+        // then
+        assertThat(stillCached).isSameAs(first);
+        assertThat(cache.getMisses()).isEqualTo(ParsedDocumentCache.DEFAULT_SIZE + 2);
+    }
+
+    @Test
+    public void should_limit_characters_of_cached_documents() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        cache.setLimits(ParsedDocumentCache.DEFAULT_SIZE, 2 * XML.length());
+        String tooLong = "<a>" + XML + XML + "</a>";
+        Document first = cache.parseControl(XML, properties);
+
+        // when
+        cache.parseControl(tooLong, properties);
+        Document firstAgain = cache.parseControl(XML, properties);
+        cache.parseControl(tooLong, properties);
+        cache.parseControl("<x>" + XML + "</x>", properties);
+        cache.parseControl("<y>" + XML + "</y>", properties);
+        cache.parseControl(XML, properties);
+
+        // then
+        assertThat(firstAgain).isSameAs(first);
+        assertThat(cache.getMisses()).isEqualTo(6);
+    }
+
+    @Test
+    public void should_not_cache_documents_when_disabled() throws Exception {
+        // given
+        XmlUnitProperties properties = new XmlUnitProperties();
+        Document first = cache.parseControl(XML, properties);
+
+        // when
+        cache.setLimits(0, ParsedDocumentCache.DEFAULT_MAX_CHARACTERS);
+        Document second = cache.parseControl(XML, properties);
+
+        // then
+        assertThat(second).isNotSameAs(first);
+        assertThat(cache.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_share_documents_between_matchers() throws Exception {
+        // given
+        String response = "<response><status>ok</status><id>1</id></response>";
+
+        // when
+        boolean containsStatus = containsXpath("/response/status").matches(response);
+        boolean containsId = containsXpath("/response/id").matches(response);
+        boolean notContainsError = notContainsXpath("/response/error").matches(response);
+
+        // then
+        assertThat(containsStatus).isTrue();
+        assertThat(containsId).isTrue();
+        assertThat(notContainsError).isTrue();
+        assertThat(cache.getMisses()).isEqualTo(1);
+        assertThat(cache.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_parse_expected_document_of_matcher_once() throws Exception {
+        // given
+        AbstractXmlUnitMatcher<String> matcher = equalToXmlString(XML);
+
+        // when
+        boolean equal = matcher.matches(XML);
+        boolean equalAgain = matcher.matches("<a><b/><c>text</c></a>");
+        boolean different = matcher.matches("<a><b/></a>");
+
+        // then
+        assertThat(equal).isTrue();
+        assertThat(equalAgain).isTrue();
+        assertThat(different).isFalse();
+        // expected control document and the two distinct test documents
+        assertThat(cache.getMisses()).isEqualTo(3);
+    }
+}
@@ -14,18 +14,24 @@
 package org.xmlunit.builder;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileReader;
 import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.Source;
 
 import net.sf.xmlunit.TestResources;
+import net.sf.xmlunit.input.WhitespaceStrippedSource;
+import net.sf.xmlunit.transform.TransformationSource;
+import net.sf.xmlunit.tree.CompactDocument;
 import net.sf.xmlunit.util.Convert;
 
 import org.apache.commons.io.FileUtils;
@@ -143,6 +149,38 @@ public class InputTest {
         assertThat(doc.getDocumentElement().getTagName()).isEqualTo("animal");
     }
 
+    @Test
+    public void should_parse_byte_buffer() throws Exception {
+        // given
+        byte[] byteArray = FileUtils.readFileToByteArray(TestResources.ANIMAL_FILE.getFile());
+        ByteBuffer buffer = ByteBuffer.allocateDirect(byteArray.length);
+        buffer.put(byteArray).flip();
+
+        // when
+        Input.Builder builder = Input.fromByteBuffer(buffer);
+        Document first = parseDocument(builder.build());
+        Document second = parseDocument(builder.build());
+
+        // then
+        assertThat(first.getDocumentElement().getTagName()).isEqualTo("animal");
+        assertThat(second.getDocumentElement().getTagName()).isEqualTo("animal");
+        assertThat(buffer.position()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_parse_mapped_file() throws Exception {
+        // given
+        File testFile = TestResources.ANIMAL_FILE.getFile();
+
+        // when
+        Source source = Input.fromMappedFile(testFile).build();
+        Document doc = parseDocument(source);
+
+        // then
+        assertThat(doc.getDocumentElement().getTagName()).isEqualTo("animal");
+        assertThat(source.getSystemId()).isEqualTo(TestResources.ANIMAL_FILE.getUri().toString());
+    }
+
     @Test
     public void should_parse_file_from_URI_string() throws Exception {
         // given
@@ -182,6 +220,18 @@ public class InputTest {
         assertThat(doc.getDocumentElement().getTagName()).isEqualTo("animal");
     }
 
+    @Test
+    public void should_keep_system_id_of_URL() throws Exception {
+        // given
+        URL url = TestResources.ANIMAL_FILE.getUrl();
+
+        // when
+        Source source = Input.fromURL(url).build();
+
+        // then
+        assertThat(source.getSystemId()).isEqualTo(TestResources.ANIMAL_FILE.getUri().toString());
+    }
+
     @Test
     public void should_parse_transformation_from_source() throws Exception {
         // given
@@ -210,6 +260,41 @@ public class InputTest {
         assertThat(doc.getDocumentElement().getTagName()).isEqualTo("furry");
     }
 
+    @Test
+    public void should_stream_transformation_result_into_readers() throws Exception {
+        // given
+        File testFile = TestResources.ANIMAL_XSL.getFile();
+        Input.Builder input = Input.fromFile(TestResources.DOG_FILE.getFile());
+
+        // when
+        Source source = Input.byTransforming(input).withStylesheet(Input.fromFile(testFile)).streaming().build();
+        CompactDocument compact = CompactDocument.from(source);
+        Document stripped = Convert.toDocument(new WhitespaceStrippedSource(source));
+        Document parsed = parseDocument(source);
+
+        // then
+        assertThat(source).isInstanceOf(TransformationSource.class);
+        assertThat(compact.getDocument().getDocumentElement().getTagName()).isEqualTo("dog");
+        assertThat(stripped.getDocumentElement().getTagName()).isEqualTo("dog");
+        assertThat(parsed.getDocumentElement().getTagName()).isEqualTo("dog");
+    }
+
+    @Test
+    public void should_build_transformation_result_with_given_document_builder_factory() throws Exception {
+        // given
+        File testFile = TestResources.ANIMAL_XSL.getFile();
+        Input.Builder input = Input.fromFile(TestResources.DOG_FILE.getFile());
+        Source source = Input.byTransforming(input).withStylesheet(Input.fromFile(testFile)).streaming().build();
+        DocumentBuilderFactory factory = spy(DocumentBuilderFactory.newInstance());
+
+        // when
+        Document doc = Convert.toDocument(source, factory);
+
+        // then
+        verify(factory).newDocumentBuilder();
+        assertThat(doc.getDocumentElement().getTagName()).isEqualTo("dog");
+    }
+
     private static Document parseDocument(Source s) throws Exception {
         DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
         Document document = builder.parse(Convert.toInputSource(s));
@@ -22,6 +22,12 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.FileReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.xml.transform.ErrorListener;
 import javax.xml.transform.OutputKeys;
@@ -29,6 +35,7 @@ import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.URIResolver;
+import javax.xml.transform.stream.StreamResult;
 
 import net.sf.xmlunit.TestResources;
 import net.sf.xmlunit.util.XsltUtils;
@@ -36,10 +43,13 @@ import net.sf.xmlunit.util.XsltUtils;
 import org.custommonkey.xmlunit.XmlUnitProperties;
 import org.custommonkey.xmlunit.diff.Diff;
 import org.custommonkey.xmlunit.exceptions.ConfigurationException;
+import org.custommonkey.xmlunit.exceptions.XMLUnitRuntimeException;
 import org.custommonkey.xmlunit.util.DocumentUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.w3c.dom.Document;
+import org.xmlunit.builder.Transform.BatchResult;
+import org.xmlunit.builder.Transform.BatchResults;
 import org.xmlunit.builder.Transform.TransformationResult;
 
 import com.google.common.io.Closeables;
@@ -285,6 +295,150 @@ public class TransformTest {
         verify(mockedResolver, times(1)).resolve("urn:bar", systemId);
     }
 
+    @Test
+    public void should_transform_batch_in_order_of_sources() throws Exception {
+        // given
+        List<Source> sources = new ArrayList<Source>();
+        for (int i = 0; i < 50; i++) {
+            sources.add(Input.fromMemory("<animal>animal" + i + "</animal>").build());
+        }
+        Source stylesheet = Input.fromFile(animalXsl).build();
+
+        // when
+        BatchResults results = Transform.sources(sources)
+                .withStylesheet(stylesheet)
+                .withThreads(4)
+                .build();
+
+        // then
+        for (int i = 0; i < 50; i++) {
+            BatchResult result = results.next();
+            assertThat(result.getSource()).isSameAs(sources.get(i));
+            assertThat(result.getFailure()).isNull();
+            assertThat(result.toDocument().getDocumentElement().getTagName()).isEqualTo("animal" + i);
+        }
+        assertThat(results.hasNext()).isFalse();
+    }
+
+    @Test
+    public void should_capture_failure_of_single_batch_item() throws Exception {
+        // given
+        List<Source> sources = new ArrayList<Source>();
+        sources.add(Input.fromMemory("<animal>cat</animal>").build());
+        sources.add(Input.fromMemory("<animal>").build());
+        sources.add(Input.fromMemory("<animal>dog</animal>").build());
+
+        // when
+        BatchResults results = Transform.sources(sources)
+                .withStylesheet(Input.fromFile(animalXsl).build())
+                .withThreads(2)
+                .build();
+        BatchResult cat = results.next();
+        BatchResult broken = results.next();
+        BatchResult dog = results.next();
+        CatchExceptionBdd.when(broken).toDocument();
+
+        // then
+        assertThat(stripLineSeparators(cat.toString())).isEqualTo("<?xml version=\"1.0\" encoding=\"UTF-8\"?><cat/>");
+        assertThat(broken.getFailure()).isInstanceOf(XMLUnitRuntimeException.class);
+        assertThat(caughtException()).isSameAs(broken.getFailure());
+        assertThat(dog.toDocument().getDocumentElement().getTagName()).isEqualTo("dog");
+    }
+
+    @Test
+    public void should_apply_output_method_of_stylesheet_to_batch_results() throws Exception {
+        // given
+        List<Source> sources = new ArrayList<Source>();
+        sources.add(Input.fromMemory("<animal>cat</animal>").build());
+        sources.add(Input.fromMemory("<animal>dog</animal>").build());
+        Source stylesheet = Input.fromMemory("<xsl:stylesheet version='1.0'"
+                + " xmlns:xsl='http://www.w3.org/1999/XSL/Transform'>"
+                + "<xsl:output method='text'/>"
+                + "<xsl:template match='/'>name: <xsl:value-of select='animal'/></xsl:template>"
+                + "</xsl:stylesheet>").build();
+
+        // when
+        BatchResults results = Transform.sources(sources)
+                .withStylesheet(stylesheet)
+                .withThreads(2)
+                .build();
+        BatchResult cat = results.next();
+        BatchResult dog = results.next();
+        StringWriter dogText = new StringWriter();
+        dog.to(new StreamResult(dogText));
+        CatchExceptionBdd.when(cat).toDocument();
+
+        // then
+        assertThat(cat.toString()).isEqualTo("name: cat");
+        assertThat(dogText.toString()).isEqualTo("name: dog");
+        assertThat(caughtException()).isInstanceOf(XMLUnitRuntimeException.class);
+    }
+
+    @Test
+    public void should_transform_batch_using_given_executor() throws Exception {
+        // given
+        final AtomicInteger executed = new AtomicInteger();
+        List<Source> sources = new ArrayList<Source>();
+        sources.add(Input.fromMemory("<animal>cat</animal>").build());
+        sources.add(Input.fromMemory("<animal>dog</animal>").build());
+
+        // when
+        BatchResults results = Transform.sources(sources)
+                .withStylesheet(Input.fromFile(animalXsl).build())
+                .concurrentlyUsing(new Executor() {
+                    public void execute(Runnable command) {
+                        executed.incrementAndGet();
+                        command.run();
+                    }
+                })
+                .build();
+
+        // then
+        assertThat(results.next().toDocument().getDocumentElement().getTagName()).isEqualTo("cat");
+        assertThat(results.next().toDocument().getDocumentElement().getTagName()).isEqualTo("dog");
+        assertThat(results.hasNext()).isFalse();
+        assertThat(executed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_read_batch_sources_only_ahead_of_pending_results() throws Exception {
+        // given
+        final AtomicInteger read = new AtomicInteger();
+        Iterable<Source> sources = new Iterable<Source>() {
+            public Iterator<Source> iterator() {
+                return new Iterator<Source>() {
+                    public boolean hasNext() {
+                        return read.get() < 10;
+                    }
+
+                    public Source next() {
+                        read.incrementAndGet();
+                        return Input.fromMemory("<animal>dog</animal>").build();
+                    }
+
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        // when
+        BatchResults results = Transform.sources(sources)
+                .withThreads(1)
+                .withMaxPendingResults(2)
+                .build();
+        int readBeforeConsumption = read.get();
+        results.next();
+        int readAfterFirstResult = read.get();
+        results.close();
+
+        // then
+        assertThat(readBeforeConsumption).isEqualTo(2);
+        assertThat(readAfterFirstResult).isEqualTo(3);
+        assertThat(results.hasNext()).isFalse();
+    }
+
     private String stripLineSeparators(String text) {
         return text.replace(LINE_SEPARATOR, "");
     }
@@ -0,0 +1,167 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import net.sf.xmlunit.TestResources;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchValidationTest {
+
+    private JAXPValidator validator;
+    private List<Source> instances;
+
+    @Before
+    public void setUp() throws Exception {
+        validator = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        validator.setSchemaSource(new StreamSource(TestResources.BOOK_XSD.getFile()));
+        instances = new ArrayList<Source>();
+        for (int i = 0; i < 20; i++) {
+            TestResources instance = i % 5 == 3 ? TestResources.INVALID_BOOK : TestResources.BOOK_XSD_GENERATED;
+            instances.add(new StreamSource(instance.getFile()));
+        }
+    }
+
+    @Test
+    public void should_validate_all_instances_in_order() throws Exception {
+        // when
+        BatchValidationResult r = validator.validateInstances(instances);
+
+        // then
+        assertThat(r.isComplete()).isTrue();
+        assertThat(r.isValid()).isFalse();
+        assertThat(r.getValidatedCount()).isEqualTo(20);
+        assertThat(r.getInvalidCount()).isEqualTo(4);
+        for (int i = 0; i < 20; i++) {
+            assertThat(r.getResults().get(i).isValid()).isEqualTo(i % 5 != 3);
+        }
+        assertThat(r.getProblems().iterator().hasNext()).isTrue();
+    }
+
+    @Test
+    public void should_stop_at_first_invalid_instance() throws Exception {
+        // given
+        BatchValidation batch = new BatchValidation(validator, instances);
+        batch.setThreads(4);
+        batch.setFailFast(true);
+
+        // when
+        BatchValidationResult r = batch.validate();
+
+        // then
+        assertThat(r.isComplete()).isFalse();
+        assertThat(r.getValidatedCount()).isEqualTo(4);
+        assertThat(r.getInvalidCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_validate_using_given_executor() throws Exception {
+        // given
+        final AtomicInteger executed = new AtomicInteger();
+        BatchValidation batch = new BatchValidation(validator, instances);
+        batch.setExecutor(new Executor() {
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+                command.run();
+            }
+        });
+
+        // when
+        BatchValidationResult r = batch.validate();
+
+        // then
+        assertThat(executed.get()).isEqualTo(20);
+        assertThat(r.getValidatedCount()).isEqualTo(20);
+        assertThat(r.getInvalidCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void should_retain_limited_number_of_problems() throws Exception {
+        // given
+        BatchValidation batch = new BatchValidation(validator, instances);
+        batch.setMaxProblems(1);
+
+        // when
+        BatchValidationResult r = batch.validate();
+
+        // then
+        int retained = 0;
+        for (ValidationProblem p : r.getProblems()) {
+            retained++;
+        }
+        assertThat(retained).isEqualTo(1);
+        assertThat(r.getProblemCount()).isGreaterThan(1);
+        assertThat(r.getResults().get(8).isValid()).isFalse();
+        assertThat(r.getResults().get(8).getProblems().iterator().hasNext()).isFalse();
+    }
+
+    private static Source bookWithUnknownAttributes() {
+        return new StreamSource(new StringReader("<Book xmlns=\"http://www.publishing.org\" a=\"1\" b=\"2\">"
+                + "<Title>t</Title><Author>a</Author><Date>d</Date><ISBN>i</ISBN><Publisher>p</Publisher>"
+                + "</Book>"));
+    }
+
+    @Test
+    public void should_not_store_problems_past_limit_while_validating_instances() throws Exception {
+        // given
+        CompiledSchemaValidator compiled = validator.compile();
+        List<Source> invalid = new ArrayList<Source>();
+        for (int i = 0; i < 3; i++) {
+            invalid.add(bookWithUnknownAttributes());
+        }
+        BatchValidation batch = new BatchValidation(compiled, invalid);
+        batch.setThreads(1);
+        batch.setMaxProblems(1);
+
+        // when
+        ValidationResult single = compiled.validateInstance(bookWithUnknownAttributes(), 1);
+        BatchValidationResult r = batch.validate();
+
+        // then
+        assertThat(single.getProblems()).hasSize(1);
+        assertThat(single.getProblemCount()).isEqualTo(2);
+        assertThat(r.getProblems()).hasSize(1);
+        assertThat(r.getProblemCount()).isEqualTo(6);
+    }
+
+    @Test
+    public void should_validate_sequentially_without_thread_safe_validator() throws Exception {
+        // given
+        ParsingValidator parsing = new ParsingValidator(Language.XML_DTD);
+        parsing.setSchemaSource(new StreamSource(TestResources.BOOK_DTD.getFile()));
+        List<Source> withDoctype = new ArrayList<Source>();
+        withDoctype.add(new StreamSource(TestResources.BOOK_WITH_DOC_TYPE.getFile()));
+        withDoctype.add(new StreamSource(TestResources.INVALID_BOOK_WITH_DOC_TYPE.getFile()));
+
+        // when
+        BatchValidationResult r = parsing.validateInstances(withDoctype);
+
+        // then
+        assertThat(r.getValidatedCount()).isEqualTo(2);
+        assertThat(r.getResults().get(0).isValid()).isTrue();
+        assertThat(r.getResults().get(1).isValid()).isFalse();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+
+import net.sf.xmlunit.TestResources;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledSchemaValidatorTest {
+
+    private CompiledSchemaValidator validator;
+
+    @Before
+    public void setUp() throws Exception {
+        JAXPValidator v = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        v.setSchemaSource(new StreamSource(TestResources.BOOK_XSD.getFile()));
+        validator = v.compile();
+    }
+
+    @Test
+    public void should_validate_instances_repeatedly() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            // when
+            ValidationResult valid = validator.validateInstance(
+                    new StreamSource(TestResources.BOOK_XSD_GENERATED.getFile()));
+            ValidationResult invalid = validator.validateInstance(
+                    new StreamSource(TestResources.INVALID_BOOK.getFile()));
+
+            // then
+            assertThat(valid.isValid()).isTrue();
+            assertThat(valid.getProblems().iterator().hasNext()).isFalse();
+            assertThat(invalid.isValid()).isFalse();
+            assertThat(invalid.getProblems().iterator().hasNext()).isTrue();
+        }
+    }
+
+    @Test
+    public void should_validate_instances_concurrently() throws Exception {
+        // given
+        final File valid = TestResources.BOOK_XSD_GENERATED.getFile();
+        final File invalid = TestResources.INVALID_BOOK.getFile();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+        // when
+        try {
+            for (int i = 0; i < 40; i++) {
+                final File instance = i % 2 == 0 ? valid : invalid;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return validator.validateInstance(new StreamSource(instance)).isValid();
+                    }
+                }));
+            }
+
+            // then
+            for (int i = 0; i < 40; i++) {
+                assertThat(results.get(i).get()).isEqualTo(i % 2 == 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void should_be_usable_by_batch_validation() throws Exception {
+        // given
+        List<Source> instances = new ArrayList<Source>();
+        for (int i = 0; i < 6; i++) {
+            TestResources instance = i % 3 == 2 ? TestResources.INVALID_BOOK : TestResources.BOOK_XSD_GENERATED;
+            instances.add(new StreamSource(instance.getFile()));
+        }
+        BatchValidation sequential = new BatchValidation(validator, instances);
+        sequential.setThreads(1);
+
+        // when - the batch must neither change nor replace the fixed schema
+        BatchValidationResult concurrentResult = validator.validateInstances(instances);
+        BatchValidationResult sequentialResult = sequential.validate();
+
+        // then
+        assertThat(concurrentResult.getValidatedCount()).isEqualTo(6);
+        assertThat(concurrentResult.getInvalidCount()).isEqualTo(2);
+        assertThat(sequentialResult.getValidatedCount()).isEqualTo(6);
+        assertThat(sequentialResult.getInvalidCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void should_report_compiled_schema_as_valid() throws Exception {
+        // when
+        ValidationResult r = validator.validateSchema();
+
+        // then
+        assertThat(r.isValid()).isTrue();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void should_not_allow_changing_the_schema() throws Exception {
+        // when
+        validator.setSchemaSource(new StreamSource(TestResources.BROKEN_XSD.getFile()));
+    }
+}
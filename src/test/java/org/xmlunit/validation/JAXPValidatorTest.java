@@ -19,6 +19,9 @@ import static org.fest.assertions.api.Assertions.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.transform.stream.StreamSource;
 
@@ -39,6 +42,7 @@ public class JAXPValidatorTest {
     public void setUp() {
         String langNsUri = Language.XML_SCHEMA.getNsUri();
         validator = new JAXPValidator(langNsUri);
+        SchemaCache.clear();
     }
 
     @Test
@@ -106,4 +110,149 @@ public class JAXPValidatorTest {
         // then
         assertThat(caughtException()).isInstanceOf(XMLUnitRuntimeException.class);
     }
+
+    @Test
+    public void should_compile_schema_once_for_several_validators() throws Exception {
+        // given
+        String systemId = TestResources.BOOK_XSD.getFile().toURI().toString();
+        JAXPValidator other = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        validator.setSchemaSource(new StreamSource(systemId));
+        other.setSchemaSource(new StreamSource(systemId));
+
+        // when
+        ValidationResult first = validator.validateInstance(new StreamSource(TestResources.BOOK_XSD_GENERATED.getFile()));
+        ValidationResult second = other.validateInstance(new StreamSource(TestResources.INVALID_BOOK.getFile()));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isFalse();
+        assertThat(SchemaCache.getMissCount()).isEqualTo(1);
+        assertThat(SchemaCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_recompile_invalidated_schema() throws Exception {
+        // given
+        String systemId = TestResources.BOOK_XSD.getFile().toURI().toString();
+        validator.setSchemaSource(new StreamSource(systemId));
+        validator.validateInstance(new StreamSource(TestResources.BOOK_XSD_GENERATED.getFile()));
+
+        // when
+        SchemaCache.invalidate(systemId);
+        int sizeAfterInvalidation = SchemaCache.size();
+        validator.validateInstance(new StreamSource(TestResources.BOOK_XSD_GENERATED.getFile()));
+
+        // then
+        assertThat(sizeAfterInvalidation).isEqualTo(0);
+        assertThat(SchemaCache.getMissCount()).isEqualTo(2);
+        assertThat(SchemaCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_identify_schema_without_system_id_by_content() throws Exception {
+        // given
+        String schema = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                + "<xs:element name='a'/></xs:schema>";
+
+        // when
+        validator.setSchemaSource(new StreamSource(new StringReader(schema)));
+        ValidationResult first = validator.validateInstance(new StreamSource(new StringReader("<a/>")));
+        validator.setSchemaSource(new StreamSource(new StringReader(schema)));
+        ValidationResult second = validator.validateInstance(new StreamSource(new StringReader("<b/>")));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isFalse();
+        assertThat(SchemaCache.getHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void should_not_mix_up_streamed_schemas_with_same_system_id() throws Exception {
+        // given
+        JAXPValidator one = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        one.setSchemaSource(new StreamSource(new StringReader(schemaFor("one")), "file:/tmp/base/"));
+        JAXPValidator two = new JAXPValidator(Language.XML_SCHEMA.getNsUri());
+        two.setSchemaSource(new StreamSource(new StringReader(schemaFor("two")), "file:/tmp/base/"));
+
+        // when
+        ValidationResult first = one.validateInstance(new StreamSource(new StringReader("<one/>")));
+        ValidationResult second = two.validateInstance(new StreamSource(new StringReader("<two/>")));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isTrue();
+        assertThat(SchemaCache.getHitCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void should_stop_at_first_error_when_failing_fast() throws Exception {
+        // given
+        validator.setSchemaSource(new StreamSource(new StringReader(INT_LIST_XSD)));
+        validator.setFailFast(true);
+
+        // when
+        ValidationResult r = validator.validateInstance(new StreamSource(new StringReader(NOT_INT_LIST)));
+
+        // then
+        assertThat(r.isValid()).isFalse();
+        assertThat(countProblems(r)).isEqualTo(1);
+    }
+
+    @Test
+    public void should_stop_after_max_problems() throws Exception {
+        // given
+        validator.setSchemaSource(new StreamSource(new StringReader(INT_LIST_XSD)));
+        ValidationResult all = validator.validateInstance(new StreamSource(new StringReader(NOT_INT_LIST)));
+        validator.setSchemaSource(new StreamSource(new StringReader(INT_LIST_XSD)));
+        validator.setMaxProblems(2);
+
+        // when
+        ValidationResult r = validator.validateInstance(new StreamSource(new StringReader(NOT_INT_LIST)));
+
+        // then
+        assertThat(countProblems(all)).isGreaterThan(2);
+        assertThat(r.isValid()).isFalse();
+        assertThat(countProblems(r)).isEqualTo(2);
+    }
+
+    @Test
+    public void should_stream_problems_to_listener_without_retaining_them() throws Exception {
+        // given
+        final List<ValidationProblem> found = new ArrayList<ValidationProblem>();
+        validator.setSchemaSource(new StreamSource(new StringReader(INT_LIST_XSD)));
+        validator.setRetainProblems(false);
+        validator.addProblemListener(new ValidationProblemListener() {
+            public void problemFound(ValidationProblem problem) {
+                found.add(problem);
+            }
+        });
+
+        // when
+        ValidationResult r = validator.validateInstance(new StreamSource(new StringReader(NOT_INT_LIST)));
+
+        // then
+        assertThat(r.isValid()).isFalse();
+        assertThat(countProblems(r)).isEqualTo(0);
+        assertThat(found.size()).isGreaterThan(2);
+    }
+
+    private static final String INT_LIST_XSD = "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+            + "<xs:element name='a'><xs:complexType><xs:sequence>"
+            + "<xs:element name='b' type='xs:int' maxOccurs='unbounded'/>"
+            + "</xs:sequence></xs:complexType></xs:element></xs:schema>";
+
+    private static final String NOT_INT_LIST = "<a><b>x</b><b>y</b><b>z</b></a>";
+
+    private static int countProblems(ValidationResult r) {
+        int count = 0;
+        for (ValidationProblem p : r.getProblems()) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String schemaFor(String element) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                + "<xs:element name='" + element + "'/></xs:schema>";
+    }
 }
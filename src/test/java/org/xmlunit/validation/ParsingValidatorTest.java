@@ -15,11 +15,24 @@ package org.xmlunit.validation;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 
 import net.sf.xmlunit.TestResources;
+import net.sf.xmlunit.util.Convert;
+
+import org.apache.commons.io.FileUtils;
 
 import org.junit.Test;
+import org.w3c.dom.Document;
 import org.xmlunit.validation.Language;
 import org.xmlunit.validation.ParsingValidator;
 import org.xmlunit.validation.ValidationResult;
@@ -81,4 +94,159 @@ public class ParsingValidatorTest {
         assertThat(r.isValid()).isFalse();
         assertThat(r.getProblems().iterator().hasNext()).isTrue();
     }
+
+    @Test
+    public void should_reuse_DTD_grammar_until_schema_changes() throws Exception {
+        // given
+        File dtd = File.createTempFile("xmlunit", ".dtd");
+        dtd.deleteOnExit();
+        FileUtils.copyFile(TestResources.BOOK_DTD.getFile(), dtd);
+        ParsingValidator v = new ParsingValidator(Language.XML_DTD);
+        v.setSchemaSource(new StreamSource(dtd));
+
+        // when
+        ValidationResult first = v.validateInstance(new StreamSource(TestResources.BOOK_WITH_DOC_TYPE.getFile()));
+        FileUtils.writeStringToFile(dtd, "<!ELEMENT Book EMPTY>");
+        ValidationResult second = v.validateInstance(new StreamSource(TestResources.BOOK_WITH_DOC_TYPE.getFile()));
+        ValidationResult invalid = v.validateInstance(new StreamSource(TestResources.INVALID_BOOK_WITH_DOC_TYPE.getFile()));
+        v.setSchemaSource(new StreamSource(dtd));
+        ValidationResult afterChange = v.validateInstance(new StreamSource(TestResources.BOOK_WITH_DOC_TYPE.getFile()));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isTrue();
+        assertThat(invalid.isValid()).isFalse();
+        assertThat(afterChange.isValid()).isFalse();
+    }
+
+    @Test
+    public void should_read_schema_location_of_each_instance_without_schema_source() throws Exception {
+        // given
+        File a = File.createTempFile("xmlunit", ".xsd");
+        a.deleteOnExit();
+        FileUtils.writeStringToFile(a, schemaFor("a"));
+        File b = File.createTempFile("xmlunit", ".xsd");
+        b.deleteOnExit();
+        FileUtils.writeStringToFile(b, schemaFor("b"));
+        ParsingValidator v = new ParsingValidator(Language.XML_SCHEMA);
+
+        // when
+        ValidationResult first = v.validateInstance(instanceOf("a", a));
+        ValidationResult second = v.validateInstance(instanceOf("b", b));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isTrue();
+    }
+
+    @Test
+    public void should_stop_at_first_DTD_error_when_failing_fast() throws Exception {
+        // given
+        ParsingValidator v = new ParsingValidator(Language.XML_DTD);
+        v.setSchemaSource(new StreamSource(TestResources.BOOK_DTD.getFile()));
+        v.setFailFast(true);
+
+        // when
+        ValidationResult r = v.validateInstance(new StreamSource(new StringReader(
+                "<!DOCTYPE Book SYSTEM 'Book.dtd'><Book><Foo/><Bar/></Book>")));
+
+        // then
+        assertThat(r.isValid()).isFalse();
+        int problems = 0;
+        for (ValidationProblem p : r.getProblems()) {
+            problems++;
+        }
+        assertThat(problems).isEqualTo(1);
+    }
+
+    @Test
+    public void should_validate_DOM_instance_against_schema() throws Exception {
+        // given
+        ParsingValidator v = new ParsingValidator(Language.XML_SCHEMA);
+        v.setSchemaSource(new StreamSource(TestResources.BOOK_XSD.getFile()));
+        Document valid = Convert.toDocument(new StreamSource(TestResources.BOOK_XSD_GENERATED.getFile()));
+        Document invalid = Convert.toDocument(new StreamSource(TestResources.INVALID_BOOK.getFile()));
+
+        // when
+        ValidationResult validResult = v.validateInstance(new DOMSource(valid));
+        ValidationResult invalidResult = v.validateInstance(new DOMSource(invalid));
+
+        // then
+        assertThat(validResult.isValid()).isTrue();
+        assertThat(validResult.getProblems().iterator().hasNext()).isFalse();
+        assertThat(invalidResult.isValid()).isFalse();
+        assertThat(invalidResult.getProblems().iterator().hasNext()).isTrue();
+    }
+
+    @Test
+    public void should_not_mix_up_streamed_schemas_with_same_system_id() throws Exception {
+        // given
+        ParsingValidator one = new ParsingValidator(Language.XML_SCHEMA);
+        one.setSchemaSource(new StreamSource(new StringReader(schemaFor("one")), "file:/tmp/base/"));
+        ParsingValidator two = new ParsingValidator(Language.XML_SCHEMA);
+        two.setSchemaSource(new StreamSource(new StringReader(schemaFor("two")), "file:/tmp/base/"));
+
+        // when
+        ValidationResult first = one.validateInstance(new DOMSource(Convert.toDocument(
+                new StreamSource(new StringReader("<one/>")))));
+        ValidationResult second = two.validateInstance(new DOMSource(Convert.toDocument(
+                new StreamSource(new StringReader("<two/>")))));
+
+        // then
+        assertThat(first.isValid()).isTrue();
+        assertThat(second.isValid()).isTrue();
+    }
+
+    @Test
+    public void should_validate_DOM_level_1_instance_against_schema() throws Exception {
+        // given
+        ParsingValidator v = new ParsingValidator(Language.XML_SCHEMA);
+        v.setSchemaSource(new StreamSource(TestResources.BOOK_XSD.getFile()));
+        Document invalid = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(TestResources.INVALID_BOOK.getFile());
+
+        // when
+        ValidationResult r = v.validateInstance(new DOMSource(invalid));
+
+        // then
+        assertThat(r.isValid()).isFalse();
+    }
+
+    @Test
+    public void should_validate_StAX_instance_against_schema() throws Exception {
+        // given
+        ParsingValidator v = new ParsingValidator(Language.XML_SCHEMA);
+        v.setSchemaSource(new StreamSource(TestResources.BOOK_XSD.getFile()));
+
+        // when
+        ValidationResult validResult = validateStAX(v, TestResources.BOOK_XSD_GENERATED.getFile());
+        ValidationResult invalidResult = validateStAX(v, TestResources.INVALID_BOOK.getFile());
+
+        // then
+        assertThat(validResult.isValid()).isTrue();
+        assertThat(validResult.getProblems().iterator().hasNext()).isFalse();
+        assertThat(invalidResult.isValid()).isFalse();
+        assertThat(invalidResult.getProblems().iterator().next().getLine()).isGreaterThan(0);
+    }
+
+    private static String schemaFor(String element) {
+        return "<xs:schema xmlns:xs='http://www.w3.org/2001/XMLSchema'>"
+                + "<xs:element name='" + element + "'/></xs:schema>";
+    }
+
+    private static StreamSource instanceOf(String element, File schema) {
+        return new StreamSource(new StringReader("<" + element
+                + " xmlns:xsi='http://www.w3.org/2001/XMLSchema-instance'"
+                + " xsi:noNamespaceSchemaLocation='" + schema.toURI() + "'/>"));
+    }
+
+    private static ValidationResult validateStAX(Validator v, File f) throws Exception {
+        FileInputStream in = new FileInputStream(f);
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            return v.validateInstance(new StAXSource(reader));
+        } finally {
+            in.close();
+        }
+    }
 }
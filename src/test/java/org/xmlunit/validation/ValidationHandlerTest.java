@@ -0,0 +1,74 @@
+/*
+  This file is licensed to You under the Apache License, Version 2.0
+  (the "License"); you may not use this file except in compliance with
+  the License.  You may obtain a copy of the License at
+
+  http://www.apache.org/licenses/LICENSE-2.0
+
+  Unless required by applicable law or agreed to in writing, software
+  distributed under the License is distributed on an "AS IS" BASIS,
+  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+  See the License for the specific language governing permissions and
+  limitations under the License.
+ */
+package org.xmlunit.validation;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.Collections;
+
+import org.junit.Test;
+import org.xml.sax.SAXParseException;
+
+public class ValidationHandlerTest {
+    @Test
+    public void should_not_count_warnings_towards_max_problems() throws Exception {
+        // given
+        ValidationHandler handler = new ValidationHandler(false, 1, Integer.MAX_VALUE,
+                Collections.<ValidationProblemListener> emptyList());
+
+        // when
+        handler.warning(new SAXParseException("warning", null));
+        handler.warning(new SAXParseException("warning", null));
+
+        // then
+        assertThat(handler.getResult().isValid()).isTrue();
+        assertThat(handler.getResult().getProblems()).hasSize(2);
+    }
+
+    @Test
+    public void should_abort_once_max_errors_have_been_found() throws Exception {
+        // given
+        ValidationHandler handler = new ValidationHandler(false, 1, Integer.MAX_VALUE,
+                Collections.<ValidationProblemListener> emptyList());
+        handler.warning(new SAXParseException("warning", null));
+
+        // when
+        SAXParseException abort = null;
+        try {
+            handler.error(new SAXParseException("error", null));
+        } catch (SAXParseException e) {
+            abort = e;
+        }
+
+        // then
+        assertThat(abort).isNotNull();
+        assertThat(handler.getResult().isValid()).isFalse();
+    }
+
+    @Test
+    public void should_only_count_problems_past_retained_limit() throws Exception {
+        // given
+        ValidationHandler handler = new ValidationHandler(false, Integer.MAX_VALUE, 1,
+                Collections.<ValidationProblemListener> emptyList());
+
+        // when
+        handler.error(new SAXParseException("first", null));
+        handler.error(new SAXParseException("second", null));
+
+        // then
+        assertThat(handler.getResult().getProblems()).hasSize(1);
+        assertThat(handler.getResult().getProblems().iterator().next().getMessage()).isEqualTo("first");
+        assertThat(handler.getResult().getProblemCount()).isEqualTo(2);
+    }
+}